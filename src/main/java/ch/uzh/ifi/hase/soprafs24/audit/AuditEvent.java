@@ -0,0 +1,67 @@
+package ch.uzh.ifi.hase.soprafs24.audit;
+
+import java.time.Instant;
+
+/**
+ * One entry of the audit log. Stored as one line
+ * {@code sequence,epochMillis,userId,action}.
+ */
+public class AuditEvent {
+
+  public enum Action {
+    CREATED, LOGGED_IN, LOGGED_OUT, EDITED
+  }
+
+  private final long sequence;
+  private final Instant timestamp;
+  private final long userId;
+  private final Action action;
+
+  public AuditEvent(long sequence, Instant timestamp, long userId, Action action) {
+    this.sequence = sequence;
+    this.timestamp = timestamp;
+    this.userId = userId;
+    this.action = action;
+  }
+
+  public long getSequence() {
+    return sequence;
+  }
+
+  public Instant getTimestamp() {
+    return timestamp;
+  }
+
+  public long getUserId() {
+    return userId;
+  }
+
+  public Action getAction() {
+    return action;
+  }
+
+  void appendTo(StringBuilder line) {
+    line.append(sequence).append(',')
+        .append(timestamp.toEpochMilli()).append(',')
+        .append(userId).append(',')
+        .append(action.name()).append('\n');
+  }
+
+  /**
+   * @return the event of the line, or null if it is not a complete entry
+   *     (e.g. the last line while it is being written)
+   */
+  static AuditEvent parse(String line) {
+    String[] fields = line.split(",");
+    if (fields.length != 4) {
+      return null;
+    }
+    try {
+      return new AuditEvent(Long.parseLong(fields[0]), Instant.ofEpochMilli(Long.parseLong(fields[1])),
+          Long.parseLong(fields[2]), Action.valueOf(fields[3]));
+    }
+    catch (IllegalArgumentException e) {
+      return null;
+    }
+  }
+}
@@ -0,0 +1,376 @@
+package ch.uzh.ifi.hase.soprafs24.audit;
+
+import ch.uzh.ifi.hase.soprafs24.service.UserChangedEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Audit Log
+ * Append-only trail of account creation, login, logout and edits, fed by
+ * the UserChangedEvents after their transaction committed. Request threads
+ * only add to a lock-free queue; a single writer thread appends everything
+ * that queued up meanwhile to the current segment file and syncs it with one
+ * force() per batch (group commit). Segments are rotated by size, the oldest
+ * are deleted beyond max-segments. Segment files are named after the
+ * sequence number and time of their first event, which lets query() skip
+ * segments outside the requested time range.
+ */
+@Component
+public class AuditLog {
+
+  private static final String SEGMENT_PREFIX = "audit-";
+  private static final String SEGMENT_SUFFIX = ".log";
+  private static final int MAX_BATCH = 4096;
+  private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+  // events are stamped before they queue up, so a segment may start slightly before the last events of the previous one
+  private static final long SEGMENT_TIME_SLACK_MILLIS = 60_000;
+
+  private final Logger log = LoggerFactory.getLogger(AuditLog.class);
+
+  private final boolean enabled;
+  private final Path directory;
+  private final long segmentBytes;
+  private final int maxSegments;
+  private final boolean fsync;
+  private final int capacity;
+
+  private final ConcurrentLinkedQueue<Object> queue = new ConcurrentLinkedQueue<>();
+  private final AtomicInteger queued = new AtomicInteger();
+  private final LongAdder dropped = new LongAdder();
+  private volatile boolean running;
+  private volatile boolean sleeping;
+  private Thread writer;
+
+  // only touched by the writer thread
+  private long nextSequence;
+  private FileChannel segment;
+  private long segmentSize;
+
+  public AuditLog(@Value("${users.audit.enabled:true}") boolean enabled,
+                  @Value("${users.audit.directory:./audit}") String directory,
+                  @Value("${users.audit.segment-bytes:16777216}") long segmentBytes,
+                  @Value("${users.audit.max-segments:0}") int maxSegments,
+                  @Value("${users.audit.fsync:true}") boolean fsync,
+                  @Value("${users.audit.queue-capacity:100000}") int capacity) {
+    this.enabled = enabled;
+    this.directory = Paths.get(directory);
+    this.segmentBytes = segmentBytes;
+    this.maxSegments = maxSegments;
+    this.fsync = fsync;
+    this.capacity = capacity;
+  }
+
+  private static final class Pending {
+    private final Instant timestamp;
+    private final long userId;
+    private final AuditEvent.Action action;
+
+    private Pending(Instant timestamp, long userId, AuditEvent.Action action) {
+      this.timestamp = timestamp;
+      this.userId = userId;
+      this.action = action;
+    }
+  }
+
+  @PostConstruct
+  public void start() throws IOException {
+    if (!enabled) {
+      return;
+    }
+    Files.createDirectories(directory);
+    nextSequence = lastSequence() + 1;
+    running = true;
+    writer = new Thread(this::writeLoop, "audit-writer");
+    writer.setDaemon(true);
+    writer.start();
+    log.info("Audit log in {} continues at sequence {}", directory.toAbsolutePath(), nextSequence);
+  }
+
+  /**
+   * Writes what is queued and stops the writer.
+   */
+  @PreDestroy
+  public void stop() throws InterruptedException {
+    if (!running) {
+      return;
+    }
+    running = false;
+    LockSupport.unpark(writer);
+    writer.join(TimeUnit.SECONDS.toMillis(10));
+  }
+
+  @TransactionalEventListener(fallbackExecution = true)
+  public void onUserChanged(UserChangedEvent event) {
+    // changes of other nodes are in their own audit logs
+    if (event.isRemote()) {
+      return;
+    }
+    AuditEvent.Action action;
+    switch (event.getKind()) {
+      case CREATED:
+        action = AuditEvent.Action.CREATED;
+        break;
+      case LOGGED_IN:
+        action = AuditEvent.Action.LOGGED_IN;
+        break;
+      case LOGGED_OUT:
+        action = AuditEvent.Action.LOGGED_OUT;
+        break;
+      case EDITED:
+        action = AuditEvent.Action.EDITED;
+        break;
+      default:
+        return;
+    }
+    for (Long userId : event.getUserIds()) {
+      append(userId, action);
+    }
+  }
+
+  /**
+   * Queues an event without blocking. If the writer falls behind by more
+   * than the queue capacity, the event is dropped and counted.
+   */
+  public void append(long userId, AuditEvent.Action action) {
+    if (!running) {
+      return;
+    }
+    if (queued.incrementAndGet() > capacity) {
+      queued.decrementAndGet();
+      dropped.increment();
+      if (dropped.sum() % 1000 == 1) {
+        log.warn("Audit queue full, {} events dropped so far", dropped.sum());
+      }
+      return;
+    }
+    queue.add(new Pending(Instant.now(), userId, action));
+    wakeWriter();
+  }
+
+  /**
+   * @return completes once everything queued before is written (and synced)
+   */
+  public CompletableFuture<Void> sync() {
+    CompletableFuture<Void> synced = new CompletableFuture<>();
+    if (!running) {
+      synced.complete(null);
+      return synced;
+    }
+    queue.add(synced);
+    wakeWriter();
+    return synced;
+  }
+
+  public long getDropped() {
+    return dropped.sum();
+  }
+
+  /**
+   * Reads the events of one user (or all users if userId is null) within
+   * [from, to], oldest first.
+   */
+  public List<AuditEvent> query(Long userId, Instant from, Instant to, int limit) {
+    long fromMillis = from == null ? Long.MIN_VALUE : from.toEpochMilli();
+    long toMillis = to == null ? Long.MAX_VALUE : to.toEpochMilli();
+
+    List<AuditEvent> events = new ArrayList<>();
+    List<Path> segments = segments();
+    for (int i = 0; i < segments.size() && events.size() < limit; i++) {
+      long segmentStart = firstMillis(segments.get(i));
+      if (segmentStart - SEGMENT_TIME_SLACK_MILLIS > toMillis) {
+        break;
+      }
+      if (i + 1 < segments.size() && firstMillis(segments.get(i + 1)) + SEGMENT_TIME_SLACK_MILLIS < fromMillis) {
+        continue;
+      }
+      try (BufferedReader reader = Files.newBufferedReader(segments.get(i), StandardCharsets.UTF_8)) {
+        for (String line = reader.readLine(); line != null && events.size() < limit; line = reader.readLine()) {
+          AuditEvent event = AuditEvent.parse(line);
+          if (event != null
+              && (userId == null || event.getUserId() == userId)
+              && event.getTimestamp().toEpochMilli() >= fromMillis
+              && event.getTimestamp().toEpochMilli() <= toMillis) {
+            events.add(event);
+          }
+        }
+      }
+      catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+    return events;
+  }
+
+  private void wakeWriter() {
+    if (sleeping) {
+      LockSupport.unpark(writer);
+    }
+  }
+
+  private void writeLoop() {
+    List<Pending> batch = new ArrayList<>();
+    List<CompletableFuture<Void>> syncs = new ArrayList<>();
+    StringBuilder lines = new StringBuilder(64 * 1024);
+
+    while (true) {
+      Object next = queue.poll();
+      if (next == null) {
+        if (!running) {
+          break;
+        }
+        sleeping = true;
+        if (queue.isEmpty() && running) {
+          LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+        }
+        sleeping = false;
+        continue;
+      }
+
+      // everything that queued up while the last batch was written goes into this one
+      for (; next != null; next = batch.size() < MAX_BATCH ? queue.poll() : null) {
+        if (next instanceof Pending) {
+          batch.add((Pending) next);
+        }
+        else {
+          @SuppressWarnings("unchecked")
+          CompletableFuture<Void> synced = (CompletableFuture<Void>) next;
+          syncs.add(synced);
+        }
+      }
+      queued.addAndGet(-batch.size());
+
+      try {
+        if (!batch.isEmpty()) {
+          write(batch, lines);
+        }
+        syncs.forEach(synced -> synced.complete(null));
+      }
+      catch (IOException e) {
+        log.error("Could not write {} audit events", batch.size(), e);
+        closeSegment();
+        syncs.forEach(synced -> synced.completeExceptionally(e));
+      }
+      batch.clear();
+      syncs.clear();
+      lines.setLength(0);
+    }
+    closeSegment();
+  }
+
+  private void write(List<Pending> batch, StringBuilder lines) throws IOException {
+    if (segment == null || segmentSize >= segmentBytes) {
+      rotate(batch.get(0).timestamp);
+    }
+    for (Pending pending : batch) {
+      new AuditEvent(nextSequence++, pending.timestamp, pending.userId, pending.action).appendTo(lines);
+    }
+    ByteBuffer bytes = ByteBuffer.wrap(lines.toString().getBytes(StandardCharsets.UTF_8));
+    while (bytes.hasRemaining()) {
+      segmentSize += segment.write(bytes);
+    }
+    if (fsync) {
+      segment.force(false);
+    }
+  }
+
+  private void rotate(Instant firstTimestamp) throws IOException {
+    closeSegment();
+    Path file = directory.resolve(String.format("%s%020d-%d%s",
+        SEGMENT_PREFIX, nextSequence, firstTimestamp.toEpochMilli(), SEGMENT_SUFFIX));
+    segment = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+    segmentSize = 0;
+
+    if (maxSegments > 0) {
+      List<Path> segments = segments();
+      for (int i = 0; i < segments.size() - maxSegments; i++) {
+        Files.deleteIfExists(segments.get(i));
+      }
+    }
+  }
+
+  private void closeSegment() {
+    if (segment == null) {
+      return;
+    }
+    try {
+      segment.close();
+    }
+    catch (IOException e) {
+      log.warn("Could not close audit segment", e);
+    }
+    segment = null;
+  }
+
+  private long lastSequence() throws IOException {
+    List<Path> segments = segments();
+    for (int i = segments.size() - 1; i >= 0; i--) {
+      long last = 0;
+      try (Stream<String> lines = Files.lines(segments.get(i), StandardCharsets.UTF_8)) {
+        for (String line : (Iterable<String>) lines::iterator) {
+          AuditEvent event = AuditEvent.parse(line);
+          if (event != null) {
+            last = event.getSequence();
+          }
+        }
+      }
+      if (last > 0) {
+        return last;
+      }
+    }
+    return 0;
+  }
+
+  /**
+   * @return the segment files, oldest first (the zero-padded sequence sorts them)
+   */
+  private List<Path> segments() {
+    if (!Files.isDirectory(directory)) {
+      return List.of();
+    }
+    try (Stream<Path> files = Files.list(directory)) {
+      return files
+          .filter(file -> {
+            String name = file.getFileName().toString();
+            return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+          })
+          .sorted()
+          .collect(Collectors.toList());
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private static long firstMillis(Path segment) {
+    String name = segment.getFileName().toString();
+    return Long.parseLong(name.substring(name.lastIndexOf('-') + 1, name.length() - SEGMENT_SUFFIX.length()));
+  }
+}
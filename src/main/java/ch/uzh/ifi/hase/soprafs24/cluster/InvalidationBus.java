@@ -0,0 +1,268 @@
+package ch.uzh.ifi.hase.soprafs24.cluster;
+
+import ch.uzh.ifi.hase.soprafs24.service.UserChangedEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Invalidation Bus
+ * Keeps the per-node state derived from users (ProfileResponseCache,
+ * OnlineIndex, BirthdayIndex, ...) coherent when several nodes share the
+ * database. The UserChangedEvents of this node are queued after their commit
+ * and sent to the other nodes in batches by flush(), which runs every
+ * flush-interval-ms and whenever max-batch changes are queued. Repeated
+ * changes of the same kind to the same user are coalesced into the latest
+ * one, so the order of e.g. a login and going offline is kept.
+ * Received changes are published again as remote UserChangedEvents, which
+ * the bus itself and the AuditLog ignore. Every message carries the random
+ * id of its node and a sequence number; a gap means messages got lost, and
+ * a UserCachesStaleEvent tells the caches to drop everything. A message
+ * whose sequence number was already seen is a duplicate and ignored. Nodes
+ * not heard of for sender-ttl-ms are forgotten, a restarted node comes back
+ * with a new id.
+ */
+@Component
+public class InvalidationBus {
+
+  private static final int MAGIC = 0x55494E56;
+  private static final byte VERSION = 1;
+  private static final int HEADER_BYTES = 4 + 1 + 8 + 8 + 4;
+  private static final int CHANGE_BYTES = 1 + 8;
+  private static final UserChangedEvent.Kind[] KINDS = UserChangedEvent.Kind.values();
+
+  private final Logger log = LoggerFactory.getLogger(InvalidationBus.class);
+
+  private final InvalidationTransport transport;
+  private final ApplicationEventPublisher eventPublisher;
+  private final int maxBatch;
+  private final long node = ThreadLocalRandom.current().nextLong();
+
+  // a change is moved to the end when it is queued again
+  private final LinkedHashSet<Change> pending = new LinkedHashSet<>();
+  private final Object sendLock = new Object();
+  private long nextSequence = 1;
+  private final ConcurrentHashMap<Long, Sender> senders = new ConcurrentHashMap<>();
+  private final long senderTtlMillis;
+
+  private final LongAdder sent = new LongAdder();
+  private final LongAdder coalesced = new LongAdder();
+  private final LongAdder received = new LongAdder();
+  private final LongAdder gaps = new LongAdder();
+
+  public InvalidationBus(InvalidationTransport transport, ApplicationEventPublisher eventPublisher,
+                         @Value("${users.cluster.max-batch:512}") int maxBatch,
+                         @Value("${users.cluster.sender-ttl-ms:3600000}") long senderTtlMillis) {
+    this.transport = transport;
+    this.eventPublisher = eventPublisher;
+    this.senderTtlMillis = senderTtlMillis;
+    // one message has to fit a datagram
+    this.maxBatch = Math.min(maxBatch, (UdpTransport.MAX_MESSAGE_BYTES - HEADER_BYTES) / CHANGE_BYTES);
+  }
+
+  private static final class Change {
+    private final UserChangedEvent.Kind kind;
+    private final long userId;
+
+    private Change(UserChangedEvent.Kind kind, long userId) {
+      this.kind = kind;
+      this.userId = userId;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof Change)) {
+        return false;
+      }
+      Change other = (Change) o;
+      return kind == other.kind && userId == other.userId;
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(kind, userId);
+    }
+  }
+
+  private static final class Sender {
+    private final long lastSequence;
+    private final long lastSeenMillis;
+
+    private Sender(long lastSequence, long lastSeenMillis) {
+      this.lastSequence = lastSequence;
+      this.lastSeenMillis = lastSeenMillis;
+    }
+  }
+
+  @PostConstruct
+  public void start() throws IOException {
+    transport.start(this::receive);
+  }
+
+  @PreDestroy
+  public void stop() {
+    flush();
+    transport.close();
+  }
+
+  @TransactionalEventListener(fallbackExecution = true)
+  public void onUserChanged(UserChangedEvent event) {
+    if (event.isRemote()) {
+      return;
+    }
+    int queued;
+    synchronized (pending) {
+      for (Long userId : event.getUserIds()) {
+        Change change = new Change(event.getKind(), userId);
+        if (pending.remove(change)) {
+          coalesced.increment();
+        }
+        pending.add(change);
+      }
+      queued = pending.size();
+    }
+    if (queued >= maxBatch) {
+      flush();
+    }
+  }
+
+  /**
+   * Sends the queued changes, at most max-batch per message.
+   */
+  @Scheduled(fixedDelayString = "${users.cluster.flush-interval-ms:20}")
+  public void flush() {
+    synchronized (sendLock) {
+      List<Change> changes;
+      synchronized (pending) {
+        if (pending.isEmpty()) {
+          return;
+        }
+        changes = new ArrayList<>(pending);
+        pending.clear();
+      }
+      for (int from = 0; from < changes.size(); from += maxBatch) {
+        List<Change> batch = changes.subList(from, Math.min(from + maxBatch, changes.size()));
+        // a failed message still uses up its sequence number, so the others see the gap
+        byte[] message = encode(nextSequence++, batch);
+        try {
+          transport.send(message);
+          sent.add(batch.size());
+        }
+        catch (IOException | RuntimeException e) {
+          log.warn("Could not send {} user changes to the cluster", batch.size(), e);
+        }
+      }
+    }
+  }
+
+  /**
+   * Forgets the nodes that sent nothing for sender-ttl-ms.
+   */
+  @Scheduled(fixedDelayString = "${users.cluster.sender-ttl-ms:3600000}")
+  public void evictIdleSenders() {
+    long idleSince = System.currentTimeMillis() - senderTtlMillis;
+    senders.values().removeIf(sender -> sender.lastSeenMillis < idleSince);
+  }
+
+  public int getKnownSenders() {
+    return senders.size();
+  }
+
+  public long getNode() {
+    return node;
+  }
+
+  public long getSent() {
+    return sent.sum();
+  }
+
+  public long getCoalesced() {
+    return coalesced.sum();
+  }
+
+  public long getReceived() {
+    return received.sum();
+  }
+
+  public long getGaps() {
+    return gaps.sum();
+  }
+
+  void receive(byte[] message) {
+    ByteBuffer buffer = ByteBuffer.wrap(message);
+    try {
+      if (buffer.getInt() != MAGIC || buffer.get() != VERSION) {
+        log.warn("Ignoring a message of {} bytes that is not an invalidation", message.length);
+        return;
+      }
+      long sender = buffer.getLong();
+      long sequence = buffer.getLong();
+      int count = buffer.getInt();
+      if (sender == node) {
+        return;
+      }
+
+      // the messages of one node are sent one after the other, so they arrive in order or not at all
+      Sender known = senders.get(sender);
+      Long last = known == null ? null : known.lastSequence;
+      if (last != null && sequence <= last) {
+        log.debug("Ignoring the repeated invalidation {} of node {}", sequence, Long.toHexString(sender));
+        return;
+      }
+      senders.put(sender, new Sender(sequence, System.currentTimeMillis()));
+      if (last != null && sequence != last + 1) {
+        gaps.increment();
+        log.warn("Lost invalidations of node {} between {} and {}", Long.toHexString(sender), last, sequence);
+        eventPublisher.publishEvent(new UserCachesStaleEvent(sender));
+      }
+
+      // consecutive changes of one kind become one event
+      UserChangedEvent.Kind kind = null;
+      List<Long> userIds = new ArrayList<>();
+      for (int i = 0; i < count; i++) {
+        UserChangedEvent.Kind next = KINDS[buffer.get()];
+        long userId = buffer.getLong();
+        if (next != kind && !userIds.isEmpty()) {
+          eventPublisher.publishEvent(new UserChangedEvent(kind, userIds, true));
+          userIds.clear();
+        }
+        kind = next;
+        userIds.add(userId);
+      }
+      if (!userIds.isEmpty()) {
+        eventPublisher.publishEvent(new UserChangedEvent(kind, userIds, true));
+      }
+      received.add(count);
+    }
+    catch (BufferUnderflowException | ArrayIndexOutOfBoundsException e) {
+      log.warn("Ignoring a malformed invalidation message of {} bytes", message.length);
+    }
+  }
+
+  private byte[] encode(long sequence, List<Change> batch) {
+    ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + batch.size() * CHANGE_BYTES);
+    buffer.putInt(MAGIC).put(VERSION).putLong(node).putLong(sequence).putInt(batch.size());
+    for (Change change : batch) {
+      buffer.put((byte) change.kind.ordinal()).putLong(change.userId);
+    }
+    return buffer.array();
+  }
+}
@@ -0,0 +1,24 @@
+package ch.uzh.ifi.hase.soprafs24.cluster;
+
+import java.io.IOException;
+import java.util.function.Consumer;
+
+/**
+ * Carries the messages of the InvalidationBus to the other nodes. Delivery
+ * is best effort; the bus detects lost messages by their sequence numbers.
+ */
+public interface InvalidationTransport {
+
+  /**
+   * Starts receiving; messages of other nodes are passed to the receiver,
+   * possibly from a thread of the transport.
+   */
+  void start(Consumer<byte[]> receiver) throws IOException;
+
+  /**
+   * Sends the message to all other nodes.
+   */
+  void send(byte[] message) throws IOException;
+
+  void close();
+}
@@ -0,0 +1,47 @@
+package ch.uzh.ifi.hase.soprafs24.cluster;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Loopback Transport
+ * Connects the buses of one JVM that use the same group name, so several
+ * application contexts (or a test) form a cluster without a network. A
+ * message is handed to the receivers of the other members on the sending
+ * thread. With a single member it is a no-op.
+ */
+public class LoopbackTransport implements InvalidationTransport {
+
+  private static final ConcurrentHashMap<String, Set<LoopbackTransport>> GROUPS = new ConcurrentHashMap<>();
+
+  private final String group;
+  private volatile Consumer<byte[]> receiver;
+
+  public LoopbackTransport(String group) {
+    this.group = group;
+  }
+
+  @Override
+  public void start(Consumer<byte[]> receiver) {
+    this.receiver = receiver;
+    GROUPS.computeIfAbsent(group, name -> ConcurrentHashMap.newKeySet()).add(this);
+  }
+
+  @Override
+  public void send(byte[] message) {
+    for (LoopbackTransport member : GROUPS.getOrDefault(group, Set.of())) {
+      if (member != this) {
+        member.receiver.accept(message.clone());
+      }
+    }
+  }
+
+  @Override
+  public void close() {
+    GROUPS.computeIfPresent(group, (name, members) -> {
+      members.remove(this);
+      return members.isEmpty() ? null : members;
+    });
+  }
+}
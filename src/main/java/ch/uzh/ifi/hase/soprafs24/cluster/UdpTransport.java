@@ -0,0 +1,202 @@
+package ch.uzh.ifi.hase.soprafs24.cluster;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * UDP Transport
+ * Sends every message as one datagram to each configured peer and receives
+ * on the bound port with a daemon thread. No broker is needed, but every
+ * node has to list the others (users.cluster.udp.peers). Datagrams may get
+ * lost; the InvalidationBus notices the gap and drops the user caches.
+ * Datagrams from any other address than a peer are dropped. With a shared
+ * secret every datagram carries an HMAC-SHA256 of the message, and ones
+ * without a valid one are dropped too, so a spoofed source address is not
+ * enough to forge changes.
+ */
+public class UdpTransport implements InvalidationTransport {
+
+  public static final int MAX_DATAGRAM_BYTES = 65507;
+  public static final int MAC_BYTES = 32;
+  /**
+   * The largest message that fits a datagram together with its MAC.
+   */
+  public static final int MAX_MESSAGE_BYTES = MAX_DATAGRAM_BYTES - MAC_BYTES;
+
+  private static final String MAC_ALGORITHM = "HmacSHA256";
+
+  private final Logger log = LoggerFactory.getLogger(UdpTransport.class);
+
+  private final InetSocketAddress bindAddress;
+  private final List<InetSocketAddress> peers;
+  private final Set<InetSocketAddress> resolvedPeers = new HashSet<>();
+  private final SecretKeySpec key;
+  private DatagramChannel channel;
+  private Thread receiverThread;
+
+  /**
+   * @param secret shared by all nodes, empty to send and accept messages without a MAC
+   */
+  public UdpTransport(InetSocketAddress bindAddress, List<InetSocketAddress> peers, byte[] secret) {
+    this.bindAddress = bindAddress;
+    this.peers = new ArrayList<>(peers);
+    this.key = secret.length == 0 ? null : new SecretKeySpec(secret, MAC_ALGORITHM);
+  }
+
+  /**
+   * @param peers comma-separated host:port pairs
+   */
+  public static List<InetSocketAddress> parsePeers(String peers) {
+    List<InetSocketAddress> addresses = new ArrayList<>();
+    for (String peer : peers.split(",")) {
+      String trimmed = peer.trim();
+      if (trimmed.isEmpty()) {
+        continue;
+      }
+      int colon = trimmed.lastIndexOf(':');
+      if (colon < 0) {
+        throw new IllegalArgumentException("Peer without port: " + trimmed);
+      }
+      addresses.add(new InetSocketAddress(trimmed.substring(0, colon), Integer.parseInt(trimmed.substring(colon + 1))));
+    }
+    return addresses;
+  }
+
+  @Override
+  public void start(Consumer<byte[]> receiver) throws IOException {
+    for (InetSocketAddress peer : peers) {
+      if (peer.isUnresolved()) {
+        throw new IOException("Could not resolve the peer " + peer);
+      }
+      resolvedPeers.add(new InetSocketAddress(peer.getAddress(), peer.getPort()));
+    }
+    if (key == null) {
+      log.warn("Invalidation messages are not authenticated, set users.cluster.udp.secret");
+    }
+    channel = DatagramChannel.open();
+    channel.bind(bindAddress);
+    receiverThread = new Thread(() -> receiveLoop(receiver), "invalidation-udp");
+    receiverThread.setDaemon(true);
+    receiverThread.start();
+    log.info("Invalidation bus listening on UDP {} with peers {}", channel.getLocalAddress(), peers);
+  }
+
+  /**
+   * @return the bound address, with the actual port if port 0 was configured
+   */
+  public InetSocketAddress getLocalAddress() throws IOException {
+    return (InetSocketAddress) channel.getLocalAddress();
+  }
+
+  @Override
+  public void send(byte[] message) throws IOException {
+    if (message.length > MAX_MESSAGE_BYTES) {
+      throw new IllegalArgumentException("Message of " + message.length + " bytes does not fit a datagram");
+    }
+    ByteBuffer buffer = ByteBuffer.allocate(message.length + (key == null ? 0 : MAC_BYTES)).put(message);
+    if (key != null) {
+      buffer.put(mac(message, message.length));
+    }
+    for (InetSocketAddress peer : peers) {
+      buffer.rewind();
+      channel.send(buffer, peer);
+    }
+  }
+
+  @Override
+  public void close() {
+    if (channel == null) {
+      return;
+    }
+    try {
+      channel.close();
+      receiverThread.join(TimeUnit.SECONDS.toMillis(5));
+    }
+    catch (IOException e) {
+      log.warn("Could not close the invalidation channel", e);
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void receiveLoop(Consumer<byte[]> receiver) {
+    ByteBuffer buffer = ByteBuffer.allocate(MAX_DATAGRAM_BYTES);
+    while (channel.isOpen()) {
+      try {
+        buffer.clear();
+        SocketAddress sender = channel.receive(buffer);
+        if (sender == null) {
+          continue;
+        }
+        if (!resolvedPeers.contains(sender)) {
+          log.warn("Dropping an invalidation message from {}, which is not a peer", sender);
+          continue;
+        }
+        buffer.flip();
+        byte[] datagram = new byte[buffer.remaining()];
+        buffer.get(datagram);
+        byte[] message = verify(datagram);
+        if (message == null) {
+          log.warn("Dropping an invalidation message from {} without a valid MAC", sender);
+          continue;
+        }
+        receiver.accept(message);
+      }
+      catch (ClosedChannelException e) {
+        return;
+      }
+      catch (IOException | RuntimeException e) {
+        log.warn("Could not handle an invalidation message", e);
+      }
+    }
+  }
+
+  /**
+   * @return the message without its MAC, or null if the MAC does not match
+   */
+  private byte[] verify(byte[] datagram) {
+    if (key == null) {
+      return datagram;
+    }
+    int length = datagram.length - MAC_BYTES;
+    if (length < 0) {
+      return null;
+    }
+    byte[] expected = mac(datagram, length);
+    byte[] actual = Arrays.copyOfRange(datagram, length, datagram.length);
+    return MessageDigest.isEqual(expected, actual) ? Arrays.copyOf(datagram, length) : null;
+  }
+
+  private byte[] mac(byte[] data, int length) {
+    try {
+      // a Mac is not thread-safe, and sending and receiving run on different threads
+      Mac mac = Mac.getInstance(MAC_ALGORITHM);
+      mac.init(key);
+      mac.update(data, 0, length);
+      return mac.doFinal();
+    }
+    catch (GeneralSecurityException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+}
@@ -0,0 +1,27 @@
+package ch.uzh.ifi.hase.soprafs24.cluster;
+
+/**
+ * Published by the InvalidationBus when messages of another node got lost,
+ * so any user may have changed without a UserChangedEvent reaching this
+ * node. Caches of users should drop all their entries.
+ */
+public class UserCachesStaleEvent {
+
+  private final long node;
+
+  public UserCachesStaleEvent(long node) {
+    this.node = node;
+  }
+
+  /**
+   * @return the id of the node whose messages were lost
+   */
+  public long getNode() {
+    return node;
+  }
+
+  @Override
+  public String toString() {
+    return "UserCachesStaleEvent{node " + Long.toHexString(node) + "}";
+  }
+}
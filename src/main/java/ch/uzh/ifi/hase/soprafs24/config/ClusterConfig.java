@@ -0,0 +1,41 @@
+package ch.uzh.ifi.hase.soprafs24.config;
+
+import ch.uzh.ifi.hase.soprafs24.cluster.InvalidationTransport;
+import ch.uzh.ifi.hase.soprafs24.cluster.LoopbackTransport;
+import ch.uzh.ifi.hase.soprafs24.cluster.UdpTransport;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Cluster Configuration
+ * Chooses the transport of the InvalidationBus with users.cluster.transport:
+ * loopback (default) only reaches the other application contexts of this
+ * JVM that set the same users.cluster.loopback.group (without one, a context
+ * is alone), udp the peers listed in users.cluster.udp.peers. The udp
+ * transport has no default bind address: it has to be the interface the
+ * peers reach, not every interface of the host.
+ */
+@Configuration
+public class ClusterConfig {
+
+  @Bean
+  @ConditionalOnProperty(prefix = "users.cluster", name = "transport", havingValue = "loopback", matchIfMissing = true)
+  public InvalidationTransport loopbackTransport(@Value("${users.cluster.loopback.group:${random.uuid}}") String group) {
+    return new LoopbackTransport(group);
+  }
+
+  @Bean
+  @ConditionalOnProperty(prefix = "users.cluster", name = "transport", havingValue = "udp")
+  public InvalidationTransport udpTransport(@Value("${users.cluster.udp.bind}") String bind,
+                                            @Value("${users.cluster.udp.port:7600}") int port,
+                                            @Value("${users.cluster.udp.peers:}") String peers,
+                                            @Value("${users.cluster.udp.secret:}") String secret) {
+    return new UdpTransport(new InetSocketAddress(bind, port), UdpTransport.parsePeers(peers),
+        secret.getBytes(StandardCharsets.UTF_8));
+  }
+}
@@ -0,0 +1,20 @@
+package ch.uzh.ifi.hase.soprafs24.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.lang.NonNull;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Internal Endpoint Configuration
+ * The endpoints under /internal (traces, recordings, ...) are for operators
+ * on the machine itself and only answer local callers.
+ */
+@Configuration
+public class InternalEndpointConfig implements WebMvcConfigurer {
+
+  @Override
+  public void addInterceptors(@NonNull InterceptorRegistry registry) {
+    registry.addInterceptor(new LocalOnlyInterceptor()).addPathPatterns("/internal/**");
+  }
+}
@@ -0,0 +1,38 @@
+package ch.uzh.ifi.hase.soprafs24.config;
+
+import ch.uzh.ifi.hase.soprafs24.exceptions.ForbiddenException;
+import org.springframework.lang.NonNull;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+
+/**
+ * Local Only Interceptor
+ * Rejects every caller that does not connect from the loopback interface.
+ * Guards the operational endpoints under /internal.
+ */
+public class LocalOnlyInterceptor implements HandlerInterceptor {
+
+  @Override
+  public boolean preHandle(@NonNull HttpServletRequest request, @NonNull HttpServletResponse response,
+                           @NonNull Object handler) {
+    if (!isLoopback(request.getRemoteAddr())) {
+      throw new ForbiddenException("Only available from localhost");
+    }
+    return true;
+  }
+
+  private static boolean isLoopback(String address) {
+    try {
+      // the remote address is always a literal IP, so this does not resolve anything
+      return InetAddress.getByName(address).isLoopbackAddress();
+    }
+    catch (UnknownHostException e) {
+      return false;
+    }
+  }
+}
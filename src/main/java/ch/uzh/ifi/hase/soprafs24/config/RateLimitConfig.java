@@ -0,0 +1,27 @@
+package ch.uzh.ifi.hase.soprafs24.config;
+
+import ch.uzh.ifi.hase.soprafs24.ratelimit.RateLimitInterceptor;
+import ch.uzh.ifi.hase.soprafs24.ratelimit.RateLimiter;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.lang.NonNull;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Rate Limit Configuration
+ * Limits the requests per client to the endpoints of the UserController.
+ */
+@Configuration
+public class RateLimitConfig implements WebMvcConfigurer {
+
+  private final RateLimiter rateLimiter;
+
+  RateLimitConfig(RateLimiter rateLimiter) {
+    this.rateLimiter = rateLimiter;
+  }
+
+  @Override
+  public void addInterceptors(@NonNull InterceptorRegistry registry) {
+    registry.addInterceptor(new RateLimitInterceptor(rateLimiter)).addPathPatterns("/users", "/users/**", "/login/**");
+  }
+}
@@ -0,0 +1,63 @@
+package ch.uzh.ifi.hase.soprafs24.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+
+import java.util.Map;
+
+/**
+ * Replica DataSource Configuration
+ * Only active when users.datasource.replica.url is set. The primary is built
+ * from the regular spring.datasource.* properties, its pool from
+ * spring.datasource.hikari.* like the one Boot would build; JPA then runs on a
+ * ReplicaRoutingDataSource over both, so the read-only methods of the
+ * UserService are served by the replica.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "users.datasource.replica", name = "url")
+public class ReplicaDataSourceConfig {
+
+  @Bean
+  @ConfigurationProperties("spring.datasource.hikari")
+  public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+    return properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+  }
+
+  @Bean
+  public DataSource replicaDataSource(DataSourceProperties properties,
+                                      @Value("${users.datasource.replica.url}") String url,
+                                      @Value("${users.datasource.replica.username:${spring.datasource.username:}}") String username,
+                                      @Value("${users.datasource.replica.password:${spring.datasource.password:}}") String password) {
+    return DataSourceBuilder.create()
+        .driverClassName(properties.determineDriverClassName())
+        .url(url)
+        .username(username)
+        .password(password)
+        .build();
+  }
+
+  @Bean
+  @Primary
+  public DataSource dataSource(@Qualifier("primaryDataSource") DataSource primaryDataSource,
+                               @Qualifier("replicaDataSource") DataSource replicaDataSource,
+                               @Value("${users.datasource.replica.max-lag-ms:1000}") long maxLagMillis) {
+    ReplicaRoutingDataSource routingDataSource = new ReplicaRoutingDataSource(maxLagMillis);
+    routingDataSource.setTargetDataSources(Map.of(
+        ReplicaRoutingDataSource.Target.PRIMARY, primaryDataSource,
+        ReplicaRoutingDataSource.Target.REPLICA, replicaDataSource));
+    routingDataSource.setDefaultTargetDataSource(primaryDataSource);
+    routingDataSource.afterPropertiesSet();
+    return new LazyConnectionDataSourceProxy(routingDataSource);
+  }
+}
@@ -0,0 +1,116 @@
+package ch.uzh.ifi.hase.soprafs24.config;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import javax.servlet.http.HttpServletRequest;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Replica Routing DataSource
+ * Sends read-only transactions to the replica and everything else to the
+ * primary. A client (identified by its token, or its address before it has
+ * one) that committed a write keeps reading from the primary for maxLag, so
+ * it sees its own changes even if the replica is behind. Reads that are kept
+ * beyond the request (e.g. by a cache) go through readFromPrimary.
+ * Has to be wrapped in a LazyConnectionDataSourceProxy: the physical
+ * connection must only be fetched once the read-only flag of the transaction
+ * is known.
+ */
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+
+  public enum Target {
+    PRIMARY, REPLICA
+  }
+
+  private static final int MAX_TRACKED_CLIENTS = 10_000;
+
+  private static final ThreadLocal<Boolean> PRIMARY_READS = ThreadLocal.withInitial(() -> false);
+
+  private final long maxLagNanos;
+  private final ConcurrentHashMap<String, Long> lastWrites = new ConcurrentHashMap<>();
+
+  public ReplicaRoutingDataSource(long maxLagMillis) {
+    this.maxLagNanos = maxLagMillis * 1_000_000;
+  }
+
+  @Override
+  protected Object determineCurrentLookupKey() {
+    List<String> clients = currentClients();
+
+    if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+      if (!clients.isEmpty() && TransactionSynchronizationManager.isSynchronizationActive()) {
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+          @Override
+          public void afterCommit() {
+            recordWrite(clients);
+          }
+        });
+      }
+      return Target.PRIMARY;
+    }
+
+    return PRIMARY_READS.get() || wroteRecently(clients) ? Target.PRIMARY : Target.REPLICA;
+  }
+
+  /**
+   * Sends the read-only statements of the read to the primary, without
+   * counting it as a write of the client.
+   */
+  public static <T> T readFromPrimary(Supplier<T> read) {
+    if (PRIMARY_READS.get()) {
+      return read.get();
+    }
+    PRIMARY_READS.set(true);
+    try {
+      return read.get();
+    }
+    finally {
+      PRIMARY_READS.remove();
+    }
+  }
+
+  private void recordWrite(List<String> clients) {
+    long now = System.nanoTime();
+    for (String client : clients) {
+      lastWrites.put(client, now);
+    }
+    // only recent writes matter, so the map is trimmed instead of growing with every client
+    if (lastWrites.size() > MAX_TRACKED_CLIENTS) {
+      lastWrites.values().removeIf(writtenAt -> now - writtenAt > maxLagNanos);
+    }
+  }
+
+  private boolean wroteRecently(List<String> clients) {
+    long now = System.nanoTime();
+    for (String client : clients) {
+      Long writtenAt = lastWrites.get(client);
+      if (writtenAt != null && now - writtenAt <= maxLagNanos) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static List<String> currentClients() {
+    RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+    if (!(attributes instanceof ServletRequestAttributes)) {
+      return List.of();
+    }
+    HttpServletRequest request = ((ServletRequestAttributes) attributes).getRequest();
+
+    // clients behind one NAT or proxy share an address, only the ones without a token go by it
+    String token = request.getHeader("Authorization");
+    if (token != null && !token.isBlank()) {
+      return List.of("token:" + token.trim());
+    }
+    return List.of("address:" + request.getRemoteAddr());
+  }
+}
@@ -0,0 +1,55 @@
+package ch.uzh.ifi.hase.soprafs24.config;
+
+import ch.uzh.ifi.hase.soprafs24.repository.ShardContext;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import javax.sql.DataSource;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Shard Routing DataSource
+ * Hands out connections of the shard set in the ShardContext, the first
+ * shard if none is set. Like the ReplicaRoutingDataSource it has to sit
+ * behind a LazyConnectionDataSourceProxy, so the connection is fetched
+ * after the shard was chosen.
+ */
+public class ShardRoutingDataSource extends AbstractRoutingDataSource implements DisposableBean {
+
+  private final List<DataSource> shards;
+
+  public ShardRoutingDataSource(List<DataSource> shards) {
+    this.shards = List.copyOf(shards);
+    Map<Object, Object> targets = new HashMap<>();
+    for (int shard = 0; shard < shards.size(); shard++) {
+      targets.put(shard, shards.get(shard));
+    }
+    setTargetDataSources(targets);
+    setDefaultTargetDataSource(shards.get(0));
+    afterPropertiesSet();
+  }
+
+  public List<DataSource> getShards() {
+    return shards;
+  }
+
+  @Override
+  protected Object determineCurrentLookupKey() {
+    Integer shard = ShardContext.current();
+    return shard == null ? 0 : shard;
+  }
+
+  @Override
+  public void destroy() throws IOException {
+    for (DataSource shard : shards) {
+      if (shard instanceof Closeable) {
+        ((Closeable) shard).close();
+      }
+    }
+  }
+}
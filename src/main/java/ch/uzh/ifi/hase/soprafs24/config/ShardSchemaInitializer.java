@@ -0,0 +1,59 @@
+package ch.uzh.ifi.hase.soprafs24.config;
+
+import ch.uzh.ifi.hase.soprafs24.repository.ShardedUserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+
+import java.util.List;
+
+/**
+ * Shard Schema Initializer
+ * Hibernate only creates the schema on the first shard. This copies it to
+ * the other shards if it is missing there, using H2's SCRIPT (the tables
+ * that are not partitioned simply stay empty), and moves the identity column
+ * of every shard to its id range.
+ */
+public class ShardSchemaInitializer implements InitializingBean {
+
+  private final Logger log = LoggerFactory.getLogger(ShardSchemaInitializer.class);
+
+  private final List<DataSource> shards;
+
+  public ShardSchemaInitializer(List<DataSource> shards) {
+    this.shards = shards;
+  }
+
+  @Override
+  public void afterPropertiesSet() {
+    JdbcTemplate first = new JdbcTemplate(shards.get(0));
+    List<String> script = null;
+
+    for (int shard = 1; shard < shards.size(); shard++) {
+      JdbcTemplate target = new JdbcTemplate(shards.get(shard));
+      Integer tables = target.queryForObject(
+          "SELECT COUNT(*) FROM INFORMATION_SCHEMA.TABLES WHERE TABLE_NAME = 'USER'", Integer.class);
+      if (tables == null || tables == 0) {
+        if (script == null) {
+          script = first.queryForList("SCRIPT NODATA", String.class);
+        }
+        for (String statement : script) {
+          // SCRIPT also returns comment lines, e.g. the row counts
+          if (!statement.startsWith("--")) {
+            target.execute(statement);
+          }
+        }
+        log.info("Created the user tables on shard {}", shard);
+      }
+
+      long firstId = ShardedUserRepository.firstId(shard);
+      Long maxId = target.queryForObject("SELECT MAX(ID) FROM USER", Long.class);
+      if (maxId == null || maxId < firstId) {
+        target.execute("ALTER TABLE USER ALTER COLUMN ID RESTART WITH " + firstId);
+      }
+    }
+  }
+}
@@ -0,0 +1,119 @@
+package ch.uzh.ifi.hase.soprafs24.config;
+
+import ch.uzh.ifi.hase.soprafs24.repository.ShardedUserRepository;
+import ch.uzh.ifi.hase.soprafs24.repository.UserRepository;
+import ch.uzh.ifi.hase.soprafs24.repository.UsernameClaimRepository;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.lang.NonNull;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import javax.persistence.EntityManagerFactory;
+import javax.sql.DataSource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Sharding Configuration
+ * Only active when users.sharding.urls is set. Every URL is one shard; the
+ * first one also holds everything that is not partitioned (sessions). The
+ * UserRepository is replaced by a ShardedUserRepository in front of it.
+ * Cannot be combined with the read replica.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "users.sharding", name = "urls")
+public class ShardingConfig {
+
+  @Bean
+  public ShardRoutingDataSource shardRoutingDataSource(DataSourceProperties properties,
+                                                       @Value("${users.sharding.urls}") String[] urls) {
+    List<DataSource> shards = new ArrayList<>(urls.length);
+    for (String url : urls) {
+      shards.add(DataSourceBuilder.create()
+          .driverClassName(properties.determineDriverClassName())
+          .url(url.trim())
+          .username(properties.determineUsername())
+          .password(properties.determinePassword())
+          .build());
+    }
+    return new ShardRoutingDataSource(shards);
+  }
+
+  @Bean
+  @Primary
+  public DataSource dataSource(ShardRoutingDataSource shardRoutingDataSource) {
+    return new LazyConnectionDataSourceProxy(shardRoutingDataSource);
+  }
+
+  // depends on the EntityManagerFactory, so Hibernate created the schema on the first shard before
+  @Bean
+  public ShardSchemaInitializer shardSchemaInitializer(ShardRoutingDataSource shardRoutingDataSource,
+                                                       EntityManagerFactory entityManagerFactory) {
+    return new ShardSchemaInitializer(shardRoutingDataSource.getShards());
+  }
+
+  @Bean
+  public static BeanPostProcessor shardedUserRepositoryPostProcessor(
+      ObjectProvider<UsernameClaimRepository> usernameClaimRepository,
+      ObjectProvider<PlatformTransactionManager> transactionManager,
+      ObjectProvider<ShardSchemaInitializer> shardSchemaInitializer,
+      @Value("${users.sharding.urls}") String[] urls) {
+    return new ShardedUserRepositoryPostProcessor(usernameClaimRepository, transactionManager,
+        shardSchemaInitializer, urls.length);
+  }
+
+  /**
+   * Wraps the userRepository bean, and owns the threads of the scatter
+   * queries, which are shut down with the context.
+   */
+  private static final class ShardedUserRepositoryPostProcessor implements BeanPostProcessor, DisposableBean {
+
+    private final ObjectProvider<UsernameClaimRepository> usernameClaimRepository;
+    private final ObjectProvider<PlatformTransactionManager> transactionManager;
+    private final ObjectProvider<ShardSchemaInitializer> shardSchemaInitializer;
+    private final int shardCount;
+    private final ExecutorService scatterExecutor;
+
+    private ShardedUserRepositoryPostProcessor(ObjectProvider<UsernameClaimRepository> usernameClaimRepository,
+                                               ObjectProvider<PlatformTransactionManager> transactionManager,
+                                               ObjectProvider<ShardSchemaInitializer> shardSchemaInitializer,
+                                               int shardCount) {
+      this.usernameClaimRepository = usernameClaimRepository;
+      this.transactionManager = transactionManager;
+      this.shardSchemaInitializer = shardSchemaInitializer;
+      this.shardCount = shardCount;
+      CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("shard-scatter-");
+      threadFactory.setDaemon(true);
+      this.scatterExecutor = Executors.newFixedThreadPool(shardCount * 2, threadFactory);
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(@NonNull Object bean, @NonNull String beanName) {
+      if ("userRepository".equals(beanName) && bean instanceof UserRepository) {
+        // the other shards need their tables before the first routed call
+        shardSchemaInitializer.getObject();
+        return ShardedUserRepository.wrap((UserRepository) bean, usernameClaimRepository.getObject(),
+            transactionManager.getObject(), scatterExecutor, shardCount);
+      }
+      return bean;
+    }
+
+    @Override
+    public void destroy() {
+      scatterExecutor.shutdown();
+    }
+  }
+}
@@ -0,0 +1,24 @@
+package ch.uzh.ifi.hase.soprafs24.config;
+
+import ch.uzh.ifi.hase.soprafs24.entity.UsernameClaim;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.orm.jpa.EntityManagerFactoryBuilderCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Unsharded Configuration
+ * Active when users.sharding.urls is not set (see ShardingConfig). The
+ * UsernameClaim entity is then left out of the persistence unit, so its table
+ * is not created; its repository is skipped the same way.
+ */
+@Configuration
+@ConditionalOnExpression("'${users.sharding.urls:}'.isEmpty()")
+public class UnshardedConfig {
+
+  @Bean
+  public EntityManagerFactoryBuilderCustomizer withoutUsernameClaims() {
+    return builder -> builder.setPersistenceUnitPostProcessors(
+        unit -> unit.getManagedClassNames().remove(UsernameClaim.class.getName()));
+  }
+}
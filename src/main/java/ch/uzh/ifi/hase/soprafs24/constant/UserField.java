@@ -0,0 +1,59 @@
+package ch.uzh.ifi.hase.soprafs24.constant;
+
+import ch.uzh.ifi.hase.soprafs24.exceptions.InvalidFieldsException;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The fields of UserGetDTO a client can select with fields=. The names are
+ * the JSON names as well as the properties of the User entity.
+ */
+public enum UserField {
+  ID("id"), USERNAME("username"), TOKEN("token"), STATUS("status"), BIRTHDAY("birthday"), DATE("date");
+
+  private final String fieldName;
+
+  UserField(String fieldName) {
+    this.fieldName = fieldName;
+  }
+
+  public String getFieldName() {
+    return fieldName;
+  }
+
+  /**
+   * @param fields comma-separated field names, e.g. "id,username"
+   * @return the fields in the given order, without duplicates
+   * @throws InvalidFieldsException if a name is unknown or none is given
+   */
+  public static List<UserField> parse(String fields) {
+    List<UserField> parsed = new ArrayList<>();
+    for (String name : fields.split(",")) {
+      String trimmed = name.trim();
+      if (trimmed.isEmpty()) {
+        continue;
+      }
+      UserField field = byName(trimmed);
+      if (field == null) {
+        throw new InvalidFieldsException("Unknown field: " + trimmed);
+      }
+      if (!parsed.contains(field)) {
+        parsed.add(field);
+      }
+    }
+    if (parsed.isEmpty()) {
+      throw new InvalidFieldsException("No fields selected");
+    }
+    return parsed;
+  }
+
+  private static UserField byName(String fieldName) {
+    for (UserField field : values()) {
+      if (field.fieldName.equals(fieldName)) {
+        return field;
+      }
+    }
+    return null;
+  }
+}
@@ -0,0 +1,36 @@
+package ch.uzh.ifi.hase.soprafs24.controller;
+
+import ch.uzh.ifi.hase.soprafs24.audit.AuditEvent;
+import ch.uzh.ifi.hase.soprafs24.audit.AuditLog;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Audit Controller
+ * Lets operators on the same machine read the audit trail
+ * (see InternalEndpointConfig).
+ */
+@RestController
+public class AuditController {
+
+  private final AuditLog auditLog;
+
+  AuditController(AuditLog auditLog) {
+    this.auditLog = auditLog;
+  }
+
+  @GetMapping("/internal/audit")
+  @ResponseStatus(HttpStatus.OK)
+  @ResponseBody
+  public List<AuditEvent> getAuditEvents(
+      @RequestParam(value = "userId", required = false) Long userId,
+      @RequestParam(value = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+      @RequestParam(value = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to,
+      @RequestParam(value = "limit", defaultValue = "1000") int limit) {
+    return auditLog.query(userId, from, to, limit);
+  }
+}
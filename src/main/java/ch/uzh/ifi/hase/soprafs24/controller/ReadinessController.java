@@ -0,0 +1,34 @@
+package ch.uzh.ifi.hase.soprafs24.controller;
+
+import ch.uzh.ifi.hase.soprafs24.rest.dto.ReadinessDTO;
+import ch.uzh.ifi.hase.soprafs24.warmup.WarmUp;
+import org.springframework.boot.availability.ApplicationAvailability;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+/**
+ * Readiness Controller
+ * Tells load balancers and orchestrators whether to send traffic: 200 once
+ * the application accepts traffic, which is after the WarmUp finished,
+ * 503 before.
+ */
+@RestController
+public class ReadinessController {
+
+  private final ApplicationAvailability applicationAvailability;
+  private final WarmUp warmUp;
+
+  ReadinessController(ApplicationAvailability applicationAvailability, WarmUp warmUp) {
+    this.applicationAvailability = applicationAvailability;
+    this.warmUp = warmUp;
+  }
+
+  @GetMapping("/readiness")
+  public ResponseEntity<ReadinessDTO> getReadiness() {
+    ReadinessState state = applicationAvailability.getReadinessState();
+    HttpStatus status = state == ReadinessState.ACCEPTING_TRAFFIC ? HttpStatus.OK : HttpStatus.SERVICE_UNAVAILABLE;
+    return ResponseEntity.status(status).body(new ReadinessDTO(state.name(), warmUp.getDurationMillis()));
+  }
+}
@@ -0,0 +1,52 @@
+package ch.uzh.ifi.hase.soprafs24.controller;
+
+import ch.uzh.ifi.hase.soprafs24.rest.dto.RecordingDTO;
+import ch.uzh.ifi.hase.soprafs24.service.RecordingService;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+/**
+ * Recording Controller
+ * Lets operators on the same machine capture JDK Flight Recorder profiles
+ * at runtime (see InternalEndpointConfig).
+ */
+@RestController
+public class RecordingController {
+
+  private final RecordingService recordingService;
+
+  RecordingController(RecordingService recordingService) {
+    this.recordingService = recordingService;
+  }
+
+  @GetMapping("/internal/recordings")
+  @ResponseStatus(HttpStatus.OK)
+  @ResponseBody
+  public List<RecordingDTO> getRecordings() {
+    return recordingService.getRecordings();
+  }
+
+  @PostMapping("/internal/recordings")
+  @ResponseStatus(HttpStatus.CREATED)
+  @ResponseBody
+  public RecordingDTO startRecording(@RequestParam(value = "name", defaultValue = "incident") String name,
+                                     @RequestParam(value = "settings", defaultValue = "profile") String settings) {
+    return recordingService.start(name, settings);
+  }
+
+  @PostMapping("/internal/recordings/{id}/dump")
+  @ResponseStatus(HttpStatus.OK)
+  @ResponseBody
+  public RecordingDTO dumpRecording(@PathVariable long id) {
+    return recordingService.dump(id);
+  }
+
+  @PostMapping("/internal/recordings/{id}/stop")
+  @ResponseStatus(HttpStatus.OK)
+  @ResponseBody
+  public RecordingDTO stopRecording(@PathVariable long id) {
+    return recordingService.stop(id);
+  }
+}
@@ -0,0 +1,30 @@
+package ch.uzh.ifi.hase.soprafs24.controller;
+
+import ch.uzh.ifi.hase.soprafs24.tracing.Trace;
+import ch.uzh.ifi.hase.soprafs24.tracing.Tracer;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+/**
+ * Trace Controller
+ * Exposes the sampled request traces to operators on the same machine
+ * (see InternalEndpointConfig).
+ */
+@RestController
+public class TraceController {
+
+  private final Tracer tracer;
+
+  TraceController(Tracer tracer) {
+    this.tracer = tracer;
+  }
+
+  @GetMapping("/internal/traces")
+  @ResponseStatus(HttpStatus.OK)
+  @ResponseBody
+  public List<Trace> getTraces(@RequestParam(value = "limit", defaultValue = "50") int limit) {
+    return tracer.recent(limit);
+  }
+}
@@ -1,17 +1,39 @@
 package ch.uzh.ifi.hase.soprafs24.controller;
 
+import ch.uzh.ifi.hase.soprafs24.constant.UserField;
 import ch.uzh.ifi.hase.soprafs24.entity.User;
+import ch.uzh.ifi.hase.soprafs24.exceptions.ForbiddenException;
+import ch.uzh.ifi.hase.soprafs24.exceptions.PayloadTooLargeException;
+import ch.uzh.ifi.hase.soprafs24.exceptions.TooManyRequestsException;
+import ch.uzh.ifi.hase.soprafs24.exceptions.UnauthorizedException;
+import ch.uzh.ifi.hase.soprafs24.exceptions.UserNotFoundException;
+import ch.uzh.ifi.hase.soprafs24.rest.dto.OnlineUsersDTO;
+import ch.uzh.ifi.hase.soprafs24.rest.dto.UserBatchEditDTO;
+import ch.uzh.ifi.hase.soprafs24.rest.dto.UserBatchResultDTO;
+import ch.uzh.ifi.hase.soprafs24.rest.dto.UserFieldsDTO;
 import ch.uzh.ifi.hase.soprafs24.rest.dto.UserGetDTO;
 import ch.uzh.ifi.hase.soprafs24.rest.dto.UserPostDTO;
 import ch.uzh.ifi.hase.soprafs24.rest.dto.UserPutDTO;
+import ch.uzh.ifi.hase.soprafs24.rest.dto.UserStatisticsDTO;
 import ch.uzh.ifi.hase.soprafs24.rest.dto.LogOutDTO;
 import ch.uzh.ifi.hase.soprafs24.rest.mapper.DTOMapper;
+import ch.uzh.ifi.hase.soprafs24.service.AdminAllowlist;
+import ch.uzh.ifi.hase.soprafs24.service.LoginThrottle;
+import ch.uzh.ifi.hase.soprafs24.service.OnlineIndex;
+import ch.uzh.ifi.hase.soprafs24.service.ProfileResponseCache;
 import ch.uzh.ifi.hase.soprafs24.service.UserService;
+import ch.uzh.ifi.hase.soprafs24.service.UserStatistics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ResponseStatusException;
 
+import javax.servlet.http.HttpServletRequest;
+
+import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
@@ -32,20 +54,47 @@ import org.slf4j.LoggerFactory;
 public class UserController {
   private static final Logger logger = LoggerFactory.getLogger(UserController.class);
   private final UserService userService;
+  private final ProfileResponseCache profileResponseCache;
+  private final UserStatistics userStatistics;
+  private final LoginThrottle loginThrottle;
+  private final OnlineIndex onlineIndex;
+  private final AdminAllowlist adminAllowlist;
+  private final int maxBatchSize;
+  private final int maxOnlineIds;
 
-  UserController(UserService userService) {
+  UserController(UserService userService, ProfileResponseCache profileResponseCache, UserStatistics userStatistics,
+                 LoginThrottle loginThrottle, OnlineIndex onlineIndex, AdminAllowlist adminAllowlist,
+                 @Value("${users.batch.max-size:1000}") int maxBatchSize,
+                 @Value("${users.online.max-ids:10000}") int maxOnlineIds) {
     this.userService = userService;
+    this.profileResponseCache = profileResponseCache;
+    this.userStatistics = userStatistics;
+    this.loginThrottle = loginThrottle;
+    this.onlineIndex = onlineIndex;
+    this.adminAllowlist = adminAllowlist;
+    this.maxBatchSize = maxBatchSize;
+    this.maxOnlineIds = maxOnlineIds;
   }
 
   @GetMapping("/users")
   @ResponseStatus(HttpStatus.OK)
   @ResponseBody
-  public List<UserGetDTO> getAllUsers(@RequestHeader (value = "Authorization", required = false) String authToken) {
+  public List<?> getAllUsers(@RequestHeader (value = "Authorization", required = false) String authToken,
+                             @RequestParam(value = "fields", required = false) String fields) {
 
     // Validate the token
-    User authenticatedUser = userService.getUserByToken(authToken);
-    if (authToken == null || authenticatedUser == null) {
-        throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Invalid or missing token");
+    if (authToken == null || userService.getUserByToken(authToken) == null) {
+        throw new UnauthorizedException("Invalid or missing token");
+    }
+
+    // only read and write the selected fields
+    if (fields != null) {
+      List<UserField> selected = UserField.parse(fields);
+      List<UserFieldsDTO> userFieldsDTOs = new ArrayList<>();
+      for (Object[] user : userService.getUsers(selected)) {
+        userFieldsDTOs.add(new UserFieldsDTO(selected, user));
+      }
+      return userFieldsDTOs;
     }
 
     // fetch all users in the internal representation
@@ -59,6 +108,75 @@ public class UserController {
     return userGetDTOs;
   }
 
+  @GetMapping("/users/statistics")
+  @ResponseStatus(HttpStatus.OK)
+  @ResponseBody
+  public UserStatisticsDTO getStatistics(@RequestHeader(value = "Authorization", required = false) String authToken,
+                                         @RequestParam(value = "days", defaultValue = "30") int days) {
+    if (authToken == null || userService.getUserByToken(authToken) == null) {
+        throw new UnauthorizedException("Invalid or missing token");
+    }
+    return userStatistics.getStatistics(days);
+  }
+
+  @GetMapping("/users/online")
+  @ResponseStatus(HttpStatus.OK)
+  @ResponseBody
+  public OnlineUsersDTO getOnlineUsers(@RequestHeader(value = "Authorization", required = false) String authToken,
+                                       @RequestParam(value = "after", defaultValue = "0") long after,
+                                       @RequestParam(value = "limit", defaultValue = "100") int limit) {
+    if (authToken == null || userService.getUserByToken(authToken) == null) {
+        throw new UnauthorizedException("Invalid or missing token");
+    }
+    int pageSize = Math.max(1, Math.min(limit, 10_000));
+    List<Long> ids = onlineIndex.page(after, pageSize);
+    Long next = ids.size() < pageSize ? null : ids.get(ids.size() - 1);
+    return new OnlineUsersDTO(onlineIndex.count(), ids, next);
+  }
+
+  /**
+   * @return the given user ids (e.g. the members of a lobby) that are online
+   * @throws PayloadTooLargeException for more than users.online.max-ids ids
+   */
+  @PostMapping("/users/online/intersection")
+  @ResponseStatus(HttpStatus.OK)
+  @ResponseBody
+  public List<Long> getOnlineAmong(@RequestHeader(value = "Authorization", required = false) String authToken,
+                                   @RequestBody List<Long> userIds) {
+    if (authToken == null || userService.getUserByToken(authToken) == null) {
+        throw new UnauthorizedException("Invalid or missing token");
+    }
+    if (userIds.size() > maxOnlineIds) {
+        throw new PayloadTooLargeException("At most " + maxOnlineIds + " user ids per request");
+    }
+    return onlineIndex.retainOnline(userIds);
+  }
+
+  @GetMapping("/users/birthdays/today")
+  @ResponseStatus(HttpStatus.OK)
+  @ResponseBody
+  public List<UserGetDTO> getBirthdaysToday(@RequestHeader(value = "Authorization", required = false) String authToken) {
+    return getBirthdays(authToken, 1);
+  }
+
+  @GetMapping("/users/birthdays/week")
+  @ResponseStatus(HttpStatus.OK)
+  @ResponseBody
+  public List<UserGetDTO> getBirthdaysThisWeek(@RequestHeader(value = "Authorization", required = false) String authToken) {
+    return getBirthdays(authToken, 7);
+  }
+
+  private List<UserGetDTO> getBirthdays(String authToken, int days) {
+    if (authToken == null || userService.getUserByToken(authToken) == null) {
+        throw new UnauthorizedException("Invalid or missing token");
+    }
+    List<UserGetDTO> userGetDTOs = new ArrayList<>();
+    for (User user : userService.getUsersWithBirthday(LocalDate.now(), days)) {
+      userGetDTOs.add(DTOMapper.INSTANCE.convertEntityToUserGetDTO(user));
+    }
+    return userGetDTOs;
+  }
+
   @PostMapping("/users")
   @ResponseStatus(HttpStatus.CREATED)
   @ResponseBody
@@ -76,43 +194,62 @@ public class UserController {
   @PostMapping("/login/auth")
   @ResponseStatus(HttpStatus.OK)
   @ResponseBody
-  public UserGetDTO loginUser(@RequestBody UserPostDTO userPostDTO) {
+  public UserGetDTO loginUser(@RequestBody UserPostDTO userPostDTO, HttpServletRequest request) {
     // convert API user to internal representation
     
     logger.info("Received request to login user: {}", userPostDTO.getUsername());
 
+    // repeated failures are turned away before they reach the database
+    String client = request.getRemoteAddr();
+    long retryAfterSeconds = loginThrottle.retryAfterSeconds(userPostDTO.getUsername(), client);
+    if (retryAfterSeconds > 0) {
+      throw new TooManyRequestsException("Too many failed logins, try again later", retryAfterSeconds);
+    }
+
     User userInput = DTOMapper.INSTANCE.convertUserPostDTOtoEntity(userPostDTO);
 
     // login user
-    User loggedInUser = userService.loginUser(userInput);
+    User loggedInUser;
+    try {
+      loggedInUser = userService.loginUser(userInput);
+    }
+    catch (UnauthorizedException | UserNotFoundException e) {
+      loginThrottle.recordFailure(userPostDTO.getUsername(), client);
+      throw e;
+    }
+    loginThrottle.recordSuccess(userPostDTO.getUsername());
     // convert internal representation of user back to API
     return DTOMapper.INSTANCE.convertEntityToUserGetDTO(loggedInUser);
   }
 
   @GetMapping("/users/{id}")
-  @ResponseStatus(HttpStatus.OK)
-  @ResponseBody
-  public UserGetDTO getUserById(
+  public ResponseEntity<?> getUserById(
           @PathVariable Long id,
-          @RequestHeader(value = "Authorization", required = false) String authToken) {
+          @RequestHeader(value = "Authorization", required = false) String authToken,
+          @RequestHeader(value = "Accept", required = false) String accept,
+          @RequestParam(value = "fields", required = false) String fields) {
   
       // Validate the token
-      User authenticatedUser = userService.getUserByToken(authToken);
       if (authToken == null) {
-          throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Invalid or missing token");
+          throw new UnauthorizedException("Invalid or missing token");
       }
 
-      if (authenticatedUser == null) {
-        throw new ResponseStatusException(HttpStatus.NOT_FOUND, "No user with provided token"); 
+      if (userService.getUserByToken(authToken) == null) {
+        throw new UserNotFoundException("No user with provided token");
       }
   
-      // Fetch user if authentication passes
-      User user = userService.getUserById(id);
-      if (user == null) {
-          throw new ResponseStatusException(HttpStatus.NOT_FOUND, "User not found");
+      if (fields != null) {
+          List<UserField> selected = UserField.parse(fields);
+          return ResponseEntity.ok(new UserFieldsDTO(selected, userService.getUserById(id, selected)));
       }
-  
-      return DTOMapper.INSTANCE.convertEntityToUserGetDTO(user);
+
+      // Fetch the already encoded profile in the requested format (JSON, CBOR or Smile) if authentication passes
+      MediaType format = profileResponseCache.negotiate(accept);
+      // caches must not hand the CBOR body to a client asking for JSON
+      return ResponseEntity.ok()
+          .varyBy(HttpHeaders.ACCEPT)
+          .contentType(format)
+          .body(profileResponseCache.getProfile(id, format));
   }
   
 
@@ -124,11 +261,11 @@ public class UserController {
           @RequestHeader(value = "Authorization", required = false) String authToken) {
       
       // Validate the token
-      User authenticatedUser = userService.getUserByToken(authToken);
       if (authToken == null) {
           return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Invalid or missing token");
       }
 
+      User authenticatedUser = userService.getUserByToken(authToken);
       if (authenticatedUser == null) {
           return ResponseEntity.status(HttpStatus.NOT_FOUND).body("User not found");
       }
@@ -160,6 +297,30 @@ public class UserController {
       }
   }
   
+  /**
+   * Edits many users in one transaction, one per user when sharded (admins
+   * only, see AdminAllowlist and UserService.editUsers).
+   *
+   * @return one result per edit, in the order of the request
+   */
+  @PutMapping("/users/batch")
+  @ResponseStatus(HttpStatus.OK)
+  @ResponseBody
+  public List<UserBatchResultDTO> editUsers(@RequestHeader(value = "Authorization", required = false) String authToken,
+                                            @RequestBody List<UserBatchEditDTO> edits) {
+    User authenticatedUser = authToken == null ? null : userService.getUserByToken(authToken);
+    if (authenticatedUser == null) {
+        throw new UnauthorizedException("Invalid or missing token");
+    }
+    if (!adminAllowlist.isAdmin(authenticatedUser)) {
+        throw new ForbiddenException("Only admins can edit users in batches");
+    }
+    if (edits.size() > maxBatchSize) {
+        throw new PayloadTooLargeException("At most " + maxBatchSize + " edits per batch");
+    }
+    return userService.editUsers(edits);
+  }
+
   @PutMapping("/users/logout")
   @ResponseStatus(HttpStatus.OK)
   public ResponseEntity<Void> logoutUser(@RequestBody LogOutDTO logOutDTO) {
@@ -171,15 +332,12 @@ public class UserController {
               return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
           }
   
-          // Validate the token
-          if (!user.getToken().equals(logOutDTO.getToken())) {
-              return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
-          }
-  
-          // Update the user status to OFFLINE
-          userService.logoutUser(user);
+          // End the session of the token, the user goes OFFLINE with the last one
+          userService.logoutUser(user, logOutDTO.getToken());
   
           return ResponseEntity.noContent().build();
+      } catch (ResponseStatusException e) {
+          return ResponseEntity.status(e.getStatus()).build();
       } catch (IllegalArgumentException e) {
           return ResponseEntity.badRequest().build();
       } catch (Exception e) {
@@ -0,0 +1,93 @@
+package ch.uzh.ifi.hase.soprafs24.entity;
+
+import org.springframework.data.domain.Persistable;
+
+import javax.persistence.*;
+
+import java.io.Serializable;
+import java.time.Instant;
+
+/**
+ * Internal Session Representation
+ * A user can hold any number of sessions (one per device/login), each with
+ * its own token. Sessions are served from the in-memory SessionStore and
+ * written to this table with the login, so a restart keeps everyone logged in.
+ * Instances are never modified after creation.
+ */
+@Entity
+@Table(name = "USER_SESSION", indexes = @Index(columnList = "userId"))
+public class Session implements Persistable<String>, Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  @Id
+  private String token;
+
+  @Column(nullable = false)
+  private Long userId;
+
+  @Column(nullable = false)
+  private Instant issuedAt;
+
+  @Column(nullable = false)
+  private Instant expiresAt;
+
+  // lets save() insert directly instead of merging (select + insert) the assigned id
+  @Transient
+  private boolean isNew = true;
+
+  protected Session() {
+  }
+
+  public Session(String token, Long userId, Instant issuedAt, Instant expiresAt) {
+    this.token = token;
+    this.userId = userId;
+    this.issuedAt = issuedAt;
+    this.expiresAt = expiresAt;
+  }
+
+  public String getToken() {
+    return token;
+  }
+
+  public Long getUserId() {
+    return userId;
+  }
+
+  public Instant getIssuedAt() {
+    return issuedAt;
+  }
+
+  public Instant getExpiresAt() {
+    return expiresAt;
+  }
+
+  public boolean isExpired(Instant now) {
+    return !expiresAt.isAfter(now);
+  }
+
+  @Override
+  public String getId() {
+    return token;
+  }
+
+  @Override
+  public boolean isNew() {
+    return isNew;
+  }
+
+  @PostLoad
+  @PostPersist
+  void markNotNew() {
+    this.isNew = false;
+  }
+
+  @Override
+  public String toString() {
+    return "Session{" +
+        "userId=" + userId +
+        ", issuedAt=" + issuedAt +
+        ", expiresAt=" + expiresAt +
+        '}';
+  }
+}
@@ -31,6 +31,7 @@ public class User implements Serializable {
   @Column(nullable = false, unique = true)
   private String username;
 
+  // token of the most recently opened session, authentication goes through the SessionStore
   @Column(nullable = false, unique = true)
   private String token;
 
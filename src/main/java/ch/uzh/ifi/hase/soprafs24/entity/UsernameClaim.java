@@ -0,0 +1,64 @@
+package ch.uzh.ifi.hase.soprafs24.entity;
+
+import org.springframework.data.domain.Persistable;
+
+import javax.persistence.*;
+
+import java.io.Serializable;
+
+/**
+ * Internal Username Claim Representation
+ * Only used (and only mapped, see UnshardedConfig) when users are sharded: the claim of a username lives on the
+ * shard its hash points to, independent of where the user itself is stored.
+ * The primary key makes the username unique across all shards without
+ * asking every shard, and maps it to the id (and thereby the shard) of its
+ * user.
+ */
+@Entity
+@Table(name = "USERNAME_CLAIM")
+public class UsernameClaim implements Persistable<String>, Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  @Id
+  private String username;
+
+  @Column(nullable = false)
+  private Long userId;
+
+  // save() has to insert: merging would silently take over the claim of another user
+  @Transient
+  private boolean isNew = true;
+
+  protected UsernameClaim() {
+  }
+
+  public UsernameClaim(String username, Long userId) {
+    this.username = username;
+    this.userId = userId;
+  }
+
+  public String getUsername() {
+    return username;
+  }
+
+  public Long getUserId() {
+    return userId;
+  }
+
+  @Override
+  public String getId() {
+    return username;
+  }
+
+  @Override
+  public boolean isNew() {
+    return isNew;
+  }
+
+  @PostLoad
+  @PostPersist
+  void markNotNew() {
+    this.isNew = false;
+  }
+}
@@ -0,0 +1,31 @@
+package ch.uzh.ifi.hase.soprafs24.exceptions;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * DomainException
+ * Base class for the expected failures of the user API: bad credentials,
+ * unknown users and tokens, duplicate usernames. They are a regular part of
+ * the traffic (e.g. failed logins), so they do not capture a stack trace and
+ * are turned into a response directly by GlobalExceptionAdvice.
+ * They are still ResponseStatusExceptions, so code that handles those keeps
+ * working.
+ */
+public abstract class DomainException extends ResponseStatusException {
+
+  private static final long serialVersionUID = 1L;
+
+  protected DomainException(HttpStatus status, String reason) {
+    super(status, reason);
+  }
+
+  /**
+   * Skips the stack walk, which is by far the most expensive part of creating
+   * an exception.
+   */
+  @Override
+  public synchronized Throwable fillInStackTrace() {
+    return this;
+  }
+}
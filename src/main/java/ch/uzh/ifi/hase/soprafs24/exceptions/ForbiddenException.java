@@ -0,0 +1,16 @@
+package ch.uzh.ifi.hase.soprafs24.exceptions;
+
+import org.springframework.http.HttpStatus;
+
+/**
+ * Thrown when the caller may not use an endpoint at all, e.g. a remote caller
+ * of an /internal endpoint (403).
+ */
+public class ForbiddenException extends DomainException {
+
+  private static final long serialVersionUID = 1L;
+
+  public ForbiddenException(String reason) {
+    super(HttpStatus.FORBIDDEN, reason);
+  }
+}
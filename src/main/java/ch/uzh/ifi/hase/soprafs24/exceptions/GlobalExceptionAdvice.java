@@ -1,5 +1,6 @@
 package ch.uzh.ifi.hase.soprafs24.exceptions;
 
+import ch.uzh.ifi.hase.soprafs24.rest.dto.ErrorDTO;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.http.HttpHeaders;
@@ -27,6 +28,18 @@ public class GlobalExceptionAdvice extends ResponseEntityExceptionHandler {
     return handleExceptionInternal(ex, bodyOfResponse, new HttpHeaders(), HttpStatus.CONFLICT, request);
   }
 
+  /**
+   * Fast path for the expected failures: the response is written right here
+   * instead of going through sendError and the /error dispatch.
+   */
+  @ExceptionHandler(DomainException.class)
+  public ResponseEntity<ErrorDTO> handleDomainException(DomainException ex) {
+    HttpStatus status = ex.getStatus();
+    return ResponseEntity.status(status)
+        .headers(ex.getResponseHeaders())
+        .body(new ErrorDTO(status.value(), status.getReasonPhrase(), ex.getReason()));
+  }
+
   @ExceptionHandler(TransactionSystemException.class)
   public ResponseStatusException handleTransactionSystemException(Exception ex, HttpServletRequest request) {
     log.error("Request: {} raised {}", request.getRequestURL(), ex);
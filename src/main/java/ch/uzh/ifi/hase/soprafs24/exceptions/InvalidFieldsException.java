@@ -0,0 +1,15 @@
+package ch.uzh.ifi.hase.soprafs24.exceptions;
+
+import org.springframework.http.HttpStatus;
+
+/**
+ * Thrown when fields= names a field that does not exist (400).
+ */
+public class InvalidFieldsException extends DomainException {
+
+  private static final long serialVersionUID = 1L;
+
+  public InvalidFieldsException(String reason) {
+    super(HttpStatus.BAD_REQUEST, reason);
+  }
+}
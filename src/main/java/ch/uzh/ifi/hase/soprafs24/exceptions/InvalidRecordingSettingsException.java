@@ -0,0 +1,15 @@
+package ch.uzh.ifi.hase.soprafs24.exceptions;
+
+import org.springframework.http.HttpStatus;
+
+/**
+ * Thrown when a recording is started with settings the JDK does not know (400).
+ */
+public class InvalidRecordingSettingsException extends DomainException {
+
+  private static final long serialVersionUID = 1L;
+
+  public InvalidRecordingSettingsException(String reason) {
+    super(HttpStatus.BAD_REQUEST, reason);
+  }
+}
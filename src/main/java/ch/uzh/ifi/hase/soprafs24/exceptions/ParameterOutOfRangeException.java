@@ -0,0 +1,15 @@
+package ch.uzh.ifi.hase.soprafs24.exceptions;
+
+import org.springframework.http.HttpStatus;
+
+/**
+ * Thrown when a request parameter is outside of the values it may take (400).
+ */
+public class ParameterOutOfRangeException extends DomainException {
+
+  private static final long serialVersionUID = 1L;
+
+  public ParameterOutOfRangeException(String reason) {
+    super(HttpStatus.BAD_REQUEST, reason);
+  }
+}
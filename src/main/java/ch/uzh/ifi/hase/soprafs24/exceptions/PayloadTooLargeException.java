@@ -0,0 +1,15 @@
+package ch.uzh.ifi.hase.soprafs24.exceptions;
+
+import org.springframework.http.HttpStatus;
+
+/**
+ * Thrown when a request carries more items than allowed (413).
+ */
+public class PayloadTooLargeException extends DomainException {
+
+  private static final long serialVersionUID = 1L;
+
+  public PayloadTooLargeException(String reason) {
+    super(HttpStatus.PAYLOAD_TOO_LARGE, reason);
+  }
+}
@@ -0,0 +1,15 @@
+package ch.uzh.ifi.hase.soprafs24.exceptions;
+
+import org.springframework.http.HttpStatus;
+
+/**
+ * Thrown when no recording of the JVM has the requested id (404).
+ */
+public class RecordingNotFoundException extends DomainException {
+
+  private static final long serialVersionUID = 1L;
+
+  public RecordingNotFoundException(String reason) {
+    super(HttpStatus.NOT_FOUND, reason);
+  }
+}
@@ -0,0 +1,16 @@
+package ch.uzh.ifi.hase.soprafs24.exceptions;
+
+import org.springframework.http.HttpStatus;
+
+/**
+ * Thrown when a recording cannot be dumped or stopped in its current state,
+ * e.g. because it was never started (409).
+ */
+public class RecordingStateException extends DomainException {
+
+  private static final long serialVersionUID = 1L;
+
+  public RecordingStateException(String reason) {
+    super(HttpStatus.CONFLICT, reason);
+  }
+}
@@ -0,0 +1,16 @@
+package ch.uzh.ifi.hase.soprafs24.exceptions;
+
+import org.springframework.http.HttpStatus;
+
+/**
+ * Thrown when a recording could not be written to users.recording.directory
+ * (500). The cause is logged where it happens, this exception has no stack.
+ */
+public class RecordingWriteException extends DomainException {
+
+  private static final long serialVersionUID = 1L;
+
+  public RecordingWriteException(String reason) {
+    super(HttpStatus.INTERNAL_SERVER_ERROR, reason);
+  }
+}
@@ -0,0 +1,16 @@
+package ch.uzh.ifi.hase.soprafs24.exceptions;
+
+import org.springframework.http.HttpStatus;
+
+/**
+ * Thrown when a bounded resource is saturated and the request should be
+ * retried later (503).
+ */
+public class ServiceUnavailableException extends DomainException {
+
+  private static final long serialVersionUID = 1L;
+
+  public ServiceUnavailableException(String reason) {
+    super(HttpStatus.SERVICE_UNAVAILABLE, reason);
+  }
+}
@@ -0,0 +1,15 @@
+package ch.uzh.ifi.hase.soprafs24.exceptions;
+
+import org.springframework.http.HttpStatus;
+
+/**
+ * Thrown for missing or invalid tokens and wrong passwords (401).
+ */
+public class UnauthorizedException extends DomainException {
+
+  private static final long serialVersionUID = 1L;
+
+  public UnauthorizedException(String reason) {
+    super(HttpStatus.UNAUTHORIZED, reason);
+  }
+}
@@ -0,0 +1,15 @@
+package ch.uzh.ifi.hase.soprafs24.exceptions;
+
+import org.springframework.http.HttpStatus;
+
+/**
+ * Thrown when a requested user does not exist (404).
+ */
+public class UserNotFoundException extends DomainException {
+
+  private static final long serialVersionUID = 1L;
+
+  public UserNotFoundException(String reason) {
+    super(HttpStatus.NOT_FOUND, reason);
+  }
+}
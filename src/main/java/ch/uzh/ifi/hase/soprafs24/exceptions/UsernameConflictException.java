@@ -0,0 +1,15 @@
+package ch.uzh.ifi.hase.soprafs24.exceptions;
+
+import org.springframework.http.HttpStatus;
+
+/**
+ * Thrown when a username is already taken (409).
+ */
+public class UsernameConflictException extends DomainException {
+
+  private static final long serialVersionUID = 1L;
+
+  public UsernameConflictException(String reason) {
+    super(HttpStatus.CONFLICT, reason);
+  }
+}
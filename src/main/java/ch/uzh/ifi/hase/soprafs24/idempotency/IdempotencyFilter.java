@@ -0,0 +1,237 @@
+package ch.uzh.ifi.hase.soprafs24.idempotency;
+
+import ch.uzh.ifi.hase.soprafs24.rest.dto.ErrorDTO;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ReadListener;
+import javax.servlet.ServletException;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpServletResponse;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Clock;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Idempotency Filter
+ * Answers a POST to one of the configured paths that repeats the
+ * Idempotency-Key of an earlier one with the response of the earlier one,
+ * without running it again. A duplicate that arrives while the first one
+ * is still running waits for it. Transient failures (server errors, 408,
+ * 425 and 429) are not kept, so the request can be retried once the cause
+ * is gone, e.g. after Retry-After. Reusing a key for a different body
+ * is rejected with 422.
+ * Keys are scoped to the caller (its Authorization header, or its address
+ * when it sends none), so one caller cannot replay or block another's.
+ * The body is buffered for the fingerprint, so bodies above max-body-bytes
+ * are rejected with 413 before more than that is read.
+ */
+@Component
+public class IdempotencyFilter extends OncePerRequestFilter {
+
+  public static final String HEADER = "Idempotency-Key";
+  public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+  private final IdempotencyStore store;
+  private final Set<String> paths;
+  private final long waitMillis;
+  private final int maxBodyBytes;
+  private final ObjectMapper objectMapper;
+
+  public IdempotencyFilter(@Value("${users.idempotency.paths:/users,/login/auth}") Set<String> paths,
+                           @Value("${users.idempotency.ttl-seconds:3600}") long ttlSeconds,
+                           @Value("${users.idempotency.max-entries:10000}") int maxEntries,
+                           @Value("${users.idempotency.wait-ms:10000}") long waitMillis,
+                           @Value("${users.idempotency.max-body-bytes:65536}") int maxBodyBytes,
+                           ObjectMapper objectMapper) {
+    this.store = new IdempotencyStore(TimeUnit.SECONDS.toMillis(ttlSeconds), maxEntries, Clock.systemUTC());
+    this.paths = paths;
+    this.waitMillis = waitMillis;
+    this.maxBodyBytes = maxBodyBytes;
+    this.objectMapper = objectMapper;
+  }
+
+  @Override
+  protected boolean shouldNotFilter(@NonNull HttpServletRequest request) {
+    return !"POST".equals(request.getMethod())
+        || !paths.contains(request.getRequestURI())
+        || request.getHeader(HEADER) == null;
+  }
+
+  @Override
+  protected void doFilterInternal(@NonNull HttpServletRequest request, @NonNull HttpServletResponse response,
+                                  @NonNull FilterChain filterChain) throws ServletException, IOException {
+    if (request.getContentLengthLong() > maxBodyBytes) {
+      sendError(response, HttpStatus.PAYLOAD_TOO_LARGE, "The body is larger than " + maxBodyBytes + " bytes");
+      return;
+    }
+    // a chunked body has no length, one byte more than allowed tells it is too large
+    byte[] body = request.getInputStream().readNBytes(maxBodyBytes + 1);
+    if (body.length > maxBodyBytes) {
+      sendError(response, HttpStatus.PAYLOAD_TOO_LARGE, "The body is larger than " + maxBodyBytes + " bytes");
+      return;
+    }
+    byte[] fingerprint = sha256(body);
+    String key = request.getRequestURI() + " " + caller(request) + " " + request.getHeader(HEADER).trim();
+
+    IdempotencyStore.Claim claim = store.claim(key, fingerprint, request);
+    boolean owner = claim.isOwnedBy(request);
+    if (!owner) {
+      if (!claim.matches(fingerprint)) {
+        sendError(response, HttpStatus.UNPROCESSABLE_ENTITY, HEADER + " was already used for a different request");
+        return;
+      }
+      IdempotencyStore.StoredResponse stored;
+      try {
+        stored = claim.getResponse().get(waitMillis, TimeUnit.MILLISECONDS);
+      }
+      catch (TimeoutException e) {
+        sendError(response, HttpStatus.CONFLICT, "A request with this " + HEADER + " is still in progress");
+        return;
+      }
+      catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new ServletException(e);
+      }
+      catch (ExecutionException e) {
+        stored = null;
+      }
+      if (stored != null) {
+        replay(stored, response);
+        return;
+      }
+      // the first request failed, this one runs on its own
+    }
+
+    ContentCachingResponseWrapper cachingResponse = new ContentCachingResponseWrapper(response);
+    IdempotencyStore.StoredResponse stored = null;
+    try {
+      filterChain.doFilter(new CachedBodyRequest(request, body), cachingResponse);
+      if (!isTransient(cachingResponse.getStatus())) {
+        stored = new IdempotencyStore.StoredResponse(cachingResponse.getStatus(), cachingResponse.getContentType(),
+            cachingResponse.getContentAsByteArray());
+      }
+    }
+    finally {
+      if (owner) {
+        store.complete(claim, stored);
+      }
+      cachingResponse.copyBodyToResponse();
+    }
+  }
+
+  /**
+   * @return whether a retry of the same request may get a different answer
+   */
+  static boolean isTransient(int status) {
+    return status >= 500
+        || status == HttpStatus.REQUEST_TIMEOUT.value()
+        || status == HttpStatus.TOO_EARLY.value()
+        || status == HttpStatus.TOO_MANY_REQUESTS.value();
+  }
+
+  private static String caller(HttpServletRequest request) {
+    String authorization = request.getHeader(HttpHeaders.AUTHORIZATION);
+    return authorization != null ? authorization.trim() : request.getRemoteAddr();
+  }
+
+  /**
+   * Answers with the same body the GlobalExceptionAdvice gives a DomainException.
+   */
+  private void sendError(HttpServletResponse response, HttpStatus status, String reason) throws IOException {
+    response.setStatus(status.value());
+    response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+    objectMapper.writeValue(response.getOutputStream(), new ErrorDTO(status.value(), status.getReasonPhrase(), reason));
+  }
+
+  private static void replay(IdempotencyStore.StoredResponse stored, HttpServletResponse response) throws IOException {
+    response.setStatus(stored.getStatus());
+    if (stored.getContentType() != null) {
+      response.setContentType(stored.getContentType());
+    }
+    response.setHeader(REPLAYED_HEADER, "true");
+    response.setContentLength(stored.getBody().length);
+    response.getOutputStream().write(stored.getBody());
+  }
+
+  private static byte[] sha256(byte[] body) {
+    try {
+      return MessageDigest.getInstance("SHA-256").digest(body);
+    }
+    catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * Serves the body that was read for the fingerprint to the rest of the chain.
+   */
+  private static final class CachedBodyRequest extends HttpServletRequestWrapper {
+
+    private final byte[] body;
+
+    CachedBodyRequest(HttpServletRequest request, byte[] body) {
+      super(request);
+      this.body = body;
+    }
+
+    @Override
+    public ServletInputStream getInputStream() {
+      ByteArrayInputStream in = new ByteArrayInputStream(body);
+      return new ServletInputStream() {
+        @Override
+        public boolean isFinished() {
+          return in.available() == 0;
+        }
+
+        @Override
+        public boolean isReady() {
+          return true;
+        }
+
+        @Override
+        public void setReadListener(ReadListener readListener) {
+          throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public int read() {
+          return in.read();
+        }
+
+        @Override
+        public int read(@NonNull byte[] b, int off, int len) {
+          return in.read(b, off, len);
+        }
+      };
+    }
+
+    @Override
+    public BufferedReader getReader() {
+      String encoding = getCharacterEncoding();
+      return new BufferedReader(new InputStreamReader(getInputStream(),
+          encoding == null ? StandardCharsets.UTF_8 : Charset.forName(encoding)));
+    }
+  }
+}
@@ -0,0 +1,144 @@
+package ch.uzh.ifi.hase.soprafs24.idempotency;
+
+import java.time.Clock;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Idempotency Store
+ * Remembers the responses of requests sent with an Idempotency-Key. The
+ * first request of a key claims it; later ones with the same key get the
+ * claim of the first one and wait for its response. Entries live for the
+ * TTL and at most maxEntries are kept, the oldest go first.
+ */
+public class IdempotencyStore {
+
+  /**
+   * A completed response, replayed as it was.
+   */
+  public static final class StoredResponse {
+
+    private final int status;
+    private final String contentType;
+    private final byte[] body;
+
+    public StoredResponse(int status, String contentType, byte[] body) {
+      this.status = status;
+      this.contentType = contentType;
+      this.body = body;
+    }
+
+    public int getStatus() {
+      return status;
+    }
+
+    public String getContentType() {
+      return contentType;
+    }
+
+    public byte[] getBody() {
+      return body;
+    }
+  }
+
+  /**
+   * The claim of a key. The response completes with null if the first
+   * request did not produce a replayable response (server error), the key
+   * is released again in that case.
+   */
+  public static final class Claim {
+
+    private final String key;
+    private final byte[] fingerprint;
+    private final Object owner;
+    private final long createdAt;
+    private final CompletableFuture<StoredResponse> response = new CompletableFuture<>();
+
+    private Claim(String key, byte[] fingerprint, Object owner, long createdAt) {
+      this.key = key;
+      this.fingerprint = fingerprint;
+      this.owner = owner;
+      this.createdAt = createdAt;
+    }
+
+    public boolean isOwnedBy(Object candidate) {
+      return owner == candidate;
+    }
+
+    public boolean matches(byte[] otherFingerprint) {
+      return Arrays.equals(fingerprint, otherFingerprint);
+    }
+
+    public CompletableFuture<StoredResponse> getResponse() {
+      return response;
+    }
+  }
+
+  private final ConcurrentHashMap<String, Claim> claims = new ConcurrentHashMap<>();
+  // claims in creation order, which is also expiry order (the TTL is fixed)
+  private final ConcurrentLinkedQueue<Claim> order = new ConcurrentLinkedQueue<>();
+
+  private final long ttlMillis;
+  private final int maxEntries;
+  private final Clock clock;
+
+  public IdempotencyStore(long ttlMillis, int maxEntries, Clock clock) {
+    this.ttlMillis = ttlMillis;
+    this.maxEntries = maxEntries;
+    this.clock = clock;
+  }
+
+  /**
+   * @param owner identifies the caller, e.g. the request
+   * @return a claim owned by the caller, who then has to complete() it, or
+   *     the claim of the earlier request with this key
+   */
+  public Claim claim(String key, byte[] fingerprint, Object owner) {
+    long now = clock.millis();
+    evict(now);
+
+    Claim claim = new Claim(key, fingerprint, owner, now);
+    while (true) {
+      Claim existing = claims.putIfAbsent(key, claim);
+      if (existing == null) {
+        order.add(claim);
+        return claim;
+      }
+      if (now - existing.createdAt < ttlMillis) {
+        return existing;
+      }
+      // expired but not evicted yet
+      claims.remove(key, existing);
+    }
+  }
+
+  /**
+   * Finishes an owned claim; a null response releases the key.
+   */
+  public void complete(Claim claim, StoredResponse response) {
+    if (response == null) {
+      claims.remove(claim.key, claim);
+    }
+    claim.response.complete(response);
+  }
+
+  public int size() {
+    return claims.size();
+  }
+
+  private void evict(long now) {
+    for (Claim oldest = order.peek(); oldest != null; oldest = order.peek()) {
+      boolean expired = now - oldest.createdAt >= ttlMillis;
+      if (!expired && claims.size() < maxEntries) {
+        return;
+      }
+      if (order.remove(oldest)) {
+        claims.remove(oldest.key, oldest);
+        // anyone still waiting runs the request itself
+        oldest.response.complete(null);
+      }
+    }
+  }
+}
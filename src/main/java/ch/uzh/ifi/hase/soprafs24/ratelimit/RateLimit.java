@@ -0,0 +1,80 @@
+package ch.uzh.ifi.hase.soprafs24.ratelimit;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A token bucket limit: at most capacity requests at once, refilled with
+ * refillPerSecond tokens per second.
+ */
+public class RateLimit {
+
+  private final long capacity;
+  private final double refillPerSecond;
+
+  public RateLimit(long capacity, double refillPerSecond) {
+    if (capacity < 1 || !(refillPerSecond > 0)) {
+      throw new IllegalArgumentException("Rate limit needs a capacity >= 1 and a refill > 0");
+    }
+    this.capacity = capacity;
+    this.refillPerSecond = refillPerSecond;
+  }
+
+  /**
+   * @param limit capacity:refill-per-second, e.g. 20:10
+   */
+  public static RateLimit parse(String limit) {
+    String[] parts = limit.trim().split(":");
+    if (parts.length != 2) {
+      throw new IllegalArgumentException("Rate limit is not capacity:refill-per-second: " + limit);
+    }
+    return new RateLimit(Long.parseLong(parts[0].trim()), Double.parseDouble(parts[1].trim()));
+  }
+
+  /**
+   * @param limits comma-separated "METHOD pattern=capacity:refill-per-second",
+   *               e.g. GET /users=20:10,GET /users/{id}=100:50
+   * @return the limits by "METHOD pattern"
+   */
+  public static Map<String, RateLimit> parseEndpoints(String limits) {
+    Map<String, RateLimit> byEndpoint = new LinkedHashMap<>();
+    for (String entry : limits.split(",")) {
+      if (entry.isBlank()) {
+        continue;
+      }
+      int equals = entry.lastIndexOf('=');
+      if (equals < 0) {
+        throw new IllegalArgumentException("Endpoint rate limit without '=': " + entry);
+      }
+      byEndpoint.put(entry.substring(0, equals).trim(), parse(entry.substring(equals + 1)));
+    }
+    return byEndpoint;
+  }
+
+  /**
+   * @return the same limit with capacity and refill multiplied by factor
+   */
+  public RateLimit times(int factor) {
+    return new RateLimit(capacity * factor, refillPerSecond * factor);
+  }
+
+  public long getCapacity() {
+    return capacity;
+  }
+
+  public double getRefillPerSecond() {
+    return refillPerSecond;
+  }
+
+  /**
+   * @return the time an empty bucket needs to be full again
+   */
+  public long getFullRefillNanos() {
+    return (long) (capacity * 1_000_000_000d / refillPerSecond);
+  }
+
+  @Override
+  public String toString() {
+    return capacity + ":" + refillPerSecond;
+  }
+}
@@ -0,0 +1,49 @@
+package ch.uzh.ifi.hase.soprafs24.ratelimit;
+
+import ch.uzh.ifi.hase.soprafs24.exceptions.TooManyRequestsException;
+import org.springframework.lang.NonNull;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Rate Limit Interceptor
+ * Asks the RateLimiter before the controller runs, so a rejected request
+ * never reaches the UserService. Every response carries X-RateLimit-Limit,
+ * X-RateLimit-Remaining and X-RateLimit-Reset (seconds until the bucket is
+ * full); rejected ones are answered with 429 and Retry-After.
+ */
+public class RateLimitInterceptor implements HandlerInterceptor {
+
+  public static final String LIMIT_HEADER = "X-RateLimit-Limit";
+  public static final String REMAINING_HEADER = "X-RateLimit-Remaining";
+  public static final String RESET_HEADER = "X-RateLimit-Reset";
+
+  private final RateLimiter rateLimiter;
+
+  public RateLimitInterceptor(RateLimiter rateLimiter) {
+    this.rateLimiter = rateLimiter;
+  }
+
+  @Override
+  public boolean preHandle(@NonNull HttpServletRequest request, @NonNull HttpServletResponse response,
+                           @NonNull Object handler) {
+    if (!rateLimiter.isEnabled()) {
+      return true;
+    }
+    Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+    String endpoint = request.getMethod() + " " + (pattern != null ? pattern : request.getRequestURI());
+
+    RateLimiter.Decision decision = rateLimiter.acquire(endpoint, request.getHeader("Authorization"),
+        request.getRemoteAddr());
+    response.setHeader(LIMIT_HEADER, Long.toString(decision.getLimit()));
+    response.setHeader(REMAINING_HEADER, Long.toString(decision.getRemaining()));
+    response.setHeader(RESET_HEADER, Long.toString(decision.getResetSeconds()));
+    if (!decision.isAllowed()) {
+      throw new TooManyRequestsException("Rate limit exceeded, try again later", decision.getRetryAfterSeconds());
+    }
+    return true;
+  }
+}
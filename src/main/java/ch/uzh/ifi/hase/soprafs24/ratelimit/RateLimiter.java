@@ -0,0 +1,172 @@
+package ch.uzh.ifi.hase.soprafs24.ratelimit;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rate Limiter
+ * Token buckets per endpoint and token, and per endpoint and client
+ * address. A request takes a token from the bucket of its client address
+ * and, if it has an Authorization token, from the bucket of that token; the
+ * address gets ip-factor times the limit of a token, as several clients may
+ * share it (and random tokens must not bypass the limit). Limits are set per
+ * "METHOD pattern" with a default for all other endpoints.
+ * The buckets live in a Caffeine cache bounded by max-entries. A bucket is
+ * dropped once it has not been used for as long as the slowest limit needs
+ * to refill completely, as it would be full again anyway.
+ */
+@Component
+public class RateLimiter {
+
+  private final boolean enabled;
+  private final RateLimit defaultLimit;
+  private final Map<String, RateLimit> endpointLimits;
+  private final int ipFactor;
+  private final Cache<String, TokenBucket> buckets;
+
+  public RateLimiter(@Value("${users.rate-limit.enabled:true}") boolean enabled,
+                     @Value("${users.rate-limit.default:100:50}") String defaultLimit,
+                     @Value("${users.rate-limit.endpoints:}") String endpointLimits,
+                     @Value("${users.rate-limit.ip-factor:5}") int ipFactor,
+                     @Value("${users.rate-limit.max-entries:100000}") long maxEntries) {
+    this.enabled = enabled;
+    this.defaultLimit = RateLimit.parse(defaultLimit);
+    this.endpointLimits = RateLimit.parseEndpoints(endpointLimits);
+    this.ipFactor = ipFactor;
+
+    long idleNanos = this.defaultLimit.getFullRefillNanos();
+    for (RateLimit limit : this.endpointLimits.values()) {
+      idleNanos = Math.max(idleNanos, limit.getFullRefillNanos());
+    }
+    this.buckets = Caffeine.newBuilder()
+        .maximumSize(maxEntries)
+        .expireAfterAccess(Duration.ofNanos(idleNanos).plusSeconds(1))
+        .build();
+  }
+
+  /**
+   * Outcome of a request: the numbers of the bucket with the fewest tokens
+   * left, for the X-RateLimit headers.
+   */
+  public static class Decision {
+    private final boolean allowed;
+    private final long limit;
+    private final long remaining;
+    private final long resetSeconds;
+    private final long retryAfterSeconds;
+
+    Decision(boolean allowed, long limit, long remaining, long resetSeconds, long retryAfterSeconds) {
+      this.allowed = allowed;
+      this.limit = limit;
+      this.remaining = remaining;
+      this.resetSeconds = resetSeconds;
+      this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public boolean isAllowed() {
+      return allowed;
+    }
+
+    /**
+     * @return the capacity of the bucket
+     */
+    public long getLimit() {
+      return limit;
+    }
+
+    public long getRemaining() {
+      return remaining;
+    }
+
+    /**
+     * @return the seconds until the bucket is full again
+     */
+    public long getResetSeconds() {
+      return resetSeconds;
+    }
+
+    /**
+     * @return the seconds until the next token, 0 if allowed
+     */
+    public long getRetryAfterSeconds() {
+      return retryAfterSeconds;
+    }
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  public Decision acquire(String endpoint, String token, String clientAddress) {
+    return acquire(endpoint, token, clientAddress, System.nanoTime());
+  }
+
+  /**
+   * Takes a token from the bucket of the client address, then from the one
+   * of the token (if any). A request rejected by the address bucket does not
+   * use up a token of its token bucket.
+   *
+   * @param endpoint "METHOD pattern", e.g. GET /users/{id}
+   * @param token    the Authorization header, may be null
+   */
+  public Decision acquire(String endpoint, String token, String clientAddress, long nowNanos) {
+    RateLimit tokenLimit = endpointLimits.getOrDefault(endpoint, defaultLimit);
+    RateLimit addressLimit = tokenLimit.times(ipFactor);
+
+    Decision decision = take(endpoint + " address " + clientAddress, addressLimit, nowNanos);
+    if (decision.allowed && token != null) {
+      Decision byToken = take(endpoint + " token " + token, tokenLimit, nowNanos);
+      if (!byToken.allowed || byToken.remaining < decision.remaining) {
+        decision = byToken;
+      }
+    }
+    return decision;
+  }
+
+  public long size() {
+    return buckets.estimatedSize();
+  }
+
+  /**
+   * Drops all buckets.
+   */
+  public void reset() {
+    buckets.invalidateAll();
+  }
+
+  /**
+   * Drops the buckets of the given keys, e.g. the ones the WarmUp created.
+   */
+  public void reset(Collection<String> keys) {
+    buckets.invalidateAll(keys);
+  }
+
+  /**
+   * @return a copy of the keys of the current buckets
+   */
+  public Set<String> keys() {
+    return Set.copyOf(buckets.asMap().keySet());
+  }
+
+  private Decision take(String key, RateLimit limit, long nowNanos) {
+    TokenBucket bucket = buckets.get(key, k -> new TokenBucket(limit));
+    long result = bucket.tryAcquire(nowNanos);
+    long resetSeconds = toSecondsCeiling(bucket.nanosUntilFull(nowNanos));
+    if (result < 0) {
+      return new Decision(false, limit.getCapacity(), 0, resetSeconds, Math.max(1, toSecondsCeiling(-result)));
+    }
+    return new Decision(true, limit.getCapacity(), result, resetSeconds, 0);
+  }
+
+  private static long toSecondsCeiling(long nanos) {
+    return (nanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1);
+  }
+}
@@ -0,0 +1,53 @@
+package ch.uzh.ifi.hase.soprafs24.ratelimit;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token Bucket
+ * Lock-free token bucket kept as a single timestamp (the generic cell rate
+ * algorithm): every request moves the "theoretical arrival time" one refill
+ * interval ahead, starting from now if the bucket was full. A request is
+ * allowed while that time stays within capacity intervals of now, so the
+ * tokens left are the intervals in between. One compareAndSet per request,
+ * no refill thread.
+ */
+class TokenBucket {
+
+  private final long intervalNanos;
+  private final long burstNanos;
+  // a new bucket is full: any now is after it
+  private final AtomicLong theoreticalArrival = new AtomicLong(Long.MIN_VALUE);
+
+  TokenBucket(RateLimit limit) {
+    this.intervalNanos = Math.max(1, (long) (1_000_000_000d / limit.getRefillPerSecond()));
+    this.burstNanos = intervalNanos * limit.getCapacity();
+  }
+
+  /**
+   * Takes a token if there is one.
+   *
+   * @param nowNanos the current System.nanoTime()
+   * @return the tokens left (>= 0) if one was taken, otherwise minus the
+   * nanoseconds until the next token (< 0)
+   */
+  long tryAcquire(long nowNanos) {
+    while (true) {
+      long arrival = theoreticalArrival.get();
+      long next = Math.max(arrival, nowNanos) + intervalNanos;
+      long ahead = next - nowNanos;
+      if (ahead > burstNanos) {
+        return -(ahead - burstNanos);
+      }
+      if (theoreticalArrival.compareAndSet(arrival, next)) {
+        return (burstNanos - ahead) / intervalNanos;
+      }
+    }
+  }
+
+  /**
+   * @return the nanoseconds until the bucket is full again
+   */
+  long nanosUntilFull(long nowNanos) {
+    return Math.max(0, theoreticalArrival.get() - nowNanos);
+  }
+}
@@ -0,0 +1,30 @@
+package ch.uzh.ifi.hase.soprafs24.repository;
+
+import ch.uzh.ifi.hase.soprafs24.entity.Session;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+@Repository("sessionRepository")
+public interface SessionRepository extends JpaRepository<Session, String> {
+
+  // read-write on purpose: sessions are loaded once at startup and have to come
+  // from the primary, a read replica may not have the latest ones yet
+  @Override
+  @Transactional
+  List<Session> findAll();
+
+  boolean existsByUserIdAndExpiresAtAfter(Long userId, Instant now);
+
+  @Modifying
+  @Transactional
+  @Query("DELETE FROM Session s WHERE s.token IN :tokens")
+  int deleteByTokenIn(@Param("tokens") Collection<String> tokens);
+}
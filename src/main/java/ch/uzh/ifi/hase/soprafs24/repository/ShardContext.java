@@ -0,0 +1,30 @@
+package ch.uzh.ifi.hase.soprafs24.repository;
+
+/**
+ * The shard the current thread works on. Read by the ShardRoutingDataSource
+ * when a transaction fetches its connection; without a shard set, the first
+ * shard is used (sessions and everything else that is not partitioned).
+ */
+public final class ShardContext {
+
+  private static final ThreadLocal<Integer> CURRENT = new ThreadLocal<>();
+
+  private ShardContext() {
+  }
+
+  /**
+   * @return the current shard, or null if none is set
+   */
+  public static Integer current() {
+    return CURRENT.get();
+  }
+
+  static void set(Integer shard) {
+    if (shard == null) {
+      CURRENT.remove();
+    }
+    else {
+      CURRENT.set(shard);
+    }
+  }
+}
@@ -0,0 +1,453 @@
+package ch.uzh.ifi.hase.soprafs24.repository;
+
+import ch.uzh.ifi.hase.soprafs24.constant.UserStatus;
+import ch.uzh.ifi.hase.soprafs24.entity.User;
+import ch.uzh.ifi.hase.soprafs24.entity.UsernameClaim;
+import org.springframework.beans.support.PropertyComparator;
+import org.springframework.dao.IncorrectResultSizeDataAccessException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityNotFoundException;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+
+/**
+ * Sharded User Repository
+ * Puts the UserRepository in front of N shards. A user is created on the
+ * shard its username hashes to; the identity column of shard i starts at
+ * i << 40, so the shard of every later lookup follows from the id alone.
+ * Usernames are kept unique by a UsernameClaim on the shard of their hash.
+ * <ul>
+ * <li>calls with an id (findById, save, delete, updateStatus, ...) go to the shard(s) of the id(s)</li>
+ * <li>findByUsername reads the claim, then the user from its shard</li>
+ * <li>other queries are scattered to all shards in parallel; lists are concatenated and
+ * ordered by their Sort argument (users without one by id), counts summed, pages merged,
+ * and single results taken from the one shard that has them</li>
+ * </ul>
+ * Every routed call runs in its own transaction on its shard, so a service
+ * method is no longer atomic across several repository calls.
+ */
+public class ShardedUserRepository implements InvocationHandler {
+
+  private static final int SHARD_BITS = 40;
+
+  private final UserRepository users;
+  private final UsernameClaimRepository claims;
+  private final TransactionTemplate transactionTemplate;
+  private final Executor scatterExecutor;
+  private final int shardCount;
+
+  ShardedUserRepository(UserRepository users, UsernameClaimRepository claims,
+                        PlatformTransactionManager transactionManager, Executor scatterExecutor, int shardCount) {
+    this.users = users;
+    this.claims = claims;
+    this.transactionTemplate = new TransactionTemplate(transactionManager);
+    this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    this.scatterExecutor = scatterExecutor;
+    this.shardCount = shardCount;
+  }
+
+  /**
+   * @return a UserRepository routing all calls of the given one to the shards
+   */
+  public static UserRepository wrap(UserRepository users, UsernameClaimRepository claims,
+                                    PlatformTransactionManager transactionManager, Executor scatterExecutor,
+                                    int shardCount) {
+    return (UserRepository) Proxy.newProxyInstance(UserRepository.class.getClassLoader(),
+        new Class<?>[] { UserRepository.class },
+        new ShardedUserRepository(users, claims, transactionManager, scatterExecutor, shardCount));
+  }
+
+  /**
+   * @return the first id handed out by the identity column of the shard
+   */
+  public static long firstId(int shard) {
+    return ((long) shard << SHARD_BITS) + 1;
+  }
+
+  public static int shardOf(long userId) {
+    return (int) (userId >>> SHARD_BITS);
+  }
+
+  /**
+   * Stable across restarts (String.hashCode is specified), but changing the
+   * number of shards moves the claims.
+   */
+  public static int shardOf(String username, int shardCount) {
+    int h = username.hashCode();
+    h ^= h >>> 16;
+    h *= 0x85EBCA6B;
+    h ^= h >>> 13;
+    return Math.floorMod(h, shardCount);
+  }
+
+  @Override
+  public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+    if (method.getDeclaringClass() == Object.class) {
+      return method.invoke(this, args);
+    }
+
+    switch (method.getName()) {
+      case "findById":
+      case "existsById":
+      case "findFieldsById":
+        return onShard(shardOf((Long) args[0]), () -> call(method, args));
+      case "getOne":
+      case "getById":
+        // a reference would be a proxy of the closed shard transaction
+        Long id = (Long) args[0];
+        return findUser(id).orElseThrow(() -> new EntityNotFoundException("Unable to find User with id " + id));
+      case "findAllById":
+        return findAllById(method, (Iterable<?>) args[0]);
+      case "findByUsername":
+        return findByUsername((String) args[0]);
+      case "save":
+      case "saveAndFlush":
+        return save((User) args[0]);
+      case "saveAll":
+        List<User> saved = new ArrayList<>();
+        for (Object user : (Iterable<?>) args[0]) {
+          saved.add(save((User) user));
+        }
+        return saved;
+      case "delete":
+        delete((User) args[0]);
+        return null;
+      case "deleteById":
+        findUser((Long) args[0]).ifPresent(this::delete);
+        return null;
+      case "deleteAllById":
+      case "deleteAllByIdInBatch":
+        for (Object userId : (Iterable<?>) args[0]) {
+          findUser((Long) userId).ifPresent(this::delete);
+        }
+        return null;
+      case "deleteAll":
+      case "deleteAllInBatch":
+      case "deleteInBatch":
+        if (args == null || args.length == 0) {
+          scatter(shard -> {
+            users.deleteAll();
+            claims.deleteAll();
+            return 0L;
+          });
+        }
+        else {
+          for (Object user : (Iterable<?>) args[0]) {
+            delete((User) user);
+          }
+        }
+        return null;
+      case "updateStatus":
+        return updateByIds(method, args);
+      case "markOfflineWithoutSessions":
+        return markOfflineWithoutSessions((Collection<?>) args[0], (Instant) args[1]);
+      case "flush":
+        // every routed call commits on its own
+        return null;
+      default:
+        return scatterGather(method, args);
+    }
+  }
+
+  private User findByUsername(String username) {
+    Optional<UsernameClaim> claim = onShard(shardOf(username, shardCount), () -> claims.findById(username));
+    if (claim.isEmpty()) {
+      return null;
+    }
+    return onShard(shardOf(claim.get().getUserId()), () -> users.findByUsername(username));
+  }
+
+  private Optional<User> findUser(Long id) {
+    return onShard(shardOf(id), () -> users.findById(id));
+  }
+
+  private User save(User user) {
+    if (user.getId() == null) {
+      // new users live next to the claim of their username, both are written in one transaction
+      return onShard(shardOf(user.getUsername(), shardCount), () -> {
+        User created = users.save(user);
+        claims.save(new UsernameClaim(created.getUsername(), created.getId()));
+        return created;
+      });
+    }
+
+    int shard = shardOf(user.getId());
+    String previousUsername = findUser(user.getId()).map(User::getUsername).orElse(null);
+    if (previousUsername == null || previousUsername.equals(user.getUsername())) {
+      return onShard(shard, () -> users.save(user));
+    }
+
+    // renamed: claim the new name first (fails if it is taken), release the old one last
+    int newClaimShard = shardOf(user.getUsername(), shardCount);
+    onShard(newClaimShard, () -> claims.saveAndFlush(new UsernameClaim(user.getUsername(), user.getId())));
+    User saved;
+    try {
+      saved = onShard(shard, () -> users.save(user));
+    }
+    catch (RuntimeException e) {
+      onShard(newClaimShard, () -> {
+        claims.deleteById(user.getUsername());
+        return null;
+      });
+      throw e;
+    }
+    onShard(shardOf(previousUsername, shardCount), () -> {
+      claims.deleteById(previousUsername);
+      return null;
+    });
+    return saved;
+  }
+
+  private void delete(User user) {
+    onShard(shardOf(user.getId()), () -> {
+      users.deleteById(user.getId());
+      return null;
+    });
+    onShard(shardOf(user.getUsername(), shardCount), () -> {
+      claims.findById(user.getUsername())
+          .filter(claim -> claim.getUserId().equals(user.getId()))
+          .ifPresent(claims::delete);
+      return null;
+    });
+  }
+
+  private Object findAllById(Method method, Iterable<?> ids) {
+    List<Object> found = new ArrayList<>();
+    for (Map.Entry<Integer, List<Long>> byShard : groupByShard(ids).entrySet()) {
+      found.addAll((Collection<?>) onShard(byShard.getKey(), () -> call(method, byShard.getValue())));
+    }
+    return found;
+  }
+
+  /**
+   * For the modifying queries whose first argument is a collection of ids,
+   * returns the summed update counts.
+   */
+  private Object updateByIds(Method method, Object[] args) {
+    long updated = 0;
+    for (Map.Entry<Integer, List<Long>> byShard : groupByShard((Iterable<?>) args[0]).entrySet()) {
+      Object[] shardArgs = args.clone();
+      shardArgs[0] = byShard.getValue();
+      updated += ((Number) onShard(byShard.getKey(), () -> call(method, shardArgs))).longValue();
+    }
+    return method.getReturnType() == long.class ? (Object) updated : (Object) (int) updated;
+  }
+
+  /**
+   * The sessions are only kept on the default shard, so the users holding one
+   * are looked up there first; the UPDATE on their own shards cannot see them.
+   */
+  private int markOfflineWithoutSessions(Collection<?> ids, Instant now) {
+    List<Long> userIds = new ArrayList<>();
+    for (Object id : ids) {
+      userIds.add((Long) id);
+    }
+    userIds.removeAll(onShard(0, () -> users.findIdsWithSessions(userIds, now)));
+    if (userIds.isEmpty()) {
+      return 0;
+    }
+    int updated = 0;
+    for (Map.Entry<Integer, List<Long>> byShard : groupByShard(userIds).entrySet()) {
+      updated += onShard(byShard.getKey(), () -> users.updateStatus(byShard.getValue(), UserStatus.OFFLINE));
+    }
+    return updated;
+  }
+
+  private Object scatterGather(Method method, Object[] args) {
+    Class<?> returnType = method.getReturnType();
+    if (Slice.class.isAssignableFrom(returnType)) {
+      return gatherPage(method, args);
+    }
+    List<Object> parts = scatter(shard -> call(method, args));
+    if (List.class.isAssignableFrom(returnType) || returnType == Collection.class || returnType == Iterable.class) {
+      List<Object> gathered = new ArrayList<>();
+      for (Object part : parts) {
+        for (Object element : (Iterable<?>) part) {
+          gathered.add(element);
+        }
+      }
+      sort(gathered, argument(args, Sort.class));
+      return gathered;
+    }
+    if (returnType == long.class || returnType == Long.class || returnType == int.class || returnType == Integer.class) {
+      long total = 0;
+      for (Object part : parts) {
+        total += ((Number) part).longValue();
+      }
+      return returnType == long.class || returnType == Long.class ? (Object) total : (Object) (int) total;
+    }
+    if (returnType == boolean.class || returnType == Boolean.class) {
+      return parts.contains(Boolean.TRUE);
+    }
+    if (returnType == void.class) {
+      return null;
+    }
+
+    // a single result, found on at most one shard
+    List<Object> found = new ArrayList<>();
+    for (Object part : parts) {
+      Object result = part instanceof Optional ? ((Optional<?>) part).orElse(null) : part;
+      if (result != null) {
+        found.add(result);
+      }
+    }
+    if (found.size() > 1) {
+      throw new IncorrectResultSizeDataAccessException(method.getName() + " found results on several shards",
+          1, found.size());
+    }
+    Object result = found.isEmpty() ? null : found.get(0);
+    return returnType == Optional.class ? Optional.ofNullable(result) : result;
+  }
+
+  /**
+   * Every shard returns the rows up to the end of the requested page, which
+   * is cut from them once they are merged in order. Deep pages are expensive.
+   */
+  private Object gatherPage(Method method, Object[] args) {
+    int pageableIndex = indexOf(args, Pageable.class);
+    Pageable pageable = pageableIndex < 0 ? Pageable.unpaged() : (Pageable) args[pageableIndex];
+    Object[] shardArgs = args.clone();
+    if (pageable.isPaged()) {
+      shardArgs[pageableIndex] = PageRequest.of(0, Math.toIntExact(pageable.getOffset() + pageable.getPageSize()),
+          pageable.getSort());
+    }
+
+    List<Object> gathered = new ArrayList<>();
+    long total = 0;
+    boolean hasNext = false;
+    for (Object part : scatter(shard -> call(method, shardArgs))) {
+      Slice<?> slice = (Slice<?>) part;
+      gathered.addAll(slice.getContent());
+      hasNext |= slice.hasNext();
+      if (slice instanceof Page) {
+        total += ((Page<?>) slice).getTotalElements();
+      }
+    }
+    sort(gathered, pageable.getSort());
+    if (pageable.isPaged()) {
+      int from = (int) Math.min(pageable.getOffset(), gathered.size());
+      int to = Math.min(from + pageable.getPageSize(), gathered.size());
+      hasNext |= to < gathered.size();
+      gathered = new ArrayList<>(gathered.subList(from, to));
+    }
+    if (Page.class.isAssignableFrom(method.getReturnType())) {
+      return new PageImpl<>(gathered, pageable, total);
+    }
+    return new SliceImpl<>(gathered, pageable, hasNext);
+  }
+
+  /**
+   * Orders merged results by the requested sort; without one, users are
+   * ordered by id and anything else stays in the order of the shards.
+   */
+  private static void sort(List<Object> gathered, Sort sort) {
+    if (sort != null && sort.isSorted()) {
+      Comparator<Object> comparator = null;
+      for (Sort.Order order : sort) {
+        Comparator<Object> byProperty = new PropertyComparator<>(order.getProperty(), order.isIgnoreCase(),
+            order.isAscending());
+        comparator = comparator == null ? byProperty : comparator.thenComparing(byProperty);
+      }
+      gathered.sort(comparator);
+    }
+    else if (!gathered.isEmpty() && gathered.stream().allMatch(User.class::isInstance)) {
+      gathered.sort(Comparator.comparing(user -> ((User) user).getId()));
+    }
+  }
+
+  private static int indexOf(Object[] args, Class<?> type) {
+    for (int i = 0; args != null && i < args.length; i++) {
+      if (type.isInstance(args[i])) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private static <T> T argument(Object[] args, Class<T> type) {
+    int index = indexOf(args, type);
+    return index < 0 ? null : type.cast(args[index]);
+  }
+
+  private interface ShardCall {
+    Object apply(int shard);
+  }
+
+  private List<Object> scatter(ShardCall shardCall) {
+    List<CompletableFuture<Object>> parts = new ArrayList<>(shardCount);
+    for (int shard = 0; shard < shardCount; shard++) {
+      int target = shard;
+      parts.add(CompletableFuture.supplyAsync(() -> onShard(target, () -> shardCall.apply(target)), scatterExecutor));
+    }
+    List<Object> results = new ArrayList<>(shardCount);
+    try {
+      for (CompletableFuture<Object> part : parts) {
+        results.add(part.join());
+      }
+    }
+    catch (CompletionException e) {
+      throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+    }
+    return results;
+  }
+
+  private <T> T onShard(int shard, Supplier<T> work) {
+    Integer previous = ShardContext.current();
+    ShardContext.set(shard);
+    try {
+      return transactionTemplate.execute(status -> work.get());
+    }
+    finally {
+      ShardContext.set(previous);
+    }
+  }
+
+  private Object call(Method method, Object... args) {
+    try {
+      return method.invoke(users, args);
+    }
+    catch (InvocationTargetException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw new IllegalStateException(cause);
+    }
+    catch (IllegalAccessException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static Map<Integer, List<Long>> groupByShard(Iterable<?> ids) {
+    Map<Integer, List<Long>> byShard = new TreeMap<>();
+    for (Object id : ids) {
+      byShard.computeIfAbsent(shardOf((Long) id), shard -> new ArrayList<>()).add((Long) id);
+    }
+    return byShard;
+  }
+}
@@ -0,0 +1,23 @@
+package ch.uzh.ifi.hase.soprafs24.repository;
+
+import ch.uzh.ifi.hase.soprafs24.constant.UserField;
+
+import java.util.List;
+
+/**
+ * Queries selecting only some columns of the users, implemented by
+ * UserFieldsRepositoryImpl. Every row holds the values in the order of the
+ * requested fields.
+ */
+public interface UserFieldsRepository {
+
+  /**
+   * @return one row per user, ordered by id
+   */
+  List<Object[]> findFields(List<UserField> fields);
+
+  /**
+   * @return the row of the user, or null if there is none
+   */
+  Object[] findFieldsById(Long id, List<UserField> fields);
+}
@@ -0,0 +1,50 @@
+package ch.uzh.ifi.hase.soprafs24.repository;
+
+import ch.uzh.ifi.hase.soprafs24.constant.UserField;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Builds the JPQL projection from the requested fields, so only their
+ * columns are read and no User entities are created.
+ */
+public class UserFieldsRepositoryImpl implements UserFieldsRepository {
+
+  @PersistenceContext
+  private EntityManager entityManager;
+
+  @Override
+  public List<Object[]> findFields(List<UserField> fields) {
+    List<?> rows = entityManager.createQuery(select(fields) + " ORDER BY u.id").getResultList();
+    List<Object[]> result = new ArrayList<>(rows.size());
+    for (Object row : rows) {
+      result.add(toRow(row, fields));
+    }
+    return result;
+  }
+
+  @Override
+  public Object[] findFieldsById(Long id, List<UserField> fields) {
+    List<?> rows = entityManager.createQuery(select(fields) + " WHERE u.id = :id")
+        .setParameter("id", id)
+        .getResultList();
+    return rows.isEmpty() ? null : toRow(rows.get(0), fields);
+  }
+
+  private static String select(List<UserField> fields) {
+    // the field names come from the enum only, never from the request
+    return fields.stream()
+        .map(field -> "u." + field.getFieldName())
+        .collect(Collectors.joining(", ", "SELECT ", " FROM User u"));
+  }
+
+  private static Object[] toRow(Object row, List<UserField> fields) {
+    // a single selected column comes back as the bare value
+    return fields.size() == 1 ? new Object[] { row } : (Object[]) row;
+  }
+}
@@ -1,11 +1,55 @@
 package ch.uzh.ifi.hase.soprafs24.repository;
 
+import ch.uzh.ifi.hase.soprafs24.constant.UserStatus;
 import ch.uzh.ifi.hase.soprafs24.entity.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
 @Repository("userRepository")
-public interface UserRepository extends JpaRepository<User, Long> {
+public interface UserRepository extends JpaRepository<User, Long>, UserFieldsRepository {
   User findByUsername(String username);
-  User findByToken(String token);
+
+  List<User> findByUsernameIn(Collection<String> usernames);
+
+  @Modifying
+  @Query("UPDATE User u SET u.status = :status WHERE u.id IN :ids")
+  int updateStatus(@Param("ids") Collection<Long> ids, @Param("status") UserStatus status);
+
+  /**
+   * Sets the users OFFLINE unless they hold a session valid at now, so a login
+   * that committed after the caller looked at the sessions is not overwritten.
+   */
+  @Modifying
+  @Query("UPDATE User u SET u.status = ch.uzh.ifi.hase.soprafs24.constant.UserStatus.OFFLINE "
+      + "WHERE u.id IN :ids AND NOT EXISTS "
+      + "(SELECT s.token FROM Session s WHERE s.userId = u.id AND s.expiresAt > :now)")
+  int markOfflineWithoutSessions(@Param("ids") Collection<Long> ids, @Param("now") Instant now);
+
+  /**
+   * @return the ids among the given ones holding a session valid at now
+   */
+  @Query("SELECT DISTINCT s.userId FROM Session s WHERE s.userId IN :ids AND s.expiresAt > :now")
+  List<Long> findIdsWithSessions(@Param("ids") Collection<Long> ids, @Param("now") Instant now);
+
+  @Query("SELECT u.id FROM User u WHERE u.status = :status")
+  List<Long> findIdsByStatus(@Param("status") UserStatus status);
+
+  /**
+   * @return pairs of registration date and number of users
+   */
+  @Query("SELECT u.date, COUNT(u) FROM User u GROUP BY u.date")
+  List<Object[]> countByDate();
+
+  /**
+   * @return pairs of id and birthday of the users with a birthday
+   */
+  @Query("SELECT u.id, u.birthday FROM User u WHERE u.birthday IS NOT NULL")
+  List<Object[]> findBirthdays();
 }
@@ -0,0 +1,12 @@
+package ch.uzh.ifi.hase.soprafs24.repository;
+
+import ch.uzh.ifi.hase.soprafs24.entity.UsernameClaim;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+// the entity is only managed when sharded, see UnshardedConfig
+@ConditionalOnProperty(prefix = "users.sharding", name = "urls")
+@Repository("usernameClaimRepository")
+public interface UsernameClaimRepository extends JpaRepository<UsernameClaim, String> {
+}
@@ -0,0 +1,26 @@
+package ch.uzh.ifi.hase.soprafs24.rest.dto;
+
+public class ErrorDTO {
+
+  private int status;
+  private String error;
+  private String message;
+
+  public ErrorDTO(int status, String error, String message) {
+    this.status = status;
+    this.error = error;
+    this.message = message;
+  }
+
+  public int getStatus() {
+    return status;
+  }
+
+  public String getError() {
+    return error;
+  }
+
+  public String getMessage() {
+    return message;
+  }
+}
@@ -0,0 +1,29 @@
+package ch.uzh.ifi.hase.soprafs24.rest.dto;
+
+import java.util.List;
+
+public class OnlineUsersDTO {
+
+  private long count;
+  private List<Long> ids;
+  // pass as after= to get the next page, null on the last page
+  private Long next;
+
+  public OnlineUsersDTO(long count, List<Long> ids, Long next) {
+    this.count = count;
+    this.ids = ids;
+    this.next = next;
+  }
+
+  public long getCount() {
+    return count;
+  }
+
+  public List<Long> getIds() {
+    return ids;
+  }
+
+  public Long getNext() {
+    return next;
+  }
+}
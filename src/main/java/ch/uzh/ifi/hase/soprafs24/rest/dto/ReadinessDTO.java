@@ -0,0 +1,20 @@
+package ch.uzh.ifi.hase.soprafs24.rest.dto;
+
+public class ReadinessDTO {
+
+  private String state;
+  private long warmUpMillis;
+
+  public ReadinessDTO(String state, long warmUpMillis) {
+    this.state = state;
+    this.warmUpMillis = warmUpMillis;
+  }
+
+  public String getState() {
+    return state;
+  }
+
+  public long getWarmUpMillis() {
+    return warmUpMillis;
+  }
+}
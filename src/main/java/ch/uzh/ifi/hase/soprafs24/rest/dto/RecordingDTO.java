@@ -0,0 +1,43 @@
+package ch.uzh.ifi.hase.soprafs24.rest.dto;
+
+import java.time.Instant;
+
+public class RecordingDTO {
+
+  private long id;
+  private String name;
+  private String state;
+  private Instant startTime;
+  private String file;
+
+  public RecordingDTO(long id, String name, String state, Instant startTime, String file) {
+    this.id = id;
+    this.name = name;
+    this.state = state;
+    this.startTime = startTime;
+    this.file = file;
+  }
+
+  public long getId() {
+    return id;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public String getState() {
+    return state;
+  }
+
+  public Instant getStartTime() {
+    return startTime;
+  }
+
+  /**
+   * @return the file the recording was last dumped to, or null
+   */
+  public String getFile() {
+    return file;
+  }
+}
@@ -0,0 +1,23 @@
+package ch.uzh.ifi.hase.soprafs24.rest.dto;
+
+public class UserBatchEditDTO {
+
+  private Long id;
+  private UserPutDTO user;
+
+  public Long getId() {
+    return id;
+  }
+
+  public void setId(Long id) {
+    this.id = id;
+  }
+
+  public UserPutDTO getUser() {
+    return user;
+  }
+
+  public void setUser(UserPutDTO user) {
+    this.user = user;
+  }
+}
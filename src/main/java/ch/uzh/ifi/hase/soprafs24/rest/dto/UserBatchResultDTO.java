@@ -0,0 +1,27 @@
+package ch.uzh.ifi.hase.soprafs24.rest.dto;
+
+public class UserBatchResultDTO {
+
+  private Long id;
+  // HTTP status the edit would have had on its own: 200, 400, 404 or 409
+  private int status;
+  private String message;
+
+  public UserBatchResultDTO(Long id, int status, String message) {
+    this.id = id;
+    this.status = status;
+    this.message = message;
+  }
+
+  public Long getId() {
+    return id;
+  }
+
+  public int getStatus() {
+    return status;
+  }
+
+  public String getMessage() {
+    return message;
+  }
+}
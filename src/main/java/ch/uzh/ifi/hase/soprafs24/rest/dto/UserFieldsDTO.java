@@ -0,0 +1,27 @@
+package ch.uzh.ifi.hase.soprafs24.rest.dto;
+
+import ch.uzh.ifi.hase.soprafs24.constant.UserField;
+
+import java.util.List;
+
+/**
+ * The selected fields of a user, written by UserFieldsDTOSerializer.
+ */
+public class UserFieldsDTO {
+
+  private final List<UserField> fields;
+  private final Object[] values;
+
+  public UserFieldsDTO(List<UserField> fields, Object[] values) {
+    this.fields = fields;
+    this.values = values;
+  }
+
+  public List<UserField> getFields() {
+    return fields;
+  }
+
+  public Object[] getValues() {
+    return values;
+  }
+}
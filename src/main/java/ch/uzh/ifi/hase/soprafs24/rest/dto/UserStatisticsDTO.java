@@ -0,0 +1,39 @@
+package ch.uzh.ifi.hase.soprafs24.rest.dto;
+
+import ch.uzh.ifi.hase.soprafs24.constant.UserStatus;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Map;
+
+public class UserStatisticsDTO {
+
+  private long total;
+  private Map<UserStatus, Long> byStatus;
+  private Map<LocalDate, Long> registrationsByDay;
+  private Instant reconciledAt;
+
+  public UserStatisticsDTO(long total, Map<UserStatus, Long> byStatus, Map<LocalDate, Long> registrationsByDay,
+                           Instant reconciledAt) {
+    this.total = total;
+    this.byStatus = byStatus;
+    this.registrationsByDay = registrationsByDay;
+    this.reconciledAt = reconciledAt;
+  }
+
+  public long getTotal() {
+    return total;
+  }
+
+  public Map<UserStatus, Long> getByStatus() {
+    return byStatus;
+  }
+
+  public Map<LocalDate, Long> getRegistrationsByDay() {
+    return registrationsByDay;
+  }
+
+  public Instant getReconciledAt() {
+    return reconciledAt;
+  }
+}
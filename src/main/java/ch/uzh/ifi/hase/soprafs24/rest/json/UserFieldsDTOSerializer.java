@@ -0,0 +1,63 @@
+package ch.uzh.ifi.hase.soprafs24.rest.json;
+
+import ch.uzh.ifi.hase.soprafs24.constant.UserField;
+import ch.uzh.ifi.hase.soprafs24.rest.dto.UserFieldsDTO;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import org.springframework.boot.jackson.JsonComponent;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * UserFieldsDTOSerializer
+ * Writes only the selected fields of a user, in the requested order and in
+ * the same format as UserGetDTOSerializer (ISO dates, enum names, nulls
+ * included).
+ */
+@JsonComponent
+public class UserFieldsDTOSerializer extends StdSerializer<UserFieldsDTO> {
+
+  private static final long serialVersionUID = 1L;
+
+  private static final SerializedString[] NAMES = new SerializedString[UserField.values().length];
+
+  static {
+    for (UserField field : UserField.values()) {
+      NAMES[field.ordinal()] = new SerializedString(field.getFieldName());
+    }
+  }
+
+  public UserFieldsDTOSerializer() {
+    super(UserFieldsDTO.class);
+  }
+
+  @Override
+  public void serialize(UserFieldsDTO user, JsonGenerator generator, SerializerProvider provider) throws IOException {
+    generator.writeStartObject(user);
+
+    List<UserField> fields = user.getFields();
+    Object[] values = user.getValues();
+    for (int i = 0; i < fields.size(); i++) {
+      generator.writeFieldName(NAMES[fields.get(i).ordinal()]);
+      Object value = values[i];
+      if (value == null) {
+        generator.writeNull();
+      }
+      else if (value instanceof Long) {
+        generator.writeNumber((Long) value);
+      }
+      else if (value instanceof Enum) {
+        generator.writeString(((Enum<?>) value).name());
+      }
+      else {
+        // strings and LocalDate, whose toString() is ISO-8601
+        generator.writeString(value.toString());
+      }
+    }
+
+    generator.writeEndObject();
+  }
+}
@@ -0,0 +1,71 @@
+package ch.uzh.ifi.hase.soprafs24.rest.json;
+
+import ch.uzh.ifi.hase.soprafs24.rest.dto.UserGetDTO;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import org.springframework.boot.jackson.JsonComponent;
+
+import java.io.IOException;
+import java.time.LocalDate;
+
+/**
+ * UserGetDTOSerializer
+ * Hand-written serializer for UserGetDTO, registered with the application's
+ * ObjectMapper through @JsonComponent.
+ * It writes the fields with pre-encoded names and formats the LocalDate fields
+ * and the UserStatus enum directly, instead of going through the reflective
+ * bean serializer and the JSR-310 serializers. The output is the same as the
+ * default one (ISO dates, enum names, nulls included), so keep the field order
+ * below in sync with UserGetDTO when adding fields.
+ */
+@JsonComponent
+public class UserGetDTOSerializer extends StdSerializer<UserGetDTO> {
+
+  private static final long serialVersionUID = 1L;
+
+  private static final SerializedString ID = new SerializedString("id");
+  private static final SerializedString USERNAME = new SerializedString("username");
+  private static final SerializedString TOKEN = new SerializedString("token");
+  private static final SerializedString STATUS = new SerializedString("status");
+  private static final SerializedString BIRTHDAY = new SerializedString("birthday");
+  private static final SerializedString DATE = new SerializedString("date");
+
+  public UserGetDTOSerializer() {
+    super(UserGetDTO.class);
+  }
+
+  @Override
+  public void serialize(UserGetDTO user, JsonGenerator generator, SerializerProvider provider) throws IOException {
+    generator.writeStartObject(user);
+
+    generator.writeFieldName(ID);
+    if (user.getId() == null) {
+      generator.writeNull();
+    }
+    else {
+      generator.writeNumber(user.getId());
+    }
+
+    generator.writeFieldName(USERNAME);
+    generator.writeString(user.getUsername());
+
+    generator.writeFieldName(TOKEN);
+    generator.writeString(user.getToken());
+
+    generator.writeFieldName(STATUS);
+    generator.writeString(user.getStatus() == null ? null : user.getStatus().name());
+
+    writeDate(generator, BIRTHDAY, user.getBirthday());
+    writeDate(generator, DATE, user.getDate());
+
+    generator.writeEndObject();
+  }
+
+  private static void writeDate(JsonGenerator generator, SerializedString name, LocalDate date) throws IOException {
+    generator.writeFieldName(name);
+    // LocalDate.toString() is the ISO-8601 format the JSR-310 module writes
+    generator.writeString(date == null ? null : date.toString());
+  }
+}
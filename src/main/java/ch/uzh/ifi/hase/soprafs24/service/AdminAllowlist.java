@@ -0,0 +1,33 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+import ch.uzh.ifi.hase.soprafs24.entity.User;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Admin Allowlist
+ * The ids of the users allowed to use the admin endpoints (users.admin.ids).
+ * Ids, unlike usernames, cannot be taken over by registering or renaming.
+ * Empty by default, so nobody is an admin unless configured.
+ */
+@Component
+public class AdminAllowlist {
+
+  private final Set<Long> ids;
+
+  public AdminAllowlist(@Value("${users.admin.ids:}") String ids) {
+    this.ids = Arrays.stream(ids.split(","))
+        .map(String::trim)
+        .filter(id -> !id.isEmpty())
+        .map(Long::valueOf)
+        .collect(Collectors.toUnmodifiableSet());
+  }
+
+  public boolean isAdmin(User user) {
+    return user != null && user.getId() != null && ids.contains(user.getId());
+  }
+}
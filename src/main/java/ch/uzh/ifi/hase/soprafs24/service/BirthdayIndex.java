@@ -0,0 +1,143 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+import ch.uzh.ifi.hase.soprafs24.cluster.UserCachesStaleEvent;
+import ch.uzh.ifi.hase.soprafs24.config.ReplicaRoutingDataSource;
+import ch.uzh.ifi.hase.soprafs24.entity.User;
+import ch.uzh.ifi.hase.soprafs24.repository.UserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import javax.annotation.PostConstruct;
+
+import java.time.LocalDate;
+import java.time.Month;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Birthday Index
+ * The ids of all users with a birthday, in 366 buckets by day of the year
+ * (counted in a leap year, so February 29 has its own bucket). Looking up
+ * the birthdays of some days only reads their buckets. The index is loaded
+ * at startup; the birthdays of edited users (of this node or another one)
+ * are read back from the database once their edit committed, so an edit
+ * that rolls back never reaches the index.
+ * In years without February 29, those birthdays are celebrated on February 28.
+ */
+@Component
+public class BirthdayIndex {
+
+  private static final int BUCKETS = 366;
+  private static final int FEBRUARY_29 = bucketOf(LocalDate.of(2000, Month.FEBRUARY, 29));
+
+  private final Logger log = LoggerFactory.getLogger(BirthdayIndex.class);
+
+  private final UserRepository userRepository;
+
+  private final List<Set<Long>> buckets = new ArrayList<>(BUCKETS);
+  private final ConcurrentHashMap<Long, Integer> bucketByUser = new ConcurrentHashMap<>();
+
+  public BirthdayIndex(@Qualifier("userRepository") UserRepository userRepository) {
+    this.userRepository = userRepository;
+    for (int i = 0; i < BUCKETS; i++) {
+      buckets.add(ConcurrentHashMap.newKeySet());
+    }
+  }
+
+  @PostConstruct
+  public void load() {
+    List<Object[]> birthdays = userRepository.findBirthdays();
+    for (Object[] birthday : birthdays) {
+      update((Long) birthday[0], (LocalDate) birthday[1]);
+    }
+    log.info("Indexed {} birthdays", birthdays.size());
+  }
+
+  @TransactionalEventListener(fallbackExecution = true)
+  public void onUserChanged(UserChangedEvent event) {
+    if (event.getKind() != UserChangedEvent.Kind.EDITED) {
+      return;
+    }
+    // the replica may not have the edit yet
+    Map<Long, LocalDate> birthdays = ReplicaRoutingDataSource.readFromPrimary(() -> {
+      Map<Long, LocalDate> found = new HashMap<>();
+      for (User user : userRepository.findAllById(event.getUserIds())) {
+        found.put(user.getId(), user.getBirthday());
+      }
+      return found;
+    });
+    for (Long userId : event.getUserIds()) {
+      update(userId, birthdays.get(userId));
+    }
+  }
+
+  @EventListener
+  public void onCachesStale(UserCachesStaleEvent event) {
+    load();
+  }
+
+  /**
+   * Moves the user to the bucket of the new birthday, or out of the index if
+   * it is null.
+   */
+  public void update(Long userId, LocalDate birthday) {
+    if (birthday == null) {
+      Integer previous = bucketByUser.remove(userId);
+      if (previous != null) {
+        buckets.get(previous).remove(userId);
+      }
+      return;
+    }
+    int bucket = bucketOf(birthday);
+    // add before removing, so a concurrent lookup never misses the user
+    buckets.get(bucket).add(userId);
+    Integer previous = bucketByUser.put(userId, bucket);
+    if (previous != null && previous != bucket) {
+      buckets.get(previous).remove(userId);
+    }
+  }
+
+  /**
+   * @return the ids of the users whose birthday is on one of the days from
+   * the given day on; callers should check the birthday of the loaded users,
+   * as the index follows committed edits with a short delay
+   */
+  public List<Long> find(LocalDate from, int days) {
+    List<Long> userIds = new ArrayList<>();
+    LocalDate day = from;
+    for (int i = 0; i < Math.min(days, BUCKETS); i++, day = day.plusDays(1)) {
+      userIds.addAll(buckets.get(bucketOf(day)));
+      if (!day.isLeapYear() && day.getMonth() == Month.FEBRUARY && day.getDayOfMonth() == 28) {
+        userIds.addAll(buckets.get(FEBRUARY_29));
+      }
+    }
+    return userIds;
+  }
+
+  public int size() {
+    return bucketByUser.size();
+  }
+
+  /**
+   * @return whether someone born on the birthday celebrates on the day
+   */
+  public static boolean isCelebratedOn(LocalDate birthday, LocalDate day) {
+    if (birthday.getMonth() == day.getMonth() && birthday.getDayOfMonth() == day.getDayOfMonth()) {
+      return true;
+    }
+    return birthday.getMonth() == Month.FEBRUARY && birthday.getDayOfMonth() == 29
+        && !day.isLeapYear() && day.getMonth() == Month.FEBRUARY && day.getDayOfMonth() == 28;
+  }
+
+  private static int bucketOf(LocalDate date) {
+    return LocalDate.of(2000, date.getMonth(), date.getDayOfMonth()).getDayOfYear() - 1;
+  }
+}
@@ -0,0 +1,154 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Login Throttle
+ * Counts failed logins per username and per client address, so repeated
+ * failures are turned away before they reach UserService and the database.
+ * The counters decay exponentially with the configured half-life: a key is
+ * throttled while its count is at or above its limit, and is let through
+ * again once enough time passed.
+ * The counters are spread over lock stripes by key hash; every stripe is an
+ * LRU map bounded to its share of max-entries, so a flood of distinct
+ * usernames or addresses only evicts the oldest counters.
+ */
+@Component
+public class LoginThrottle {
+
+  private static final double LN2 = Math.log(2);
+
+  private static final class Failures {
+    private double count;
+    private long updatedMillis;
+
+    private double decayed(long nowMillis, double halfLifeMillis) {
+      return count * Math.exp(-LN2 * Math.max(0, nowMillis - updatedMillis) / halfLifeMillis);
+    }
+  }
+
+  private static final class Stripe extends LinkedHashMap<String, Failures> {
+    private static final long serialVersionUID = 1L;
+
+    private final int maxEntries;
+
+    private Stripe(int maxEntries) {
+      super(16, 0.75f, true);
+      this.maxEntries = maxEntries;
+    }
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, Failures> eldest) {
+      return size() > maxEntries;
+    }
+  }
+
+  private final Stripe[] stripes;
+  private final int maxUsernameFailures;
+  private final int maxClientFailures;
+  private final double halfLifeMillis;
+
+  public LoginThrottle(@Value("${users.login-throttle.max-username-failures:5}") int maxUsernameFailures,
+                       @Value("${users.login-throttle.max-client-failures:20}") int maxClientFailures,
+                       @Value("${users.login-throttle.half-life-seconds:60}") long halfLifeSeconds,
+                       @Value("${users.login-throttle.max-entries:100000}") int maxEntries,
+                       @Value("${users.login-throttle.stripes:64}") int stripeCount) {
+    this.maxUsernameFailures = maxUsernameFailures;
+    this.maxClientFailures = maxClientFailures;
+    this.halfLifeMillis = halfLifeSeconds * 1000.0;
+    this.stripes = new Stripe[stripeCount];
+    for (int i = 0; i < stripeCount; i++) {
+      stripes[i] = new Stripe(Math.max(1, maxEntries / stripeCount));
+    }
+  }
+
+  public long retryAfterSeconds(String username, String client) {
+    return retryAfterSeconds(username, client, Instant.now());
+  }
+
+  /**
+   * @return 0 if the login may be tried, otherwise the seconds until it may be tried again
+   */
+  public long retryAfterSeconds(String username, String client, Instant now) {
+    long nowMillis = now.toEpochMilli();
+    return Math.max(retryAfterSeconds(usernameKey(username), maxUsernameFailures, nowMillis),
+        retryAfterSeconds(clientKey(client), maxClientFailures, nowMillis));
+  }
+
+  public void recordFailure(String username, String client) {
+    recordFailure(username, client, Instant.now());
+  }
+
+  public void recordFailure(String username, String client, Instant now) {
+    long nowMillis = now.toEpochMilli();
+    increment(usernameKey(username), nowMillis);
+    increment(clientKey(client), nowMillis);
+  }
+
+  /**
+   * Forgets the failures of the username; the client keeps its count, so one
+   * valid account does not unlock guessing at others.
+   */
+  public void recordSuccess(String username) {
+    String key = usernameKey(username);
+    Stripe stripe = stripeOf(key);
+    synchronized (stripe) {
+      stripe.remove(key);
+    }
+  }
+
+  public int size() {
+    int size = 0;
+    for (Stripe stripe : stripes) {
+      synchronized (stripe) {
+        size += stripe.size();
+      }
+    }
+    return size;
+  }
+
+  private long retryAfterSeconds(String key, int limit, long nowMillis) {
+    Stripe stripe = stripeOf(key);
+    double count;
+    synchronized (stripe) {
+      Failures failures = stripe.get(key);
+      if (failures == null) {
+        return 0;
+      }
+      count = failures.decayed(nowMillis, halfLifeMillis);
+    }
+    if (count < limit) {
+      return 0;
+    }
+    // count * 2^(-t / halfLife) drops below the limit after t = halfLife * log2(count / limit)
+    double millis = halfLifeMillis * Math.log(count / limit) / LN2;
+    return Math.max(1, (long) Math.ceil(millis / 1000));
+  }
+
+  private void increment(String key, long nowMillis) {
+    Stripe stripe = stripeOf(key);
+    synchronized (stripe) {
+      Failures failures = stripe.computeIfAbsent(key, k -> new Failures());
+      failures.count = failures.decayed(nowMillis, halfLifeMillis) + 1;
+      failures.updatedMillis = nowMillis;
+    }
+  }
+
+  private Stripe stripeOf(String key) {
+    int h = key.hashCode();
+    return stripes[Math.floorMod(h ^ (h >>> 16), stripes.length)];
+  }
+
+  private static String usernameKey(String username) {
+    return "u:" + (username == null ? "" : username);
+  }
+
+  private static String clientKey(String client) {
+    return "c:" + (client == null ? "" : client);
+  }
+}
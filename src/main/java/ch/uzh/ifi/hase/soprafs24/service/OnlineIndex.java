@@ -0,0 +1,151 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+import ch.uzh.ifi.hase.soprafs24.cluster.UserCachesStaleEvent;
+import ch.uzh.ifi.hase.soprafs24.constant.UserStatus;
+import ch.uzh.ifi.hase.soprafs24.repository.UserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import javax.annotation.PostConstruct;
+
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Online Index
+ * The ids of the ONLINE users in a UserIdBitmap, so counting them, checking
+ * a list of ids (e.g. the members of a lobby) and paging through them needs
+ * neither the database nor User entities. Logins and going offline update it
+ * under the write lock; every query sees a consistent state.
+ * It is loaded at startup and rebuilt with the UserStatistics, or when
+ * changes of another node may have been missed.
+ */
+@Component
+public class OnlineIndex {
+
+  private final Logger log = LoggerFactory.getLogger(OnlineIndex.class);
+
+  private final UserRepository userRepository;
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+  private UserIdBitmap online = new UserIdBitmap();
+
+  public OnlineIndex(@Qualifier("userRepository") UserRepository userRepository) {
+    this.userRepository = userRepository;
+  }
+
+  /**
+   * Replaces the index with the ONLINE users in the database.
+   */
+  @PostConstruct
+  public void load() {
+    UserIdBitmap loaded = new UserIdBitmap();
+    for (Long id : userRepository.findIdsByStatus(UserStatus.ONLINE)) {
+      loaded.add(id);
+    }
+    lock.writeLock().lock();
+    try {
+      online = loaded;
+    }
+    finally {
+      lock.writeLock().unlock();
+    }
+    log.debug("Indexed {} online users in {} bytes", loaded.cardinality(), loaded.memoryBytes());
+  }
+
+  @EventListener
+  public void onCachesStale(UserCachesStaleEvent event) {
+    load();
+  }
+
+  @TransactionalEventListener(fallbackExecution = true)
+  public void onUserChanged(UserChangedEvent event) {
+    boolean online;
+    switch (event.getKind()) {
+      case CREATED:
+      case LOGGED_IN:
+        online = true;
+        break;
+      case WENT_OFFLINE:
+        online = false;
+        break;
+      default:
+        return;
+    }
+    lock.writeLock().lock();
+    try {
+      for (Long userId : event.getUserIds()) {
+        if (online) {
+          this.online.add(userId);
+        }
+        else {
+          this.online.remove(userId);
+        }
+      }
+    }
+    finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  public long count() {
+    lock.readLock().lock();
+    try {
+      return online.cardinality();
+    }
+    finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  public boolean isOnline(long userId) {
+    lock.readLock().lock();
+    try {
+      return online.contains(userId);
+    }
+    finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * @return the given ids of users that are online, in the given order
+   */
+  public List<Long> retainOnline(Iterable<Long> userIds) {
+    lock.readLock().lock();
+    try {
+      return online.retain(userIds);
+    }
+    finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * @return up to limit ids of online users greater than after, ascending
+   */
+  public List<Long> page(long after, int limit) {
+    lock.readLock().lock();
+    try {
+      return online.page(after, limit);
+    }
+    finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  public long memoryBytes() {
+    lock.readLock().lock();
+    try {
+      return online.memoryBytes();
+    }
+    finally {
+      lock.readLock().unlock();
+    }
+  }
+}
@@ -0,0 +1,198 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+import ch.uzh.ifi.hase.soprafs24.exceptions.ServiceUnavailableException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Password Hasher
+ * Stores passwords as PBKDF2-HMAC-SHA256 hashes in the form
+ * pbkdf2-sha256$iterations$salt$hash. Hashing is deliberately slow, so it runs
+ * on a small pool of its own (one thread per core by default) with a bounded
+ * queue: a login storm then queues up there and is turned away with 503 once
+ * the queue is full, instead of occupying every request thread with hashing.
+ * A caller waits at most timeout-millis for its hash, also answered with 503.
+ * Callers should not hold a database connection (transaction) meanwhile.
+ * The iterations (work factor) are configurable, or calibrated at startup to
+ * take about target-millis; hashes made with other iterations, and plaintext
+ * passwords of older rows, are reported by needsRehash so a successful login
+ * can replace them.
+ */
+@Component
+public class PasswordHasher {
+
+  private static final String ALGORITHM = "PBKDF2WithHmacSHA256";
+  private static final String PREFIX = "pbkdf2-sha256$";
+  private static final int SALT_BYTES = 16;
+  private static final int HASH_BITS = 256;
+  private static final int MIN_ITERATIONS = 10_000;
+
+  private final Logger log = LoggerFactory.getLogger(PasswordHasher.class);
+
+  private final SecureRandom random = new SecureRandom();
+  private final ThreadPoolExecutor executor;
+  private final int iterations;
+  private final long timeoutMillis;
+
+  public PasswordHasher(@Value("${users.password.iterations:210000}") int iterations,
+                        @Value("${users.password.target-millis:0}") long targetMillis,
+                        @Value("${users.password.threads:0}") int threads,
+                        @Value("${users.password.queue-capacity:256}") int queueCapacity,
+                        @Value("${users.password.timeout-millis:10000}") long timeoutMillis) {
+    int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+    AtomicInteger threadNumber = new AtomicInteger();
+    this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0, TimeUnit.MILLISECONDS,
+        new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+          Thread thread = new Thread(runnable, "password-hash-" + threadNumber.incrementAndGet());
+          thread.setDaemon(true);
+          return thread;
+        });
+    this.iterations = targetMillis > 0 ? calibrate(targetMillis) : iterations;
+    this.timeoutMillis = timeoutMillis;
+    log.info("Hashing passwords with {} iterations on {} threads", this.iterations, poolSize);
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    executor.shutdown();
+  }
+
+  public int getIterations() {
+    return iterations;
+  }
+
+  /**
+   * @return the hash to store for the password, null if there is none
+   */
+  public String hash(String password) {
+    if (password == null) {
+      return null;
+    }
+    return submit(() -> {
+      byte[] salt = new byte[SALT_BYTES];
+      random.nextBytes(salt);
+      byte[] hash = pbkdf2(password, salt, iterations);
+      Base64.Encoder base64 = Base64.getEncoder().withoutPadding();
+      return PREFIX + iterations + "$" + base64.encodeToString(salt) + "$" + base64.encodeToString(hash);
+    });
+  }
+
+  /**
+   * @param stored a hash, or a plaintext password stored before hashing was introduced
+   * @return false also if the stored hash is malformed
+   */
+  public boolean verify(String password, String stored) {
+    if (password == null || stored == null) {
+      return false;
+    }
+    if (!stored.startsWith(PREFIX)) {
+      return MessageDigest.isEqual(password.getBytes(StandardCharsets.UTF_8), stored.getBytes(StandardCharsets.UTF_8));
+    }
+    String[] parts = stored.split("\\$");
+    if (parts.length != 4) {
+      return false;
+    }
+    int storedIterations;
+    byte[] salt;
+    byte[] expected;
+    try {
+      storedIterations = Integer.parseInt(parts[1]);
+      salt = Base64.getDecoder().decode(parts[2]);
+      expected = Base64.getDecoder().decode(parts[3]);
+    }
+    catch (IllegalArgumentException e) {
+      log.warn("Malformed password hash, the login is refused");
+      return false;
+    }
+    if (storedIterations < 1 || salt.length == 0 || expected.length == 0) {
+      log.warn("Malformed password hash, the login is refused");
+      return false;
+    }
+    return submit(() -> MessageDigest.isEqual(expected, pbkdf2(password, salt, storedIterations)));
+  }
+
+  /**
+   * @return whether the stored password should be hashed again with the current iterations
+   */
+  public boolean needsRehash(String stored) {
+    return stored == null || !stored.startsWith(PREFIX + iterations + "$");
+  }
+
+  private <T> T submit(Callable<T> work) {
+    Future<T> result;
+    try {
+      result = executor.submit(work);
+    }
+    catch (RejectedExecutionException e) {
+      throw new ServiceUnavailableException("Too many logins, try again later");
+    }
+    try {
+      return result.get(timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+    catch (TimeoutException e) {
+      result.cancel(true);
+      throw new ServiceUnavailableException("Too many logins, try again later");
+    }
+    catch (InterruptedException e) {
+      result.cancel(true);
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while hashing", e);
+    }
+    catch (ExecutionException e) {
+      throw new IllegalStateException("Could not hash password", e.getCause());
+    }
+  }
+
+  /**
+   * Times a few hashes and scales the iterations to the target duration. The
+   * fastest run counts, the first ones are slowed down by the JIT.
+   */
+  private int calibrate(long targetMillis) {
+    int probe = MIN_ITERATIONS * 2;
+    byte[] salt = new byte[SALT_BYTES];
+    long fastest = Long.MAX_VALUE;
+    for (int i = 0; i < 10; i++) {
+      long start = System.nanoTime();
+      pbkdf2("calibration", salt, probe);
+      fastest = Math.min(fastest, System.nanoTime() - start);
+    }
+    double nanosPerIteration = (double) fastest / probe;
+    long calibrated = (long) (TimeUnit.MILLISECONDS.toNanos(targetMillis) / nanosPerIteration);
+    // rounded, so restarts on the same machine keep the iterations and do not trigger rehashes
+    return (int) Math.max(MIN_ITERATIONS, Math.min(Integer.MAX_VALUE, Math.round(calibrated / 10_000.0) * 10_000));
+  }
+
+  private static byte[] pbkdf2(String password, byte[] salt, int iterations) {
+    PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, iterations, HASH_BITS);
+    try {
+      return SecretKeyFactory.getInstance(ALGORITHM).generateSecret(spec).getEncoded();
+    }
+    catch (GeneralSecurityException e) {
+      throw new IllegalStateException(e);
+    }
+    finally {
+      spec.clearPassword();
+    }
+  }
+}
@@ -0,0 +1,207 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+import ch.uzh.ifi.hase.soprafs24.cluster.UserCachesStaleEvent;
+import ch.uzh.ifi.hase.soprafs24.entity.User;
+import ch.uzh.ifi.hase.soprafs24.rest.dto.UserGetDTO;
+import ch.uzh.ifi.hase.soprafs24.rest.mapper.DTOMapper;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.AbstractJackson2HttpMessageConverter;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Profile Response Cache
+ * Keeps the encoded body of GET /users/{id} per user and format (JSON and
+ * the binary formats of the registered Jackson converters, e.g. CBOR), so a
+ * profile read is a cache lookup plus writing the bytes. The cache is
+ * bounded by the size of the bodies and evicts with W-TinyLFU (Caffeine).
+ * Entries are dropped on every UserChangedEvent of their user. A version
+ * counter per stripe of user ids keeps a read that raced with a change from
+ * putting the old profile back. Everything is dropped when changes of
+ * another node may have been missed (UserCachesStaleEvent).
+ */
+@Component
+public class ProfileResponseCache {
+
+  // rough size of key, entry and array header, so tiny bodies are not weighed as free
+  private static final int ENTRY_OVERHEAD_BYTES = 96;
+  private static final int VERSION_STRIPES = 1024;
+
+  private final UserService userService;
+  // index 0 is JSON, the default
+  private final List<MediaType> formats = new ArrayList<>();
+  private final List<ObjectMapper> objectMappers = new ArrayList<>();
+  private final Cache<ProfileKey, byte[]> profiles;
+  private final AtomicLongArray versions = new AtomicLongArray(VERSION_STRIPES);
+
+  /**
+   * @param converters the Jackson converters of the application; each one
+   *                   adds the first media type it supports as a format
+   */
+  public ProfileResponseCache(UserService userService, List<AbstractJackson2HttpMessageConverter> converters,
+                              @Value("${users.profile-cache.max-bytes:16777216}") long maxBytes) {
+    this.userService = userService;
+    for (AbstractJackson2HttpMessageConverter converter : converters) {
+      MediaType format = converter.getSupportedMediaTypes().get(0);
+      int index = format.isCompatibleWith(MediaType.APPLICATION_JSON) ? 0 : formats.size();
+      if (!formats.contains(format)) {
+        formats.add(index, format);
+        objectMappers.add(index, converter.getObjectMapper());
+      }
+    }
+    if (formats.isEmpty() || !formats.get(0).isCompatibleWith(MediaType.APPLICATION_JSON)) {
+      throw new IllegalStateException("No JSON converter among " + converters);
+    }
+    this.profiles = Caffeine.newBuilder()
+        .maximumWeight(maxBytes)
+        .weigher((ProfileKey key, byte[] body) -> body.length + ENTRY_OVERHEAD_BYTES)
+        .build();
+  }
+
+  private static final class ProfileKey {
+    private final long id;
+    private final int format;
+
+    private ProfileKey(long id, int format) {
+      this.id = id;
+      this.format = format;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof ProfileKey)) {
+        return false;
+      }
+      ProfileKey other = (ProfileKey) o;
+      return id == other.id && format == other.format;
+    }
+
+    @Override
+    public int hashCode() {
+      return Long.hashCode(id) * 31 + format;
+    }
+  }
+
+  /**
+   * @return the media type for a request with the given Accept header: the
+   * acceptable format with the highest quality, JSON if there is a tie, no
+   * header or no acceptable format
+   */
+  public MediaType negotiate(String accept) {
+    if (accept == null || accept.isBlank()) {
+      return formats.get(0);
+    }
+    List<MediaType> accepted;
+    try {
+      accepted = MediaType.parseMediaTypes(accept);
+    }
+    catch (InvalidMediaTypeException e) {
+      return formats.get(0);
+    }
+    MediaType.sortBySpecificityAndQuality(accepted);
+    for (MediaType acceptable : accepted) {
+      if (acceptable.getQualityValue() == 0) {
+        continue;
+      }
+      for (MediaType format : formats) {
+        if (acceptable.includes(format)) {
+          return format;
+        }
+      }
+    }
+    return formats.get(0);
+  }
+
+  /**
+   * @return the JSON encoded UserGetDTO of the user, must not be modified
+   * @throws ch.uzh.ifi.hase.soprafs24.exceptions.UserNotFoundException if there is no such user
+   */
+  public byte[] getProfile(Long id) {
+    return getProfile(id, formats.get(0));
+  }
+
+  /**
+   * @param format one of the media types returned by negotiate()
+   * @return the UserGetDTO of the user in the format, must not be modified
+   * @throws ch.uzh.ifi.hase.soprafs24.exceptions.UserNotFoundException if there is no such user
+   */
+  public byte[] getProfile(Long id, MediaType format) {
+    int index = formats.indexOf(format);
+    if (index < 0) {
+      throw new IllegalArgumentException("Unsupported profile format " + format);
+    }
+    ProfileKey key = new ProfileKey(id, index);
+    byte[] body = profiles.getIfPresent(key);
+    if (body != null) {
+      return body;
+    }
+
+    int stripe = stripe(id);
+    long version = versions.get(stripe);
+    // read from the primary: a lagging replica copy would be served until the next change
+    User user = userService.getUserByIdFromPrimary(id);
+    body = encode(objectMappers.get(index), DTOMapper.INSTANCE.convertEntityToUserGetDTO(user));
+    profiles.put(key, body);
+    // invalidate() bumps the version before it removes, so either it removes
+    // this entry or the changed version is seen here
+    if (versions.get(stripe) != version) {
+      profiles.invalidate(key);
+    }
+    return body;
+  }
+
+  public void invalidate(Long id) {
+    versions.incrementAndGet(stripe(id));
+    for (int format = 0; format < formats.size(); format++) {
+      profiles.invalidate(new ProfileKey(id, format));
+    }
+  }
+
+  public void invalidateAll() {
+    for (int stripe = 0; stripe < VERSION_STRIPES; stripe++) {
+      versions.incrementAndGet(stripe);
+    }
+    profiles.invalidateAll();
+  }
+
+  @TransactionalEventListener(fallbackExecution = true)
+  public void onUserChanged(UserChangedEvent event) {
+    for (Long id : event.getUserIds()) {
+      invalidate(id);
+    }
+  }
+
+  @EventListener
+  public void onCachesStale(UserCachesStaleEvent event) {
+    invalidateAll();
+  }
+
+  public long size() {
+    return profiles.estimatedSize();
+  }
+
+  private static byte[] encode(ObjectMapper objectMapper, UserGetDTO userGetDTO) {
+    try {
+      return objectMapper.writeValueAsBytes(userGetDTO);
+    }
+    catch (JsonProcessingException e) {
+      throw new IllegalStateException("Could not encode user " + userGetDTO.getId(), e);
+    }
+  }
+
+  private static int stripe(Long id) {
+    long h = id * 0x9E3779B97F4A7C15L;
+    return (int) (h >>> 54) & (VERSION_STRIPES - 1);
+  }
+}
@@ -0,0 +1,148 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+import ch.uzh.ifi.hase.soprafs24.exceptions.InvalidRecordingSettingsException;
+import ch.uzh.ifi.hase.soprafs24.exceptions.RecordingNotFoundException;
+import ch.uzh.ifi.hase.soprafs24.exceptions.RecordingStateException;
+import ch.uzh.ifi.hase.soprafs24.exceptions.RecordingWriteException;
+import ch.uzh.ifi.hase.soprafs24.rest.dto.RecordingDTO;
+import jdk.jfr.Configuration;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.ParseException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Recording Service
+ * Starts, dumps and stops JDK Flight Recorder recordings at runtime, so a
+ * profile of an incident can be captured without a restart. Works on every
+ * recording of the JVM, including ones started with -XX:StartFlightRecording.
+ * The files are written to users.recording.directory.
+ */
+@Service
+public class RecordingService {
+
+  private static final DateTimeFormatter FILE_TIMESTAMP = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+  private final Logger log = LoggerFactory.getLogger(RecordingService.class);
+
+  private final Path directory;
+  private final Duration maxAge;
+
+  // last dump of each recording
+  private final Map<Long, Path> files = new ConcurrentHashMap<>();
+
+  public RecordingService(@Value("${users.recording.directory:./recordings}") String directory,
+                          @Value("${users.recording.max-age-minutes:30}") long maxAgeMinutes) {
+    this.directory = Paths.get(directory);
+    this.maxAge = Duration.ofMinutes(maxAgeMinutes);
+  }
+
+  public List<RecordingDTO> getRecordings() {
+    return FlightRecorder.getFlightRecorder().getRecordings().stream()
+        .map(this::toDTO)
+        .collect(Collectors.toList());
+  }
+
+  /**
+   * Starts a recording with one of the JDK settings ("default" has about 1%
+   * overhead, "profile" more detail at about 2%). Only the last max-age
+   * minutes are kept until it is dumped.
+   */
+  public RecordingDTO start(String name, String settings) {
+    Configuration configuration;
+    try {
+      configuration = Configuration.getConfiguration(settings);
+    }
+    catch (IOException | ParseException e) {
+      throw new InvalidRecordingSettingsException("Unknown settings " + settings);
+    }
+
+    Recording recording = new Recording(configuration);
+    recording.setName(name);
+    recording.setToDisk(true);
+    recording.setMaxAge(maxAge);
+    recording.start();
+    log.info("Started recording {} ({}) with settings {}", recording.getId(), name, settings);
+    return toDTO(recording);
+  }
+
+  /**
+   * Writes what the recording holds so far to disk, it keeps running.
+   */
+  public RecordingDTO dump(long id) {
+    Recording recording = find(id);
+    dumpToFile(recording);
+    return toDTO(recording);
+  }
+
+  /**
+   * Stops the recording, writes it to disk and releases it. A recording that
+   * already stopped on its own (e.g. after its duration) is only written and
+   * released.
+   */
+  public RecordingDTO stop(long id) {
+    Recording recording = find(id);
+    if (recording.getState() != RecordingState.STOPPED) {
+      try {
+        recording.stop();
+      }
+      catch (IllegalStateException e) {
+        throw new RecordingStateException("Recording " + id + " is " + recording.getState() + " and cannot be stopped");
+      }
+    }
+    dumpToFile(recording);
+    RecordingDTO stopped = toDTO(recording);
+    recording.close();
+    files.remove(id);
+    return stopped;
+  }
+
+  private void dumpToFile(Recording recording) {
+    String fileName = String.format("%s-%d-%s.jfr", recording.getName().replaceAll("[^A-Za-z0-9_.-]", "_"),
+        recording.getId(), LocalDateTime.now().format(FILE_TIMESTAMP));
+    Path file = directory.resolve(fileName).toAbsolutePath();
+    try {
+      Files.createDirectories(directory);
+      recording.dump(file);
+    }
+    catch (IOException e) {
+      log.warn("Could not write recording {} to {}", recording.getId(), file, e);
+      throw new RecordingWriteException("Could not write " + file);
+    }
+    catch (IllegalStateException e) {
+      throw new RecordingStateException("Recording " + recording.getId() + " is " + recording.getState()
+          + " and cannot be dumped");
+    }
+    files.put(recording.getId(), file);
+    log.info("Dumped recording {} to {}", recording.getId(), file);
+  }
+
+  private Recording find(long id) {
+    return FlightRecorder.getFlightRecorder().getRecordings().stream()
+        .filter(recording -> recording.getId() == id)
+        .findFirst()
+        .orElseThrow(() -> new RecordingNotFoundException("No recording with id " + id));
+  }
+
+  private RecordingDTO toDTO(Recording recording) {
+    Path file = files.get(recording.getId());
+    return new RecordingDTO(recording.getId(), recording.getName(), recording.getState().name(),
+        recording.getStartTime(), file == null ? null : file.toString());
+  }
+}
@@ -0,0 +1,314 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+import ch.uzh.ifi.hase.soprafs24.cluster.UserCachesStaleEvent;
+import ch.uzh.ifi.hase.soprafs24.config.ReplicaRoutingDataSource;
+import ch.uzh.ifi.hase.soprafs24.entity.Session;
+import ch.uzh.ifi.hase.soprafs24.repository.SessionRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Session Store
+ * Holds all sessions in memory. Lookups by token are lock-free reads of a
+ * ConcurrentHashMap; create and revoke only lock the hash bins of the token
+ * and of the owning user, so requests of different users do not contend.
+ * New and revoked sessions are written in the caller's transaction, and a new
+ * session only becomes visible once that transaction committed. Expired
+ * sessions are queued and deleted by flush(), which runs periodically and on
+ * shutdown. At startup the stored sessions are loaded back.
+ * With several nodes the table is the shared truth: a token or user unknown
+ * here is looked up in it, and the sessions of a user another node logged
+ * out are dropped (see InvalidationBus), so the next lookup reads them again.
+ */
+@Component
+public class SessionStore {
+
+  private static final int PERSIST_CHUNK_SIZE = 500;
+  private static final int MIN_REVOKED_BEFORE_PURGE = 1024;
+
+  private final Logger log = LoggerFactory.getLogger(SessionStore.class);
+
+  private final SessionRepository sessionRepository;
+  private final Duration tokenTtl;
+
+  private final ConcurrentHashMap<String, Session> sessions = new ConcurrentHashMap<>();
+  private final ConcurrentHashMap<Long, Set<String>> tokensByUser = new ConcurrentHashMap<>();
+
+  // sessions in expiry order (the TTL is fixed), so the sweeper only touches expired ones
+  private final ConcurrentLinkedQueue<Session> expiryQueue = new ConcurrentLinkedQueue<>();
+  // revoked sessions still waiting in the expiry queue, purged once they outnumber the live ones
+  private final AtomicInteger revokedInQueue = new AtomicInteger();
+
+  private final ConcurrentLinkedQueue<String> pendingDeletes = new ConcurrentLinkedQueue<>();
+
+  public SessionStore(@Qualifier("sessionRepository") SessionRepository sessionRepository,
+                      @Value("${users.session.token-ttl-minutes:1440}") long tokenTtlMinutes) {
+    this.sessionRepository = sessionRepository;
+    this.tokenTtl = Duration.ofMinutes(tokenTtlMinutes);
+  }
+
+  /**
+   * Loads the persisted sessions, including the ones that expired while the
+   * application was down, so the next sweep logs their users out.
+   */
+  @PostConstruct
+  public void load() {
+    List<Session> stored = new ArrayList<>(sessionRepository.findAll());
+    stored.sort(Comparator.comparing(Session::getExpiresAt));
+    for (Session session : stored) {
+      add(session);
+    }
+    log.info("Loaded {} sessions", stored.size());
+  }
+
+  public Session create(Long userId) {
+    return create(userId, UUID.randomUUID().toString());
+  }
+
+  /**
+   * Stores a new session. Within a transaction the row is written with it and
+   * the token is only served after the commit, so a rolled back login or
+   * registration leaves no valid token behind.
+   */
+  public Session create(Long userId, String token) {
+    Instant now = Instant.now();
+    Session session = new Session(token, userId, now, now.plus(tokenTtl));
+    sessionRepository.save(session);
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+        @Override
+        public void afterCommit() {
+          add(session);
+        }
+      });
+    }
+    else {
+      add(session);
+    }
+    return session;
+  }
+
+  public Session find(String token) {
+    return find(token, Instant.now());
+  }
+
+  /**
+   * @return the session of the token, or null if it is unknown or expired
+   */
+  public Session find(String token, Instant now) {
+    if (token == null) {
+      return null;
+    }
+    Session session = sessions.get(token);
+    if (session == null) {
+      // created on another node
+      session = ReplicaRoutingDataSource.readFromPrimary(() -> sessionRepository.findById(token)).orElse(null);
+      if (session == null || session.isExpired(now)) {
+        return null;
+      }
+      Session known = sessions.putIfAbsent(token, session);
+      if (known != null) {
+        return known.isExpired(now) ? null : known;
+      }
+      addToUser(session);
+      // out of order in the queue, the node that created it sweeps it in time
+      expiryQueue.add(session);
+      return session;
+    }
+    if (session.isExpired(now)) {
+      return null;
+    }
+    return session;
+  }
+
+  /**
+   * Ends a single session; the other sessions of the user stay valid. The row
+   * is deleted right away, the sweeper relies on the table to tell whether a
+   * user still has a session (see UserService#markOffline).
+   *
+   * @return the revoked session, or null if there was none
+   */
+  public Session revoke(String token) {
+    Session session = sessions.remove(token);
+    if (session != null) {
+      removeFromUser(session);
+      sessionRepository.deleteByTokenIn(List.of(token));
+      revokedInQueue.incrementAndGet();
+    }
+    return session;
+  }
+
+  /**
+   * @return whether the user holds a valid session on any node
+   */
+  public boolean hasSessions(Long userId) {
+    return hasLocalSessions(userId) || ReplicaRoutingDataSource.readFromPrimary(
+        () -> sessionRepository.existsByUserIdAndExpiresAtAfter(userId, Instant.now()));
+  }
+
+  /**
+   * @return whether the user holds a session known to this node
+   */
+  public boolean hasLocalSessions(Long userId) {
+    return tokensByUser.containsKey(userId);
+  }
+
+  public int size() {
+    return sessions.size();
+  }
+
+  /**
+   * @return the number of sessions in the expiry queue, live or revoked
+   */
+  public int expiryQueueSize() {
+    return expiryQueue.size();
+  }
+
+  /**
+   * Removes at most limit sessions that expired before now. Revoked sessions
+   * are dropped from the expiry queue on the way without counting; if they
+   * pile up (every logout leaves one behind for the whole TTL), the queue is
+   * purged of them first.
+   *
+   * @return the removed sessions
+   * @see SessionSweeper
+   */
+  public List<Session> expire(Instant now, int limit) {
+    if (revokedInQueue.get() > Math.max(MIN_REVOKED_BEFORE_PURGE, sessions.size())) {
+      expiryQueue.removeIf(session -> {
+        if (sessions.get(session.getToken()) == session) {
+          return false;
+        }
+        revokedInQueue.decrementAndGet();
+        return true;
+      });
+    }
+
+    List<Session> expired = new ArrayList<>();
+    while (expired.size() < limit) {
+      Session head = expiryQueue.peek();
+      if (head == null || !head.isExpired(now)) {
+        break;
+      }
+      // the sweeper is the only consumer, so poll() returns the head just checked
+      expiryQueue.poll();
+      if (sessions.remove(head.getToken(), head)) {
+        removeFromUser(head);
+        pendingDeletes.add(head.getToken());
+        expired.add(head);
+      }
+      else {
+        revokedInQueue.decrementAndGet();
+      }
+    }
+    return expired;
+  }
+
+  @TransactionalEventListener(fallbackExecution = true)
+  public void onUserChanged(UserChangedEvent event) {
+    if (!event.isRemote() || event.getKind() != UserChangedEvent.Kind.LOGGED_OUT) {
+      return;
+    }
+    for (Long userId : event.getUserIds()) {
+      Set<String> tokens = tokensByUser.remove(userId);
+      if (tokens != null) {
+        tokens.forEach(this::drop);
+      }
+    }
+  }
+
+  /**
+   * Sessions of other nodes may have been revoked without this node hearing
+   * of it, so only the ones still in the table are kept.
+   */
+  @EventListener
+  public void onCachesStale(UserCachesStaleEvent event) {
+    Set<String> stored = new HashSet<>();
+    for (Session session : sessionRepository.findAll()) {
+      stored.add(session.getToken());
+    }
+    for (String token : sessions.keySet()) {
+      if (!stored.contains(token)) {
+        Session session = drop(token);
+        if (session != null) {
+          removeFromUser(session);
+        }
+      }
+    }
+  }
+
+  /**
+   * Deletes the expired sessions from the database in chunks.
+   */
+  @Scheduled(initialDelayString = "${users.session.persist-interval-ms:1000}",
+      fixedDelayString = "${users.session.persist-interval-ms:1000}")
+  @PreDestroy
+  public void flush() {
+    List<String> deletes = new ArrayList<>();
+    for (String token = pendingDeletes.poll(); token != null; token = pendingDeletes.poll()) {
+      deletes.add(token);
+      if (deletes.size() == PERSIST_CHUNK_SIZE) {
+        sessionRepository.deleteByTokenIn(deletes);
+        deletes.clear();
+      }
+    }
+    if (!deletes.isEmpty()) {
+      sessionRepository.deleteByTokenIn(deletes);
+    }
+  }
+
+  private void add(Session session) {
+    sessions.put(session.getToken(), session);
+    addToUser(session);
+    expiryQueue.add(session);
+  }
+
+  private void addToUser(Session session) {
+    tokensByUser.compute(session.getUserId(), (userId, tokens) -> {
+      Set<String> userTokens = tokens == null ? ConcurrentHashMap.newKeySet() : tokens;
+      userTokens.add(session.getToken());
+      return userTokens;
+    });
+  }
+
+  /**
+   * Forgets a session without deleting it, it stays in the expiry queue like a revoked one.
+   */
+  private Session drop(String token) {
+    Session session = sessions.remove(token);
+    if (session != null) {
+      revokedInQueue.incrementAndGet();
+    }
+    return session;
+  }
+
+  private void removeFromUser(Session session) {
+    tokensByUser.computeIfPresent(session.getUserId(), (userId, tokens) -> {
+      tokens.remove(session.getToken());
+      return tokens.isEmpty() ? null : tokens;
+    });
+  }
+}
@@ -0,0 +1,72 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+import ch.uzh.ifi.hase.soprafs24.entity.Session;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Session Sweeper
+ * Periodically removes expired sessions from the SessionStore and sets users
+ * without any remaining session OFFLINE. Every tick works through at most
+ * maxBatches batches of batchSize sessions, each followed by one bulk UPDATE,
+ * so a large backlog of stale sessions is drained over several ticks instead
+ * of one long transaction. A user who logs in between the check and the
+ * UPDATE stays ONLINE, the UPDATE itself skips users with a valid session.
+ */
+@Component
+public class SessionSweeper {
+
+  private final Logger log = LoggerFactory.getLogger(SessionSweeper.class);
+
+  private final UserService userService;
+  private final SessionStore sessionStore;
+  private final int batchSize;
+  private final int maxBatches;
+
+  public SessionSweeper(UserService userService, SessionStore sessionStore,
+                        @Value("${users.session.sweep-batch-size:500}") int batchSize,
+                        @Value("${users.session.sweep-max-batches:20}") int maxBatches) {
+    this.userService = userService;
+    this.sessionStore = sessionStore;
+    this.batchSize = batchSize;
+    this.maxBatches = maxBatches;
+  }
+
+  @Scheduled(initialDelayString = "${users.session.sweep-interval-ms:60000}",
+      fixedDelayString = "${users.session.sweep-interval-ms:60000}")
+  public void sweep() {
+    Instant now = Instant.now();
+    int expiredSessions = 0;
+    int offlineUsers = 0;
+
+    for (int batch = 0; batch < maxBatches; batch++) {
+      List<Session> expired = sessionStore.expire(now, batchSize);
+
+      Set<Long> idleUsers = new LinkedHashSet<>();
+      for (Session session : expired) {
+        if (!sessionStore.hasLocalSessions(session.getUserId())) {
+          idleUsers.add(session.getUserId());
+        }
+      }
+      // every batch runs in its own transaction (see UserService)
+      offlineUsers += userService.markOffline(idleUsers);
+      expiredSessions += expired.size();
+
+      if (expired.size() < batchSize) {
+        break;
+      }
+    }
+
+    if (expiredSessions > 0) {
+      log.info("Session sweep expired {} sessions, {} users went offline", expiredSessions, offlineUsers);
+    }
+  }
+}
@@ -0,0 +1,60 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Published by the UserService whenever users are created or change in a
+ * way that is visible to clients. Listeners that keep derived state (caches,
+ * indexes) should react after the commit, e.g. with
+ * {@code @TransactionalEventListener(fallbackExecution = true)}.
+ * Remote events are the changes of other nodes, received by the
+ * InvalidationBus; they have already been committed.
+ */
+public class UserChangedEvent {
+
+  /**
+   * WENT_OFFLINE is published whenever users are set OFFLINE: by the logout
+   * of their last session (next to LOGGED_OUT) or by the SessionSweeper.
+   */
+  public enum Kind {
+    CREATED, EDITED, LOGGED_IN, LOGGED_OUT, WENT_OFFLINE
+  }
+
+  private final Kind kind;
+  private final List<Long> userIds;
+  private final boolean remote;
+
+  public UserChangedEvent(Kind kind, Collection<Long> userIds, boolean remote) {
+    this.kind = kind;
+    this.userIds = Collections.unmodifiableList(new ArrayList<>(userIds));
+    this.remote = remote;
+  }
+
+  public UserChangedEvent(Kind kind, Collection<Long> userIds) {
+    this(kind, userIds, false);
+  }
+
+  public UserChangedEvent(Kind kind, Long userId) {
+    this(kind, Collections.singletonList(userId));
+  }
+
+  public Kind getKind() {
+    return kind;
+  }
+
+  public List<Long> getUserIds() {
+    return userIds;
+  }
+
+  public boolean isRemote() {
+    return remote;
+  }
+
+  @Override
+  public String toString() {
+    return "UserChangedEvent{" + kind + " " + userIds + (remote ? " remote}" : "}");
+  }
+}
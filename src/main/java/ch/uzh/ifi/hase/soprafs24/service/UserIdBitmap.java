@@ -0,0 +1,285 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * User Id Bitmap
+ * Compressed set of user ids in the layout of Roaring bitmaps: the ids are
+ * grouped by their upper bits into chunks of 65536, and every chunk stores
+ * its lower 16 bits either as a sorted char array (up to 4096 ids, 2 bytes
+ * per id) or as a fixed 8 KiB bitmap (1 bit per possible id). Consecutive ids
+ * as handed out by the identity column therefore take about one bit each, and
+ * the chunks at shard offsets (see ShardedUserRepository) stay small.
+ * Not thread-safe, see OnlineIndex.
+ */
+public class UserIdBitmap {
+
+  private static final int ARRAY_MAX = 4096;
+  // a bitmap chunk only becomes an array again well below ARRAY_MAX, so ids toggling at the border do not convert every time
+  private static final int BITMAP_MIN = ARRAY_MAX / 2;
+  // estimate of a TreeMap entry with its Long key
+  private static final int ENTRY_BYTES = 64;
+
+  private final TreeMap<Long, Chunk> chunks = new TreeMap<>();
+  private long cardinality;
+
+  public boolean add(long id) {
+    Long key = id >>> 16;
+    Chunk chunk = chunks.get(key);
+    if (chunk == null) {
+      chunk = new ArrayChunk();
+      chunks.put(key, chunk);
+    }
+    int before = chunk.cardinality();
+    Chunk updated = chunk.add((int) id & 0xFFFF);
+    if (updated != chunk) {
+      chunks.put(key, updated);
+    }
+    if (updated.cardinality() == before) {
+      return false;
+    }
+    cardinality++;
+    return true;
+  }
+
+  public boolean remove(long id) {
+    Long key = id >>> 16;
+    Chunk chunk = chunks.get(key);
+    if (chunk == null) {
+      return false;
+    }
+    int before = chunk.cardinality();
+    Chunk updated = chunk.remove((int) id & 0xFFFF);
+    if (updated.cardinality() == 0) {
+      chunks.remove(key);
+    }
+    else if (updated != chunk) {
+      chunks.put(key, updated);
+    }
+    if (updated.cardinality() == before) {
+      return false;
+    }
+    cardinality--;
+    return true;
+  }
+
+  public boolean contains(long id) {
+    Chunk chunk = chunks.get(id >>> 16);
+    return chunk != null && chunk.contains((int) id & 0xFFFF);
+  }
+
+  public long cardinality() {
+    return cardinality;
+  }
+
+  /**
+   * @return the given ids that are in the set, in the given order
+   */
+  public List<Long> retain(Iterable<Long> ids) {
+    List<Long> retained = new ArrayList<>();
+    for (Long id : ids) {
+      if (id != null && contains(id)) {
+        retained.add(id);
+      }
+    }
+    return retained;
+  }
+
+  /**
+   * @param after only ids greater than this one, e.g. the last id of the previous page
+   * @param limit maximum number of ids
+   * @return the ids in ascending order
+   */
+  public List<Long> page(long after, int limit) {
+    List<Long> page = new ArrayList<>(Math.min(limit, 1024));
+    long firstKey = after < 0 ? 0 : after >>> 16;
+    for (Map.Entry<Long, Chunk> entry : chunks.tailMap(firstKey, true).entrySet()) {
+      long high = entry.getKey() << 16;
+      int fromLow = after < 0 || entry.getKey() > firstKey ? 0 : ((int) after & 0xFFFF) + 1;
+      if (fromLow > 0xFFFF) {
+        continue;
+      }
+      if (!entry.getValue().collect(high, fromLow, limit, page)) {
+        break;
+      }
+    }
+    return page;
+  }
+
+  /**
+   * @return estimated heap use in bytes
+   */
+  public long memoryBytes() {
+    long bytes = 0;
+    for (Chunk chunk : chunks.values()) {
+      bytes += ENTRY_BYTES + chunk.memoryBytes();
+    }
+    return bytes;
+  }
+
+  private abstract static class Chunk {
+    abstract Chunk add(int low);
+
+    abstract Chunk remove(int low);
+
+    abstract boolean contains(int low);
+
+    abstract int cardinality();
+
+    /**
+     * Adds high | low for the lows from fromLow on to the page until it has limit ids.
+     *
+     * @return whether the page has room left
+     */
+    abstract boolean collect(long high, int fromLow, int limit, List<Long> page);
+
+    abstract long memoryBytes();
+  }
+
+  private static final class ArrayChunk extends Chunk {
+    private char[] values = new char[4];
+    private int size;
+
+    @Override
+    Chunk add(int low) {
+      int index = Arrays.binarySearch(values, 0, size, (char) low);
+      if (index >= 0) {
+        return this;
+      }
+      if (size == ARRAY_MAX) {
+        return toBitmap().add(low);
+      }
+      int insertAt = -index - 1;
+      if (size == values.length) {
+        values = Arrays.copyOf(values, Math.min(ARRAY_MAX, size + (size >> 1) + 1));
+      }
+      System.arraycopy(values, insertAt, values, insertAt + 1, size - insertAt);
+      values[insertAt] = (char) low;
+      size++;
+      return this;
+    }
+
+    @Override
+    Chunk remove(int low) {
+      int index = Arrays.binarySearch(values, 0, size, (char) low);
+      if (index >= 0) {
+        System.arraycopy(values, index + 1, values, index, size - index - 1);
+        size--;
+      }
+      return this;
+    }
+
+    @Override
+    boolean contains(int low) {
+      return Arrays.binarySearch(values, 0, size, (char) low) >= 0;
+    }
+
+    @Override
+    int cardinality() {
+      return size;
+    }
+
+    @Override
+    boolean collect(long high, int fromLow, int limit, List<Long> page) {
+      int index = Arrays.binarySearch(values, 0, size, (char) fromLow);
+      for (int i = index >= 0 ? index : -index - 1; i < size; i++) {
+        if (page.size() == limit) {
+          return false;
+        }
+        page.add(high | values[i]);
+      }
+      return page.size() < limit;
+    }
+
+    @Override
+    long memoryBytes() {
+      return 16 + 16 + 2L * values.length;
+    }
+
+    private BitmapChunk toBitmap() {
+      BitmapChunk bitmap = new BitmapChunk();
+      for (int i = 0; i < size; i++) {
+        bitmap.add(values[i]);
+      }
+      return bitmap;
+    }
+  }
+
+  private static final class BitmapChunk extends Chunk {
+    private final long[] words = new long[1024];
+    private int cardinality;
+
+    @Override
+    Chunk add(int low) {
+      long bit = 1L << low;
+      if ((words[low >>> 6] & bit) == 0) {
+        words[low >>> 6] |= bit;
+        cardinality++;
+      }
+      return this;
+    }
+
+    @Override
+    Chunk remove(int low) {
+      long bit = 1L << low;
+      if ((words[low >>> 6] & bit) != 0) {
+        words[low >>> 6] &= ~bit;
+        cardinality--;
+      }
+      return cardinality < BITMAP_MIN ? toArray() : this;
+    }
+
+    @Override
+    boolean contains(int low) {
+      return (words[low >>> 6] & (1L << low)) != 0;
+    }
+
+    @Override
+    int cardinality() {
+      return cardinality;
+    }
+
+    @Override
+    boolean collect(long high, int fromLow, int limit, List<Long> page) {
+      int wordIndex = fromLow >>> 6;
+      long word = words[wordIndex] & (-1L << fromLow);
+      while (true) {
+        while (word != 0) {
+          if (page.size() == limit) {
+            return false;
+          }
+          page.add(high | ((wordIndex << 6) + Long.numberOfTrailingZeros(word)));
+          word &= word - 1;
+        }
+        if (++wordIndex == words.length) {
+          return page.size() < limit;
+        }
+        word = words[wordIndex];
+      }
+    }
+
+    @Override
+    long memoryBytes() {
+      return 16 + 16 + 8L * words.length;
+    }
+
+    private ArrayChunk toArray() {
+      ArrayChunk array = new ArrayChunk();
+      array.values = new char[cardinality];
+      collectInto(array);
+      return array;
+    }
+
+    private void collectInto(ArrayChunk array) {
+      for (int wordIndex = 0; wordIndex < words.length; wordIndex++) {
+        for (long word = words[wordIndex]; word != 0; word &= word - 1) {
+          array.values[array.size++] = (char) ((wordIndex << 6) + Long.numberOfTrailingZeros(word));
+        }
+      }
+    }
+  }
+}
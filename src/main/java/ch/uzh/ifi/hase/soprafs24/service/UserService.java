@@ -1,20 +1,39 @@
 package ch.uzh.ifi.hase.soprafs24.service;
 
+import ch.uzh.ifi.hase.soprafs24.config.ReplicaRoutingDataSource;
+import ch.uzh.ifi.hase.soprafs24.constant.UserField;
 import ch.uzh.ifi.hase.soprafs24.constant.UserStatus;
+import ch.uzh.ifi.hase.soprafs24.entity.Session;
 import ch.uzh.ifi.hase.soprafs24.entity.User;
+import ch.uzh.ifi.hase.soprafs24.exceptions.UnauthorizedException;
+import ch.uzh.ifi.hase.soprafs24.exceptions.UserNotFoundException;
+import ch.uzh.ifi.hase.soprafs24.exceptions.UsernameConflictException;
 import ch.uzh.ifi.hase.soprafs24.repository.UserRepository;
+import ch.uzh.ifi.hase.soprafs24.rest.dto.UserBatchEditDTO;
+import ch.uzh.ifi.hase.soprafs24.rest.dto.UserBatchResultDTO;
 import ch.uzh.ifi.hase.soprafs24.rest.dto.UserPutDTO;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Qualifier;
-import org.springframework.http.HttpStatus;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
-import org.springframework.web.server.ResponseStatusException;
-
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.time.Instant;
 import java.time.LocalDate;
 
 /**
@@ -23,6 +42,11 @@ import java.time.LocalDate;
  * the user
  * (e.g., it creates, modifies, deletes, finds). The result will be passed back
  * to the caller.
+ * The pure lookups are read-only transactions, which a configured read replica
+ * serves (see ReplicaDataSourceConfig). Every change is announced with a
+ * UserChangedEvent. Passwords are hashed and checked outside of the
+ * transactions, which would otherwise hold a connection while the
+ * PasswordHasher queues.
  */
 @Service
 @Transactional
@@ -31,25 +55,49 @@ public class UserService {
   private final Logger log = LoggerFactory.getLogger(UserService.class);
 
   private final UserRepository userRepository;
-
-  public UserService(@Qualifier("userRepository") UserRepository userRepository) {
+  private final SessionStore sessionStore;
+  private final ApplicationEventPublisher eventPublisher;
+  private final BirthdayIndex birthdayIndex;
+  private final PasswordHasher passwordHasher;
+  private final TransactionTemplate transactionTemplate;
+
+  public UserService(@Qualifier("userRepository") UserRepository userRepository, SessionStore sessionStore,
+                     ApplicationEventPublisher eventPublisher, BirthdayIndex birthdayIndex,
+                     PasswordHasher passwordHasher, PlatformTransactionManager transactionManager) {
     this.userRepository = userRepository;
+    this.sessionStore = sessionStore;
+    this.eventPublisher = eventPublisher;
+    this.birthdayIndex = birthdayIndex;
+    this.passwordHasher = passwordHasher;
+    this.transactionTemplate = new TransactionTemplate(transactionManager);
   }
 
+  @Transactional(readOnly = true)
   public List<User> getUsers() {
     return this.userRepository.findAll();
   }
 
+  @Transactional(propagation = Propagation.NOT_SUPPORTED)
   public User createUser(User newUser) {
+    String hash = passwordHasher.hash(newUser.getPassword());
+    return transactionTemplate.execute(status -> saveNewUser(newUser, hash));
+  }
+
+  private User saveNewUser(User newUser, String hash) {
     newUser.setStatus(UserStatus.ONLINE);
     newUser.setDate(LocalDate.now());    
-    newUser.setToken(UUID.randomUUID().toString());
 
     checkIfUserExists(newUser);
 
+    newUser.setPassword(hash);
+    newUser.setToken(UUID.randomUUID().toString());
     newUser = userRepository.save(newUser);
     userRepository.flush();
 
+    // the first session uses the token stored with the user
+    sessionStore.create(newUser.getId(), newUser.getToken());
+    eventPublisher.publishEvent(new UserChangedEvent(UserChangedEvent.Kind.CREATED, newUser.getId()));
+
     System.out.println("Saved User: " + newUser.toString());
 
     log.debug("Created Information for User: {}", newUser);
@@ -63,7 +111,7 @@ public class UserService {
    * and throw an error otherwise.
    *
    * @param userToBeCreated
-   * @throws org.springframework.web.server.ResponseStatusException
+   * @throws UsernameConflictException
    * @see User
    */
   private void checkIfUserExists(User userToBeCreated) {
@@ -71,46 +119,157 @@ public class UserService {
 
     String baseErrorMessage = "Creation of user %s failed because username already exists";
     if (userByUsername != null) {
-        throw new ResponseStatusException(HttpStatus.CONFLICT, 
-            String.format(baseErrorMessage, userToBeCreated.getUsername()));
+        throw new UsernameConflictException(String.format(baseErrorMessage, userToBeCreated.getUsername()));
     }
 }
   
+  @Transactional(readOnly = true)
   public User getUserById(Long id) {
     return userRepository.findById(id)
-        .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "User not found"));
+        .orElseThrow(() -> new UserNotFoundException("User not found"));
+  }
+
+  /**
+   * Like getUserById, but never served by the replica: for callers that keep
+   * the user beyond the request and must not keep a copy the replica has not
+   * caught up on yet.
+   */
+  @Transactional(readOnly = true)
+  public User getUserByIdFromPrimary(Long id) {
+    return ReplicaRoutingDataSource.readFromPrimary(() -> userRepository.findById(id))
+        .orElseThrow(() -> new UserNotFoundException("User not found"));
+  }
+
+  /**
+   * @return the selected fields of all users, ordered by id
+   */
+  @Transactional(readOnly = true)
+  public List<Object[]> getUsers(List<UserField> fields) {
+    return userRepository.findFields(fields);
+  }
+
+  /**
+   * @return the selected fields of the user
+   */
+  @Transactional(readOnly = true)
+  public Object[] getUserById(Long id, List<UserField> fields) {
+    Object[] user = userRepository.findFieldsById(id, fields);
+    if (user == null) {
+      throw new UserNotFoundException("User not found");
+    }
+    return user;
   }
 
+  /**
+   * Resolves the user owning the given token. The token is checked against the
+   * in-memory SessionStore (including its expiry), so unknown and expired
+   * tokens never reach the database.
+   *
+   * @param token
+   * @return the owning user, or null if the token is unknown or expired
+   */
+  @Transactional(readOnly = true)
   public User getUserByToken(String token) {
-    System.out.println("Searching for token: [" + token + "]");
-    return userRepository.findByToken(token.trim());
+    Session session = sessionStore.find(token.trim());
+    if (session == null) {
+      return null;
+    }
+    return userRepository.findById(session.getUserId()).orElse(null);
 }
 
 
+  /**
+   * @param from first day
+   * @param days number of days
+   * @return the users celebrating their birthday on one of the days, ordered by id
+   */
+  @Transactional(readOnly = true)
+  public List<User> getUsersWithBirthday(LocalDate from, int days) {
+    List<Long> candidates = birthdayIndex.find(from, days);
+    if (candidates.isEmpty()) {
+      return List.of();
+    }
+    List<User> users = new ArrayList<>();
+    for (User user : userRepository.findAllById(candidates)) {
+      if (user.getBirthday() != null && celebratesWithin(user.getBirthday(), from, days)) {
+        users.add(user);
+      }
+    }
+    users.sort(Comparator.comparing(User::getId));
+    return users;
+  }
+
+  @Transactional(readOnly = true)
   public User getUserByUsername(String username) {
     return userRepository.findByUsername(username);
   }
 
+  @Transactional(propagation = Propagation.NOT_SUPPORTED)
   public User loginUser(User userToBeLoggedIn) {
-    User userByUsername = userRepository.findByUsername(userToBeLoggedIn.getUsername());
+    User userByUsername = transactionTemplate.execute(
+        status -> userRepository.findByUsername(userToBeLoggedIn.getUsername()));
 
     if (userByUsername == null) {
-      throw new ResponseStatusException(HttpStatus.NOT_FOUND, "User not found");
+      throw new UserNotFoundException("User not found");
     }
 
-    if (!userByUsername.getPassword().equals(userToBeLoggedIn.getPassword())) {
-      throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Password is incorrect");
+    String verified = userByUsername.getPassword();
+    if (!passwordHasher.verify(userToBeLoggedIn.getPassword(), verified)) {
+      throw new UnauthorizedException("Password is incorrect");
+    }
+    // plaintext or hashed with other iterations -> store it with the current ones
+    String rehashed = passwordHasher.needsRehash(verified)
+        ? passwordHasher.hash(userToBeLoggedIn.getPassword())
+        : null;
+
+    return transactionTemplate.execute(status -> openSession(userByUsername.getId(), verified, rehashed));
+  }
+
+  /**
+   * @param verified the stored password the login was checked against
+   * @param rehashed its replacement, null to keep it
+   */
+  private User openSession(Long id, String verified, String rehashed) {
+    User userByUsername = userRepository.findById(id)
+        .orElseThrow(() -> new UserNotFoundException("User not found"));
+    // the password may have changed since it was checked
+    if (!verified.equals(userByUsername.getPassword())) {
+      throw new UnauthorizedException("Password is incorrect");
+    }
+    if (rehashed != null) {
+      userByUsername.setPassword(rehashed);
     }
 
+    // every login opens its own session, the existing ones stay valid
+    userByUsername.setToken(sessionStore.create(userByUsername.getId()).getToken());
     userByUsername.setStatus(UserStatus.ONLINE);
     userRepository.saveAndFlush(userByUsername);
+    eventPublisher.publishEvent(new UserChangedEvent(UserChangedEvent.Kind.LOGGED_IN, userByUsername.getId()));
 
     return userByUsername;
   }
 
-  public void logoutUser(User userToBeLoggedOut) {
-    userToBeLoggedOut.setStatus(UserStatus.OFFLINE);
-    userRepository.saveAndFlush(userToBeLoggedOut);
+  /**
+   * Ends the session of the given token. The user only goes OFFLINE once the
+   * last of their sessions is gone.
+   *
+   * @param userToBeLoggedOut
+   * @param token
+   * @throws UnauthorizedException if the token is not a session of this user
+   */
+  public void logoutUser(User userToBeLoggedOut, String token) {
+    Session session = sessionStore.find(token);
+    if (session == null || !session.getUserId().equals(userToBeLoggedOut.getId())) {
+      throw new UnauthorizedException("Invalid token");
+    }
+    sessionStore.revoke(token);
+
+    if (!sessionStore.hasSessions(userToBeLoggedOut.getId())) {
+      userToBeLoggedOut.setStatus(UserStatus.OFFLINE);
+      userRepository.saveAndFlush(userToBeLoggedOut);
+      eventPublisher.publishEvent(new UserChangedEvent(UserChangedEvent.Kind.WENT_OFFLINE, userToBeLoggedOut.getId()));
+    }
+    eventPublisher.publishEvent(new UserChangedEvent(UserChangedEvent.Kind.LOGGED_OUT, userToBeLoggedOut.getId()));
   }
 
   public User editUser(User userToBeEdited, UserPutDTO userPutDTO) {
@@ -145,7 +304,127 @@ public class UserService {
     }
 
     // Save the updated user
-    return userRepository.save(userToBeEdited);
+    User editedUser = userRepository.save(userToBeEdited);
+    eventPublisher.publishEvent(new UserChangedEvent(UserChangedEvent.Kind.EDITED, editedUser.getId()));
+    return editedUser;
+  }
+
+  private static boolean celebratesWithin(LocalDate birthday, LocalDate from, int days) {
+    for (int i = 0; i < days; i++) {
+      if (BirthdayIndex.isCelebratedOn(birthday, from.plusDays(i))) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Applies many edits in one transaction. The edits are validated like
+   * editUser, the usernames of the whole batch are checked with one query,
+   * and the changed users are written with batched UPDATEs on flush. An edit
+   * that fails validation is skipped and reported, the others are applied.
+   * With sharding (users.sharding.urls) there is no transaction over the
+   * batch: every user is saved in a transaction on its own shard, so a save
+   * that fails (e.g. a username taken concurrently) fails the request with
+   * the edits before it already applied.
+   *
+   * @return one result per edit, in the same order
+   */
+  public List<UserBatchResultDTO> editUsers(List<UserBatchEditDTO> edits) {
+    List<UserBatchResultDTO> results = new ArrayList<>(Collections.nCopies(edits.size(), null));
+
+    Set<Long> ids = new HashSet<>();
+    for (UserBatchEditDTO edit : edits) {
+      if (edit.getId() != null) {
+        ids.add(edit.getId());
+      }
+    }
+    Map<Long, User> users = new HashMap<>();
+    for (User user : userRepository.findAllById(ids)) {
+      users.put(user.getId(), user);
+    }
+
+    // usernames claimed by the batch, each at most once
+    Map<String, Integer> claimedBy = new HashMap<>();
+    Set<Long> seen = new HashSet<>();
+    for (int i = 0; i < edits.size(); i++) {
+      UserBatchEditDTO edit = edits.get(i);
+      UserPutDTO changes = edit.getUser();
+      User user = edit.getId() == null ? null : users.get(edit.getId());
+      if (user == null) {
+        results.set(i, new UserBatchResultDTO(edit.getId(), 404, "User not found"));
+      }
+      else if (!seen.add(user.getId())) {
+        results.set(i, new UserBatchResultDTO(edit.getId(), 400, "User is edited more than once"));
+      }
+      else if (changes == null || changes.getUsername() == null || changes.getUsername().trim().isEmpty()) {
+        results.set(i, new UserBatchResultDTO(edit.getId(), 400, "Username cannot be empty"));
+      }
+      else if (changes.getBirthday() != null && changes.getBirthday().isAfter(LocalDate.now())) {
+        results.set(i, new UserBatchResultDTO(edit.getId(), 400, "Birthday cannot be in the future"));
+      }
+      else if (!changes.getUsername().equals(user.getUsername())
+          && claimedBy.putIfAbsent(changes.getUsername(), i) != null) {
+        results.set(i, new UserBatchResultDTO(edit.getId(), 409, "Username already exists"));
+      }
+    }
+
+    if (!claimedBy.isEmpty()) {
+      for (User existing : userRepository.findByUsernameIn(claimedBy.keySet())) {
+        // taken, even if its holder is renamed in this batch: the unique index is checked row by row
+        int i = claimedBy.get(existing.getUsername());
+        results.set(i, new UserBatchResultDTO(edits.get(i).getId(), 409, "Username already exists"));
+      }
+    }
+
+    List<User> changed = new ArrayList<>();
+    for (int i = 0; i < edits.size(); i++) {
+      if (results.get(i) != null) {
+        continue;
+      }
+      User user = users.get(edits.get(i).getId());
+      UserPutDTO changes = edits.get(i).getUser();
+      user.setUsername(changes.getUsername());
+      if (changes.getBirthday() != null) {
+        user.setBirthday(changes.getBirthday());
+      }
+      changed.add(user);
+      results.set(i, new UserBatchResultDTO(user.getId(), 200, "Updated"));
+    }
+
+    if (!changed.isEmpty()) {
+      userRepository.saveAll(changed);
+      userRepository.flush();
+      List<Long> changedIds = new ArrayList<>(changed.size());
+      for (User user : changed) {
+        changedIds.add(user.getId());
+      }
+      eventPublisher.publishEvent(new UserChangedEvent(UserChangedEvent.Kind.EDITED, changedIds));
+    }
+    return results;
+  }
+
+  /**
+   * Sets the given users OFFLINE with one bulk UPDATE. Users that logged in
+   * again in the meantime keep their status, the UPDATE checks the session
+   * table itself.
+   *
+   * @param userIds
+   * @return the number of updated users
+   * @see SessionSweeper
+   */
+  public int markOffline(Collection<Long> userIds) {
+    if (userIds.isEmpty()) {
+      return 0;
+    }
+    Instant now = Instant.now();
+    int updated = userRepository.markOfflineWithoutSessions(userIds, now);
+    if (updated > 0) {
+      List<Long> offline = new ArrayList<>(userIds);
+      offline.removeAll(userRepository.findIdsWithSessions(userIds, now));
+      eventPublisher.publishEvent(new UserChangedEvent(UserChangedEvent.Kind.WENT_OFFLINE, offline));
+    }
+    return updated;
   }
 }
 
@@ -0,0 +1,122 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+import ch.uzh.ifi.hase.soprafs24.constant.UserStatus;
+import ch.uzh.ifi.hase.soprafs24.exceptions.ParameterOutOfRangeException;
+import ch.uzh.ifi.hase.soprafs24.repository.UserRepository;
+import ch.uzh.ifi.hase.soprafs24.rest.dto.UserStatisticsDTO;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * User Statistics
+ * Totals, users per status and registrations per day, kept up to date from
+ * the UserChangedEvents, so reading them does not touch the database. The
+ * ONLINE gauge is the size of the OnlineIndex, which makes a second login or
+ * a repeated logout count only once.
+ * The counters and the OnlineIndex are rebuilt from the database
+ * periodically; changes that commit while that runs may be missed until the
+ * next run.
+ */
+@Component
+public class UserStatistics {
+
+  public static final int MAX_DAYS = 366;
+
+  private static final class Counters {
+    private final LongAdder total = new LongAdder();
+    private final ConcurrentHashMap<LocalDate, LongAdder> registrationsByDay = new ConcurrentHashMap<>();
+    private final Instant reconciledAt;
+
+    private Counters(Instant reconciledAt) {
+      this.reconciledAt = reconciledAt;
+    }
+
+    private void register(LocalDate date, long count) {
+      registrationsByDay.computeIfAbsent(date, day -> new LongAdder()).add(count);
+    }
+  }
+
+  private final Logger log = LoggerFactory.getLogger(UserStatistics.class);
+
+  private final UserRepository userRepository;
+  private final OnlineIndex onlineIndex;
+
+  private volatile Counters counters = new Counters(null);
+
+  public UserStatistics(@Qualifier("userRepository") UserRepository userRepository, OnlineIndex onlineIndex) {
+    this.userRepository = userRepository;
+    this.onlineIndex = onlineIndex;
+  }
+
+  @TransactionalEventListener(fallbackExecution = true)
+  public void onUserChanged(UserChangedEvent event) {
+    // logins and logouts are counted by the OnlineIndex
+    if (event.getKind() == UserChangedEvent.Kind.CREATED) {
+      // UserService registers new users with today's date
+      Counters current = counters;
+      current.total.add(event.getUserIds().size());
+      current.register(LocalDate.now(), event.getUserIds().size());
+    }
+  }
+
+  /**
+   * Rebuilds the counters and the OnlineIndex from the database.
+   */
+  @Scheduled(initialDelay = 0, fixedDelayString = "${users.statistics.reconcile-interval-ms:300000}")
+  public void reconcile() {
+    Counters rebuilt = new Counters(Instant.now());
+    rebuilt.total.add(userRepository.count());
+    for (Object[] day : userRepository.countByDate()) {
+      if (day[0] != null) {
+        rebuilt.register((LocalDate) day[0], ((Number) day[1]).longValue());
+      }
+    }
+
+    onlineIndex.load();
+
+    Counters previous = counters;
+    counters = rebuilt;
+    if (previous.reconciledAt != null && previous.total.sum() != rebuilt.total.sum()) {
+      log.info("Statistics drifted, total was {} and is {}", previous.total.sum(), rebuilt.total.sum());
+    }
+  }
+
+  /**
+   * @param days number of days up to today to list the registrations of, 1 to MAX_DAYS
+   * @throws ParameterOutOfRangeException if days is outside of that range
+   */
+  public UserStatisticsDTO getStatistics(int days) {
+    if (days < 1 || days > MAX_DAYS) {
+      throw new ParameterOutOfRangeException("days must be between 1 and " + MAX_DAYS);
+    }
+    Counters current = counters;
+    long total = current.total.sum();
+    long online = Math.min(onlineIndex.count(), total);
+
+    Map<UserStatus, Long> byStatus = new EnumMap<>(UserStatus.class);
+    byStatus.put(UserStatus.ONLINE, online);
+    byStatus.put(UserStatus.OFFLINE, total - online);
+
+    Map<LocalDate, Long> registrationsByDay = new TreeMap<>();
+    LocalDate today = LocalDate.now();
+    for (LocalDate day = today.minusDays(days - 1L); !day.isAfter(today); day = day.plusDays(1)) {
+      LongAdder registrations = current.registrationsByDay.get(day);
+      if (registrations != null) {
+        registrationsByDay.put(day, registrations.sum());
+      }
+    }
+    return new UserStatisticsDTO(total, byStatus, registrationsByDay, current.reconciledAt);
+  }
+}
@@ -0,0 +1,79 @@
+package ch.uzh.ifi.hase.soprafs24.tracing;
+
+import ch.uzh.ifi.hase.soprafs24.entity.User;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.stereotype.Component;
+
+import java.util.function.Supplier;
+
+/**
+ * Emits the UserEvents around the corresponding UserService methods. While
+ * no recording is running, shouldCommit() is false and the only cost is the
+ * short-lived event object.
+ */
+@Aspect
+@Component
+public class FlightRecorderAspect {
+
+  @Around("execution(* ch.uzh.ifi.hase.soprafs24.service.UserService.createUser(..))")
+  public Object recordCreate(ProceedingJoinPoint joinPoint) throws Throwable {
+    return record(joinPoint, UserEvents.UserCreate::new);
+  }
+
+  @Around("execution(* ch.uzh.ifi.hase.soprafs24.service.UserService.loginUser(..))")
+  public Object recordLogin(ProceedingJoinPoint joinPoint) throws Throwable {
+    return record(joinPoint, UserEvents.UserLogin::new);
+  }
+
+  @Around("execution(* ch.uzh.ifi.hase.soprafs24.service.UserService.getUserByToken(..))")
+  public Object recordTokenValidation(ProceedingJoinPoint joinPoint) throws Throwable {
+    return record(joinPoint, UserEvents.TokenValidation::new);
+  }
+
+  @Around("execution(* ch.uzh.ifi.hase.soprafs24.service.UserService.editUser(..))")
+  public Object recordEdit(ProceedingJoinPoint joinPoint) throws Throwable {
+    return record(joinPoint, UserEvents.UserEdit::new);
+  }
+
+  @Around("execution(* ch.uzh.ifi.hase.soprafs24.service.UserService.logoutUser(..))")
+  public Object recordLogout(ProceedingJoinPoint joinPoint) throws Throwable {
+    return record(joinPoint, UserEvents.UserLogout::new);
+  }
+
+  private static Object record(ProceedingJoinPoint joinPoint, Supplier<UserEvents.UserOperation> eventFactory)
+      throws Throwable {
+    UserEvents.UserOperation event = eventFactory.get();
+    event.begin();
+    Object result = null;
+    String outcome = "success";
+    try {
+      result = joinPoint.proceed();
+      if (result == null && ((MethodSignature) joinPoint.getSignature()).getReturnType() != void.class) {
+        // getUserByToken answers unknown and expired tokens with null
+        outcome = "invalid";
+      }
+      return result;
+    }
+    catch (Throwable t) {
+      outcome = t.getClass().getSimpleName();
+      throw t;
+    }
+    finally {
+      event.end();
+      if (event.shouldCommit()) {
+        event.userId = userId(result, joinPoint.getArgs());
+        event.outcome = outcome;
+        event.commit();
+      }
+    }
+  }
+
+  private static long userId(Object result, Object[] args) {
+    User user = result instanceof User ? (User) result
+        : args.length > 0 && args[0] instanceof User ? (User) args[0] : null;
+    return user == null || user.getId() == null ? 0 : user.getId();
+  }
+}
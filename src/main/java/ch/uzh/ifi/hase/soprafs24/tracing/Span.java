@@ -0,0 +1,48 @@
+package ch.uzh.ifi.hase.soprafs24.tracing;
+
+/**
+ * One timed call within a Trace. Offsets are relative to the start of the
+ * request; depth is the nesting level (0 = called by the request itself).
+ */
+public class Span {
+
+  private final String layer;
+  private final String name;
+  private final int depth;
+  private final long startNanos;
+  private long durationNanos = -1;
+
+  Span(String layer, String name, int depth, long startNanos) {
+    this.layer = layer;
+    this.name = name;
+    this.depth = depth;
+    this.startNanos = startNanos;
+  }
+
+  void end(long durationNanos) {
+    this.durationNanos = durationNanos;
+  }
+
+  public String getLayer() {
+    return layer;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public int getDepth() {
+    return depth;
+  }
+
+  public double getStartMillis() {
+    return startNanos / 1e6;
+  }
+
+  /**
+   * @return the duration, or -1 if the span never ended
+   */
+  public double getDurationMillis() {
+    return durationNanos < 0 ? -1 : durationNanos / 1e6;
+  }
+}
@@ -0,0 +1,106 @@
+package ch.uzh.ifi.hase.soprafs24.tracing;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The spans of one request. A trace is only touched by the request thread
+ * until it is finished; after that it is immutable and can be handed to
+ * other threads through the TraceBuffer.
+ */
+public class Trace {
+
+  // bounds the memory of requests that run into many repository calls
+  static final int MAX_SPANS = 128;
+
+  private final String method;
+  private final String path;
+  private final Instant startedAt = Instant.now();
+  private final long startNanos = System.nanoTime();
+
+  private final List<Span> spans = new ArrayList<>();
+  private int droppedSpans;
+  private int depth;
+  private long handlerEndNanos = -1;
+
+  private int status;
+  private long durationNanos;
+
+  Trace(String method, String path) {
+    this.method = method;
+    this.path = path;
+  }
+
+  /**
+   * Opens a span below the currently open one.
+   *
+   * @return the span, or null if the trace is full
+   */
+  Span begin(String layer, String name) {
+    int spanDepth = depth++;
+    if (spans.size() == MAX_SPANS) {
+      droppedSpans++;
+      return null;
+    }
+    Span span = new Span(layer, name, spanDepth, System.nanoTime() - startNanos);
+    spans.add(span);
+    return span;
+  }
+
+  void end(Span span, long startNanosOfSpan) {
+    long now = System.nanoTime();
+    depth--;
+    if (span != null) {
+      span.end(now - startNanosOfSpan);
+    }
+    if (depth == 0) {
+      // the handler returned, whatever follows is writing the response
+      handlerEndNanos = now;
+    }
+  }
+
+  void finish(int status) {
+    long now = System.nanoTime();
+    if (handlerEndNanos > 0 && spans.size() < MAX_SPANS) {
+      Span write = new Span("response", "write", 0, handlerEndNanos - startNanos);
+      write.end(now - handlerEndNanos);
+      spans.add(write);
+    }
+    this.status = status;
+    this.durationNanos = now - startNanos;
+  }
+
+  long getDurationNanos() {
+    return durationNanos;
+  }
+
+  public String getMethod() {
+    return method;
+  }
+
+  public String getPath() {
+    return path;
+  }
+
+  public Instant getStartedAt() {
+    return startedAt;
+  }
+
+  public int getStatus() {
+    return status;
+  }
+
+  public double getDurationMillis() {
+    return durationNanos / 1e6;
+  }
+
+  public List<Span> getSpans() {
+    return Collections.unmodifiableList(spans);
+  }
+
+  public int getDroppedSpans() {
+    return droppedSpans;
+  }
+}
@@ -0,0 +1,45 @@
+package ch.uzh.ifi.hase.soprafs24.tracing;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Fixed-size ring of the most recent traces. Adding is one increment and one
+ * array write, so request threads never block each other; the oldest trace
+ * is simply overwritten.
+ */
+public class TraceBuffer {
+
+  private final AtomicReferenceArray<Trace> slots;
+  private final AtomicLong next = new AtomicLong();
+
+  public TraceBuffer(int capacity) {
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("Capacity must be positive");
+    }
+    this.slots = new AtomicReferenceArray<>(capacity);
+  }
+
+  public void add(Trace trace) {
+    long index = next.getAndIncrement();
+    slots.set((int) (index % slots.length()), trace);
+  }
+
+  /**
+   * @return up to limit traces, newest first
+   */
+  public List<Trace> recent(int limit) {
+    long end = next.get();
+    int count = (int) Math.min(Math.min(limit, slots.length()), end);
+    List<Trace> traces = new ArrayList<>(count);
+    for (long index = end - 1; index >= end - count; index--) {
+      Trace trace = slots.get((int) (index % slots.length()));
+      if (trace != null) {
+        traces.add(trace);
+      }
+    }
+    return traces;
+  }
+}
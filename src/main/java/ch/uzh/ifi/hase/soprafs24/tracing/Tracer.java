@@ -0,0 +1,98 @@
+package ch.uzh.ifi.hase.soprafs24.tracing;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Tracer
+ * Holds the trace of the request running on the current thread. Every
+ * request is timed (a few nanoTime calls per span); only a sample of the
+ * traces is kept in the TraceBuffer, plus every slow one, which is also
+ * logged with its span breakdown.
+ */
+@Component
+public class Tracer {
+
+  private static final ThreadLocal<Trace> CURRENT = new ThreadLocal<>();
+
+  private final Logger log = LoggerFactory.getLogger(Tracer.class);
+
+  private final boolean enabled;
+  private final double sampleRate;
+  private final long slowThresholdNanos;
+  private final TraceBuffer buffer;
+
+  public Tracer(@Value("${users.tracing.enabled:true}") boolean enabled,
+                @Value("${users.tracing.sample-rate:0.1}") double sampleRate,
+                @Value("${users.tracing.buffer-size:256}") int bufferSize,
+                @Value("${users.tracing.slow-threshold-ms:500}") long slowThresholdMillis) {
+    this.enabled = enabled;
+    this.sampleRate = sampleRate;
+    this.slowThresholdNanos = slowThresholdMillis * 1_000_000;
+    this.buffer = new TraceBuffer(bufferSize);
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  Trace start(String method, String path) {
+    Trace trace = new Trace(method, path);
+    CURRENT.set(trace);
+    return trace;
+  }
+
+  void finish(Trace trace, int status) {
+    CURRENT.remove();
+    trace.finish(status);
+
+    boolean slow = trace.getDurationNanos() >= slowThresholdNanos;
+    if (slow) {
+      log.warn("slow_request {}", describe(trace));
+    }
+    if (slow || ThreadLocalRandom.current().nextDouble() < sampleRate) {
+      buffer.add(trace);
+    }
+  }
+
+  /**
+   * @return the trace of the current request, or null outside of a request
+   */
+  Trace current() {
+    return CURRENT.get();
+  }
+
+  public List<Trace> recent(int limit) {
+    return buffer.recent(limit);
+  }
+
+  /**
+   * One line of key=value pairs; the spans are listed in call order, nested
+   * calls are prefixed with one '>' per level.
+   */
+  static String describe(Trace trace) {
+    StringBuilder line = new StringBuilder(256)
+        .append("method=").append(trace.getMethod())
+        .append(" path=").append(trace.getPath())
+        .append(" status=").append(trace.getStatus())
+        .append(" duration_ms=").append(String.format("%.2f", trace.getDurationMillis()))
+        .append(" spans=\"");
+    String separator = "";
+    for (Span span : trace.getSpans()) {
+      line.append(separator).append(">".repeat(span.getDepth()))
+          .append(span.getLayer()).append(' ').append(span.getName()).append(' ')
+          .append(String.format("%.2f", span.getDurationMillis())).append("ms");
+      separator = "; ";
+    }
+    line.append('"');
+    if (trace.getDroppedSpans() > 0) {
+      line.append(" dropped_spans=").append(trace.getDroppedSpans());
+    }
+    return line.toString();
+  }
+}
@@ -0,0 +1,71 @@
+package ch.uzh.ifi.hase.soprafs24.tracing;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.data.repository.Repository;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Records a span for every call into the controllers, the services and the
+ * repositories while a request is traced. Outside of a request (scheduled
+ * jobs, startup) the calls just pass through.
+ */
+@Aspect
+@Component
+public class TracingAspect {
+
+  private final Tracer tracer;
+
+  // the repository proxies are generated classes, their names are looked up once
+  private final ConcurrentHashMap<Class<?>, String> repositoryNames = new ConcurrentHashMap<>();
+
+  public TracingAspect(Tracer tracer) {
+    this.tracer = tracer;
+  }
+
+  @Around("within(ch.uzh.ifi.hase.soprafs24.controller..*)")
+  public Object traceController(ProceedingJoinPoint joinPoint) throws Throwable {
+    return trace("controller", joinPoint, joinPoint.getSignature().getDeclaringType().getSimpleName());
+  }
+
+  @Around("within(ch.uzh.ifi.hase.soprafs24.service..*)")
+  public Object traceService(ProceedingJoinPoint joinPoint) throws Throwable {
+    return trace("service", joinPoint, joinPoint.getSignature().getDeclaringType().getSimpleName());
+  }
+
+  @Around("execution(* org.springframework.data.repository.Repository+.*(..))")
+  public Object traceRepository(ProceedingJoinPoint joinPoint) throws Throwable {
+    return trace("repository", joinPoint, null);
+  }
+
+  private Object trace(String layer, ProceedingJoinPoint joinPoint, String type) throws Throwable {
+    Trace trace = tracer.current();
+    if (trace == null) {
+      return joinPoint.proceed();
+    }
+    if (type == null) {
+      type = repositoryNames.computeIfAbsent(joinPoint.getThis().getClass(), TracingAspect::repositoryName);
+    }
+
+    long start = System.nanoTime();
+    Span span = trace.begin(layer, type + "." + joinPoint.getSignature().getName());
+    try {
+      return joinPoint.proceed();
+    }
+    finally {
+      trace.end(span, start);
+    }
+  }
+
+  private static String repositoryName(Class<?> proxyClass) {
+    for (Class<?> candidate : proxyClass.getInterfaces()) {
+      if (Repository.class.isAssignableFrom(candidate) && !candidate.getName().startsWith("org.springframework.")) {
+        return candidate.getSimpleName();
+      }
+    }
+    return proxyClass.getSimpleName();
+  }
+}
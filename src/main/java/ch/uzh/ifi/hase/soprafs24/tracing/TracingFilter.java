@@ -0,0 +1,44 @@
+package ch.uzh.ifi.hase.soprafs24.tracing;
+
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+
+/**
+ * Opens a trace for every request and finishes it once the response has
+ * been written. Requests to the /internal endpoints are not traced, so
+ * reading the traces does not push them out of the buffer.
+ */
+@Component
+public class TracingFilter extends OncePerRequestFilter {
+
+  private final Tracer tracer;
+
+  public TracingFilter(Tracer tracer) {
+    this.tracer = tracer;
+  }
+
+  @Override
+  protected boolean shouldNotFilter(@NonNull HttpServletRequest request) {
+    return !tracer.isEnabled() || request.getRequestURI().startsWith("/internal/");
+  }
+
+  @Override
+  protected void doFilterInternal(@NonNull HttpServletRequest request, @NonNull HttpServletResponse response,
+                                  @NonNull FilterChain filterChain) throws ServletException, IOException {
+    Trace trace = tracer.start(request.getMethod(), request.getRequestURI());
+    try {
+      filterChain.doFilter(request, response);
+    }
+    finally {
+      tracer.finish(trace, response.getStatus());
+    }
+  }
+}
@@ -0,0 +1,57 @@
+package ch.uzh.ifi.hase.soprafs24.tracing;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Custom JDK Flight Recorder events of the user operations, so GC pauses or
+ * lock stalls in a recording can be matched to what the application was
+ * doing. The duration of an event is the duration of the operation.
+ *
+ * @see FlightRecorderAspect
+ */
+public final class UserEvents {
+
+  private UserEvents() {
+  }
+
+  @Category({"SoPra", "Users"})
+  public abstract static class UserOperation extends Event {
+
+    @Label("User Id")
+    @Description("Id of the affected user, 0 if it is not known (e.g. a failed creation)")
+    long userId;
+
+    @Label("Outcome")
+    @Description("success, invalid (token unknown or expired) or the simple name of the exception")
+    String outcome;
+  }
+
+  @Name("soprafs24.UserCreate")
+  @Label("User Create")
+  public static class UserCreate extends UserOperation {
+  }
+
+  @Name("soprafs24.UserLogin")
+  @Label("User Login")
+  public static class UserLogin extends UserOperation {
+  }
+
+  @Name("soprafs24.TokenValidation")
+  @Label("Token Validation")
+  public static class TokenValidation extends UserOperation {
+  }
+
+  @Name("soprafs24.UserEdit")
+  @Label("User Edit")
+  public static class UserEdit extends UserOperation {
+  }
+
+  @Name("soprafs24.UserLogout")
+  @Label("User Logout")
+  public static class UserLogout extends UserOperation {
+  }
+}
@@ -0,0 +1,207 @@
+package ch.uzh.ifi.hase.soprafs24.warmup;
+
+import ch.uzh.ifi.hase.soprafs24.constant.UserField;
+import ch.uzh.ifi.hase.soprafs24.constant.UserStatus;
+import ch.uzh.ifi.hase.soprafs24.entity.User;
+import ch.uzh.ifi.hase.soprafs24.exceptions.DomainException;
+import ch.uzh.ifi.hase.soprafs24.ratelimit.RateLimiter;
+import ch.uzh.ifi.hase.soprafs24.repository.UserRepository;
+import ch.uzh.ifi.hase.soprafs24.rest.dto.UserFieldsDTO;
+import ch.uzh.ifi.hase.soprafs24.rest.dto.UserGetDTO;
+import ch.uzh.ifi.hase.soprafs24.rest.mapper.DTOMapper;
+import ch.uzh.ifi.hase.soprafs24.service.PasswordHasher;
+import ch.uzh.ifi.hase.soprafs24.service.ProfileResponseCache;
+import ch.uzh.ifi.hase.soprafs24.service.UserService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * Warm Up
+ * Runs before the application reports ready (Spring Boot publishes
+ * ReadinessState.ACCEPTING_TRAFFIC only after all ApplicationRunners, see
+ * ReadinessController), so the first real requests do not pay for a cold JIT,
+ * empty Hibernate query plan cache and empty application caches:
+ * <ul>
+ * <li>reads the id, username and token columns of all users, which pulls their
+ * pages and indexes into the database cache</li>
+ * <li>encodes the profiles of the online users into the ProfileResponseCache</li>
+ * <li>repeats the lookups, DTO mapping and JSON encoding of the user endpoints
+ * with synthetic data, and sends requests without valid token through the
+ * whole HTTP stack if a server port is open; the rate limit buckets they
+ * created are dropped afterwards</li>
+ * <li>verifies a synthetic password on every hashing thread</li>
+ * </ul>
+ * Nothing is written: the synthetic lookups miss, and the HTTP requests are
+ * rejected before any change.
+ */
+@Component
+public class WarmUp implements ApplicationRunner {
+
+  private static final List<UserField> INDEX_FIELDS = List.of(UserField.ID, UserField.USERNAME, UserField.TOKEN);
+
+  private final Logger log = LoggerFactory.getLogger(WarmUp.class);
+
+  private final UserService userService;
+  private final UserRepository userRepository;
+  private final ProfileResponseCache profileResponseCache;
+  private final PasswordHasher passwordHasher;
+  private final RateLimiter rateLimiter;
+  private final ObjectMapper objectMapper;
+  private final Environment environment;
+  private final boolean enabled;
+  private final int iterations;
+  private final int profiles;
+  private final int passwordThreads;
+
+  private volatile long durationMillis = -1;
+
+  public WarmUp(UserService userService, @Qualifier("userRepository") UserRepository userRepository,
+                ProfileResponseCache profileResponseCache, PasswordHasher passwordHasher, RateLimiter rateLimiter,
+                ObjectMapper objectMapper, Environment environment,
+                @Value("${users.warmup.enabled:true}") boolean enabled,
+                @Value("${users.warmup.iterations:2000}") int iterations,
+                @Value("${users.warmup.profiles:1000}") int profiles,
+                @Value("${users.password.threads:0}") int passwordThreads) {
+    this.userService = userService;
+    this.userRepository = userRepository;
+    this.profileResponseCache = profileResponseCache;
+    this.passwordHasher = passwordHasher;
+    this.rateLimiter = rateLimiter;
+    this.objectMapper = objectMapper;
+    this.environment = environment;
+    this.enabled = enabled;
+    this.iterations = iterations;
+    this.profiles = profiles;
+    // 0 = one per core, as in the PasswordHasher
+    this.passwordThreads = passwordThreads > 0 ? passwordThreads : Runtime.getRuntime().availableProcessors();
+  }
+
+  @Override
+  public void run(ApplicationArguments args) throws Exception {
+    if (!enabled) {
+      return;
+    }
+    long start = System.nanoTime();
+
+    int users = userRepository.findFields(INDEX_FIELDS).size();
+    int cached = loadProfiles();
+    exerciseServices();
+    // real clients may already have buckets, only the ones of the warm-up requests go
+    Set<String> existingBuckets = rateLimiter.keys();
+    int requests = exerciseHttp();
+    rateLimiter.reset(rateLimiter.keys().stream()
+        .filter(key -> !existingBuckets.contains(key))
+        .collect(Collectors.toList()));
+    exercisePasswordHashing();
+
+    durationMillis = (System.nanoTime() - start) / 1_000_000;
+    log.info("Warmed up in {} ms: {} users read, {} profiles cached, {} iterations, {} requests",
+        durationMillis, users, cached, iterations, requests);
+  }
+
+  /**
+   * @return how long the warm-up took, -1 if it did not run
+   */
+  public long getDurationMillis() {
+    return durationMillis;
+  }
+
+  private int loadProfiles() {
+    List<Long> online = userRepository.findIdsByStatus(UserStatus.ONLINE);
+    int loaded = 0;
+    for (Long id : online.subList(0, Math.min(profiles, online.size()))) {
+      try {
+        profileResponseCache.getProfile(id);
+        loaded++;
+      }
+      catch (DomainException e) {
+        // deleted meanwhile
+      }
+    }
+    return loaded;
+  }
+
+  private void exerciseServices() throws Exception {
+    User synthetic = new User();
+    synthetic.setId(-1L);
+    synthetic.setUsername("warmup");
+    synthetic.setToken(UUID.randomUUID().toString());
+    synthetic.setStatus(UserStatus.ONLINE);
+    synthetic.setDate(LocalDate.now());
+    synthetic.setBirthday(LocalDate.of(2000, 1, 1));
+    Object[] fields = { -1L, "warmup", synthetic.getToken() };
+
+    for (int i = 0; i < iterations; i++) {
+      String missing = "warmup-" + UUID.randomUUID();
+      userService.getUserByToken(missing);
+      if (i % 10 == 0) {
+        // these reach the database, fewer of them suffice for the query plans; no user has id 0 on any shard
+        userService.getUserByUsername(missing);
+        userRepository.findById(0L);
+        userRepository.findFieldsById(0L, INDEX_FIELDS);
+      }
+      UserGetDTO userGetDTO = DTOMapper.INSTANCE.convertEntityToUserGetDTO(synthetic);
+      objectMapper.writeValueAsBytes(userGetDTO);
+      objectMapper.writeValueAsBytes(new UserFieldsDTO(INDEX_FIELDS, fields));
+    }
+  }
+
+  /**
+   * Sends requests with an unknown token, which go through the filters, the
+   * controller, the exception handling and the JSON error response.
+   *
+   * @return the number of requests sent
+   */
+  private int exerciseHttp() {
+    String port = environment.getProperty("local.server.port");
+    if (port == null) {
+      return 0;
+    }
+    HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(2)).build();
+    String base = "http://localhost:" + port;
+    String[] paths = { "/users", "/users/1", "/users/statistics", "/users?fields=id,username" };
+    int sent = 0;
+    try {
+      for (int i = 0; i < iterations / 10; i++) {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(base + paths[i % paths.length]))
+            .header("Authorization", "warmup-" + i)
+            .timeout(Duration.ofSeconds(5))
+            .build();
+        client.send(request, HttpResponse.BodyHandlers.discarding());
+        sent++;
+      }
+    }
+    catch (Exception e) {
+      log.warn("HTTP warm-up stopped after {} requests", sent, e);
+      if (e instanceof InterruptedException) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    return sent;
+  }
+
+  private void exercisePasswordHashing() {
+    String hash = passwordHasher.hash("warmup");
+    for (int i = 0; i < passwordThreads; i++) {
+      passwordHasher.verify("warmup", hash);
+    }
+  }
+}
@@ -0,0 +1,104 @@
+package ch.uzh.ifi.hase.soprafs24.audit;
+
+import ch.uzh.ifi.hase.soprafs24.service.UserChangedEvent;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AuditLogTest {
+
+  @TempDir
+  Path directory;
+
+  private AuditLog auditLog;
+
+  @AfterEach
+  public void tearDown() throws Exception {
+    if (auditLog != null) {
+      auditLog.stop();
+    }
+  }
+
+  private AuditLog start(long segmentBytes, int maxSegments) throws Exception {
+    AuditLog started = new AuditLog(true, directory.toString(), segmentBytes, maxSegments, true, 1000);
+    started.start();
+    return started;
+  }
+
+  @Test
+  public void query_byUser_onlyTheirEventsInOrder() throws Exception {
+    auditLog = start(1 << 20, 0);
+    auditLog.onUserChanged(new UserChangedEvent(UserChangedEvent.Kind.CREATED, 1L));
+    auditLog.onUserChanged(new UserChangedEvent(UserChangedEvent.Kind.CREATED, 2L));
+    auditLog.onUserChanged(new UserChangedEvent(UserChangedEvent.Kind.LOGGED_OUT, 1L));
+    auditLog.sync().get(5, TimeUnit.SECONDS);
+
+    List<AuditEvent> events = auditLog.query(1L, null, null, 100);
+
+    assertEquals(2, events.size());
+    assertEquals(AuditEvent.Action.CREATED, events.get(0).getAction());
+    assertEquals(AuditEvent.Action.LOGGED_OUT, events.get(1).getAction());
+    assertTrue(events.get(0).getSequence() < events.get(1).getSequence());
+  }
+
+  @Test
+  public void query_timeRange_excludesOutside() throws Exception {
+    auditLog = start(1 << 20, 0);
+    auditLog.append(1L, AuditEvent.Action.LOGGED_IN);
+    auditLog.sync().get(5, TimeUnit.SECONDS);
+
+    assertEquals(1, auditLog.query(null, Instant.now().minusSeconds(60), Instant.now(), 100).size());
+    assertEquals(0, auditLog.query(null, Instant.now().plusSeconds(60), null, 100).size());
+  }
+
+  @Test
+  public void onUserChanged_wentOffline_notAudited() throws Exception {
+    auditLog = start(1 << 20, 0);
+    auditLog.onUserChanged(new UserChangedEvent(UserChangedEvent.Kind.WENT_OFFLINE, List.of(1L, 2L)));
+    auditLog.sync().get(5, TimeUnit.SECONDS);
+
+    assertTrue(auditLog.query(null, null, null, 100).isEmpty());
+  }
+
+  @Test
+  public void append_beyondSegmentSize_rotatesAndDeletesOldest() throws Exception {
+    auditLog = start(64, 3);
+    for (int i = 0; i < 20; i++) {
+      auditLog.append(i, AuditEvent.Action.EDITED);
+      // one batch per event, so every batch is checked against the segment size
+      auditLog.sync().get(5, TimeUnit.SECONDS);
+    }
+
+    try (Stream<Path> files = Files.list(directory)) {
+      assertEquals(3, files.count());
+    }
+    List<AuditEvent> remaining = auditLog.query(null, null, null, 100);
+    assertFalse(remaining.isEmpty());
+    assertEquals(19, remaining.get(remaining.size() - 1).getUserId());
+  }
+
+  @Test
+  public void start_afterRestart_continuesSequence() throws Exception {
+    auditLog = start(1 << 20, 0);
+    auditLog.append(1L, AuditEvent.Action.CREATED);
+    auditLog.append(1L, AuditEvent.Action.LOGGED_IN);
+    auditLog.stop();
+
+    auditLog = start(1 << 20, 0);
+    auditLog.append(1L, AuditEvent.Action.LOGGED_OUT);
+    auditLog.sync().get(5, TimeUnit.SECONDS);
+
+    List<AuditEvent> events = auditLog.query(1L, null, null, 100);
+    assertEquals(3, events.size());
+    assertEquals(3, events.get(2).getSequence());
+  }
+}
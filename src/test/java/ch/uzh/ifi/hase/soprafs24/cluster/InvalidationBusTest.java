@@ -0,0 +1,277 @@
+package ch.uzh.ifi.hase.soprafs24.cluster;
+
+import ch.uzh.ifi.hase.soprafs24.service.UserChangedEvent;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+import org.springframework.context.ApplicationEventPublisher;
+
+import java.io.IOException;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class InvalidationBusTest {
+
+  private static final byte[] SECRET = "cluster-secret".getBytes(StandardCharsets.UTF_8);
+
+  @Mock
+  private ApplicationEventPublisher publisherA;
+
+  @Mock
+  private ApplicationEventPublisher publisherB;
+
+  private InvalidationBus busA;
+  private InvalidationBus busB;
+
+  @BeforeEach
+  public void setup() throws Exception {
+    MockitoAnnotations.openMocks(this);
+    String group = UUID.randomUUID().toString();
+    busA = new InvalidationBus(new LoopbackTransport(group), publisherA, 512, 3600000);
+    busB = new InvalidationBus(new LoopbackTransport(group), publisherB, 512, 3600000);
+    busA.start();
+    busB.start();
+  }
+
+  @AfterEach
+  public void teardown() {
+    busA.stop();
+    busB.stop();
+  }
+
+  @Test
+  public void flush_repeatedChanges_coalescedInOrder() {
+    busA.onUserChanged(new UserChangedEvent(UserChangedEvent.Kind.LOGGED_IN, List.of(1L, 2L)));
+    busA.onUserChanged(new UserChangedEvent(UserChangedEvent.Kind.WENT_OFFLINE, 1L));
+    busA.onUserChanged(new UserChangedEvent(UserChangedEvent.Kind.LOGGED_IN, 1L));
+
+    busA.flush();
+
+    List<UserChangedEvent> events = received(publisherB, 3);
+    assertEquals(UserChangedEvent.Kind.LOGGED_IN, events.get(0).getKind());
+    assertEquals(List.of(2L), events.get(0).getUserIds());
+    assertEquals(UserChangedEvent.Kind.WENT_OFFLINE, events.get(1).getKind());
+    assertEquals(UserChangedEvent.Kind.LOGGED_IN, events.get(2).getKind());
+    assertEquals(List.of(1L), events.get(2).getUserIds());
+    assertTrue(events.stream().allMatch(UserChangedEvent::isRemote));
+    assertEquals(1, busA.getCoalesced());
+    assertEquals(3, busB.getReceived());
+    Mockito.verifyNoInteractions(publisherA);
+  }
+
+  @Test
+  public void onUserChanged_remoteEvent_notSentAgain() {
+    busB.onUserChanged(new UserChangedEvent(UserChangedEvent.Kind.EDITED, List.of(1L), true));
+
+    busB.flush();
+
+    assertEquals(0, busB.getSent());
+    Mockito.verifyNoInteractions(publisherA);
+  }
+
+  @Test
+  public void onUserChanged_maxBatchQueued_flushesWithoutWaiting() throws Exception {
+    InvalidationBus small = new InvalidationBus(new LoopbackTransport(UUID.randomUUID().toString()), publisherA, 2, 3600000);
+    small.start();
+
+    small.onUserChanged(new UserChangedEvent(UserChangedEvent.Kind.EDITED, 1L));
+    assertEquals(0, small.getSent());
+    small.onUserChanged(new UserChangedEvent(UserChangedEvent.Kind.EDITED, 2L));
+    assertEquals(2, small.getSent());
+    small.stop();
+  }
+
+  @Test
+  public void receive_lostMessage_publishesCachesStale() throws Exception {
+    List<byte[]> messages = new ArrayList<>();
+    InvalidationBus sender = new InvalidationBus(new InvalidationTransport() {
+      @Override
+      public void start(Consumer<byte[]> receiver) {
+      }
+
+      @Override
+      public void send(byte[] message) {
+        messages.add(message);
+      }
+
+      @Override
+      public void close() {
+      }
+    }, publisherA, 512, 3600000);
+    for (long id = 1; id <= 3; id++) {
+      sender.onUserChanged(new UserChangedEvent(UserChangedEvent.Kind.EDITED, id));
+      sender.flush();
+    }
+
+    busB.receive(messages.get(0));
+    busB.receive(messages.get(2));
+
+    ArgumentCaptor<Object> events = ArgumentCaptor.forClass(Object.class);
+    Mockito.verify(publisherB, Mockito.times(3)).publishEvent(events.capture());
+    assertTrue(events.getAllValues().get(1) instanceof UserCachesStaleEvent);
+    assertEquals(sender.getNode(), ((UserCachesStaleEvent) events.getAllValues().get(1)).getNode());
+    assertEquals(1, busB.getGaps());
+  }
+
+  @Test
+  public void evictIdleSenders_quietNode_forgotten() throws Exception {
+    InvalidationBus forgetful = new InvalidationBus(new LoopbackTransport(UUID.randomUUID().toString()), publisherB, 512, 0);
+    List<byte[]> messages = new ArrayList<>();
+    InvalidationBus sender = new InvalidationBus(new InvalidationTransport() {
+      @Override
+      public void start(Consumer<byte[]> receiver) {
+      }
+
+      @Override
+      public void send(byte[] message) {
+        messages.add(message);
+      }
+
+      @Override
+      public void close() {
+      }
+    }, publisherA, 512, 3600000);
+    sender.onUserChanged(new UserChangedEvent(UserChangedEvent.Kind.EDITED, 1L));
+    sender.flush();
+
+    forgetful.receive(messages.get(0));
+    assertEquals(1, forgetful.getKnownSenders());
+
+    Thread.sleep(5);
+    forgetful.evictIdleSenders();
+    assertEquals(0, forgetful.getKnownSenders());
+  }
+
+  @Test
+  public void receive_malformedMessage_ignored() {
+    busB.receive("not an invalidation".getBytes(StandardCharsets.UTF_8));
+    busB.receive(new byte[3]);
+
+    Mockito.verifyNoInteractions(publisherB);
+  }
+
+  @Test
+  public void receive_repeatedMessage_ignored() {
+    List<byte[]> messages = new ArrayList<>();
+    InvalidationBus sender = new InvalidationBus(new InvalidationTransport() {
+      @Override
+      public void start(Consumer<byte[]> receiver) {
+      }
+
+      @Override
+      public void send(byte[] message) {
+        messages.add(message);
+      }
+
+      @Override
+      public void close() {
+      }
+    }, publisherA, 512, 3600000);
+    for (long id = 1; id <= 2; id++) {
+      sender.onUserChanged(new UserChangedEvent(UserChangedEvent.Kind.EDITED, id));
+      sender.flush();
+    }
+
+    busB.receive(messages.get(0));
+    busB.receive(messages.get(1));
+    busB.receive(messages.get(0));
+    busB.receive(messages.get(1));
+
+    assertEquals(2, received(publisherB, 2).size());
+    assertEquals(0, busB.getGaps());
+  }
+
+  @Test
+  public void udpTransport_sendToPeer_received() throws Exception {
+    InetSocketAddress senderAddress = freeLocalAddress();
+    InetSocketAddress receiverAddress = freeLocalAddress();
+    BlockingQueue<byte[]> received = new ArrayBlockingQueue<>(1);
+    UdpTransport receiver = new UdpTransport(receiverAddress, List.of(senderAddress), SECRET);
+    receiver.start(received::add);
+    UdpTransport sender = new UdpTransport(senderAddress, List.of(receiverAddress), SECRET);
+    sender.start(message -> { });
+
+    try {
+      sender.send(new byte[] { 1, 2, 3 });
+
+      assertArrayEquals(new byte[] { 1, 2, 3 }, received.poll(5, TimeUnit.SECONDS));
+    }
+    finally {
+      sender.close();
+      receiver.close();
+    }
+  }
+
+  @Test
+  public void udpTransport_notFromPeerOrWrongSecret_dropped() throws Exception {
+    InetSocketAddress peerAddress = freeLocalAddress();
+    InetSocketAddress receiverAddress = freeLocalAddress();
+    BlockingQueue<byte[]> received = new ArrayBlockingQueue<>(3);
+    UdpTransport receiver = new UdpTransport(receiverAddress, List.of(peerAddress), SECRET);
+    receiver.start(received::add);
+    UdpTransport stranger = new UdpTransport(freeLocalAddress(), List.of(receiverAddress), SECRET);
+    stranger.start(message -> { });
+
+    try {
+      stranger.send(new byte[] { 1 });
+      // from the address of the peer, but without the secret
+      UdpTransport forger = new UdpTransport(peerAddress, List.of(receiverAddress),
+          "guessed".getBytes(StandardCharsets.UTF_8));
+      forger.start(message -> { });
+      forger.send(new byte[] { 2 });
+      forger.close();
+      UdpTransport peer = new UdpTransport(peerAddress, List.of(receiverAddress), SECRET);
+      peer.start(message -> { });
+      peer.send(new byte[] { 3 });
+      peer.close();
+
+      // datagrams on the loopback interface arrive in order
+      assertArrayEquals(new byte[] { 3 }, received.poll(5, TimeUnit.SECONDS));
+      assertTrue(received.isEmpty());
+    }
+    finally {
+      stranger.close();
+      receiver.close();
+    }
+  }
+
+  @Test
+  public void parsePeers_hostsAndPorts() {
+    List<InetSocketAddress> peers = UdpTransport.parsePeers(" 10.0.0.1:7600, node-b:7601,");
+
+    assertEquals(2, peers.size());
+    assertEquals(7601, peers.get(1).getPort());
+    assertThrows(IllegalArgumentException.class, () -> UdpTransport.parsePeers("node-c"));
+  }
+
+  private static InetSocketAddress freeLocalAddress() throws IOException {
+    try (DatagramSocket socket = new DatagramSocket(0, InetAddress.getLoopbackAddress())) {
+      return new InetSocketAddress(InetAddress.getLoopbackAddress(), socket.getLocalPort());
+    }
+  }
+
+  private static List<UserChangedEvent> received(ApplicationEventPublisher publisher, int count) {
+    ArgumentCaptor<Object> events = ArgumentCaptor.forClass(Object.class);
+    Mockito.verify(publisher, Mockito.times(count)).publishEvent(events.capture());
+    List<UserChangedEvent> changes = new ArrayList<>();
+    for (Object event : events.getAllValues()) {
+      changes.add((UserChangedEvent) event);
+    }
+    return changes;
+  }
+}
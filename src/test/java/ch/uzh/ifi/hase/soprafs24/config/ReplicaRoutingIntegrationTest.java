@@ -0,0 +1,149 @@
+package ch.uzh.ifi.hase.soprafs24.config;
+
+import ch.uzh.ifi.hase.soprafs24.entity.User;
+import ch.uzh.ifi.hase.soprafs24.service.UserService;
+import ch.uzh.ifi.hase.soprafs24.utlis.TestUtils;
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.context.web.WebAppConfiguration;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import javax.sql.DataSource;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the application against a primary and a second in-memory H2 database
+ * as replica. Nothing replicates between the two, which makes visible where
+ * each statement went.
+ *
+ * @see ReplicaRoutingDataSource
+ */
+@WebAppConfiguration
+@SpringBootTest(properties = {
+    "spring.datasource.url=jdbc:h2:mem:replicaTestPrimary",
+    "users.datasource.replica.url=jdbc:h2:mem:replicaTestReplica;DB_CLOSE_DELAY=-1",
+    "users.datasource.replica.max-lag-ms=60000",
+    "spring.datasource.hikari.maximum-pool-size=7"
+})
+public class ReplicaRoutingIntegrationTest {
+
+  @Qualifier("primaryDataSource")
+  @Autowired
+  private DataSource primaryDataSource;
+
+  @Qualifier("replicaDataSource")
+  @Autowired
+  private DataSource replicaDataSource;
+
+  @Autowired
+  private UserService userService;
+
+  private JdbcTemplate primary;
+  private JdbcTemplate replica;
+
+  @BeforeEach
+  public void setup() {
+    primary = new JdbcTemplate(primaryDataSource);
+    replica = new JdbcTemplate(replicaDataSource);
+
+    if (replica.queryForObject(
+        "SELECT COUNT(*) FROM INFORMATION_SCHEMA.TABLES WHERE TABLE_NAME = 'USER'", Integer.class) == 0) {
+      TestUtils.copySchema(primaryDataSource, replica.getDataSource());
+    }
+    primary.update("DELETE FROM USER");
+    replica.update("DELETE FROM USER");
+  }
+
+  @AfterEach
+  public void tearDown() {
+    RequestContextHolder.resetRequestAttributes();
+  }
+
+  @Test
+  public void getUserByUsername_readOnly_servedByReplica() {
+    replica.update("INSERT INTO USER (ID, USERNAME, PASSWORD, TOKEN, STATUS, DATE) "
+        + "VALUES (1, 'replicaOnly', 'password', 'replica-token', 0, CURRENT_DATE)");
+
+    assertNotNull(userService.getUserByUsername("replicaOnly"));
+    assertEquals(1, userService.getUsers().size());
+  }
+
+  @Test
+  public void createUser_write_goesToPrimary() {
+    User newUser = new User();
+    newUser.setUsername("written");
+    newUser.setPassword("password");
+
+    userService.createUser(newUser);
+
+    assertEquals(1, primary.queryForObject("SELECT COUNT(*) FROM USER", Integer.class));
+    assertEquals(0, replica.queryForObject("SELECT COUNT(*) FROM USER", Integer.class));
+  }
+
+  @Test
+  public void getUserByUsername_afterOwnWrite_readsFromPrimary() {
+    actAs("10.0.0.1");
+    User newUser = new User();
+    newUser.setUsername("written");
+    newUser.setPassword("password");
+    userService.createUser(newUser);
+
+    // the writing client reads its own write although the replica does not have it
+    assertNotNull(userService.getUserByUsername("written"));
+
+    // any other client is served by the replica
+    actAs("10.0.0.2");
+    assertNull(userService.getUserByUsername("written"));
+  }
+
+  @Test
+  public void getUserByUsername_otherTokenSameAddress_servedByReplica() {
+    actAs("10.0.0.1", "writer-token");
+    User newUser = new User();
+    newUser.setUsername("written");
+    newUser.setPassword("password");
+    userService.createUser(newUser);
+    assertNotNull(userService.getUserByUsername("written"));
+
+    // another user behind the same NAT is not stuck on the primary
+    actAs("10.0.0.1", "reader-token");
+    assertNull(userService.getUserByUsername("written"));
+  }
+
+  @Test
+  public void primaryDataSource_hikariProperties_applied() {
+    assertEquals(7, ((HikariDataSource) primaryDataSource).getMaximumPoolSize());
+  }
+
+  @Test
+  public void getUserByIdFromPrimary_readOnly_notServedByReplica() {
+    primary.update("INSERT INTO USER (ID, USERNAME, PASSWORD, TOKEN, STATUS, DATE) "
+        + "VALUES (1, 'primaryOnly', 'password', 'primary-token', 0, CURRENT_DATE)");
+
+    assertEquals("primaryOnly", userService.getUserByIdFromPrimary(1L).getUsername());
+    // the other reads still go to the replica
+    assertNull(userService.getUserByUsername("primaryOnly"));
+  }
+
+  private static void actAs(String remoteAddress) {
+    actAs(remoteAddress, null);
+  }
+
+  private static void actAs(String remoteAddress, String token) {
+    MockHttpServletRequest request = new MockHttpServletRequest();
+    request.setRemoteAddr(remoteAddress);
+    if (token != null) {
+      request.addHeader("Authorization", token);
+    }
+    RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+  }
+}
@@ -0,0 +1,31 @@
+package ch.uzh.ifi.hase.soprafs24.config;
+
+import ch.uzh.ifi.hase.soprafs24.repository.UsernameClaimRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+public class UnshardedConfigIntegrationTest {
+
+  @Autowired
+  private DataSource dataSource;
+
+  @Autowired
+  private ObjectProvider<UsernameClaimRepository> usernameClaimRepository;
+
+  @Test
+  public void notSharded_noUsernameClaims() {
+    JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+
+    assertEquals(0, jdbc.queryForObject(
+        "SELECT COUNT(*) FROM INFORMATION_SCHEMA.TABLES WHERE TABLE_NAME = 'USERNAME_CLAIM'", Integer.class));
+    assertNull(usernameClaimRepository.getIfAvailable());
+  }
+}
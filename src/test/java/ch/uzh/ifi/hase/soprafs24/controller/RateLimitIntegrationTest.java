@@ -0,0 +1,90 @@
+package ch.uzh.ifi.hase.soprafs24.controller;
+
+import ch.uzh.ifi.hase.soprafs24.entity.User;
+import ch.uzh.ifi.hase.soprafs24.constant.UserStatus;
+import ch.uzh.ifi.hase.soprafs24.ratelimit.RateLimiter;
+import ch.uzh.ifi.hase.soprafs24.repository.UserRepository;
+import ch.uzh.ifi.hase.soprafs24.service.SessionStore;
+import ch.uzh.ifi.hase.soprafs24.service.UserService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.LocalDate;
+import java.util.UUID;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {
+    "users.rate-limit.endpoints=GET /users/statistics=2:0.01",
+    "users.rate-limit.ip-factor=1"
+})
+@AutoConfigureMockMvc
+public class RateLimitIntegrationTest {
+
+  @Autowired
+  private MockMvc mockMvc;
+
+  @Autowired
+  private UserRepository userRepository;
+
+  @Autowired
+  private SessionStore sessionStore;
+
+  @Autowired
+  private RateLimiter rateLimiter;
+
+  @SpyBean
+  private UserService userService;
+
+  private String token;
+
+  @BeforeEach
+  public void setup() {
+    userRepository.deleteAll();
+    User user = new User();
+    user.setUsername("limited");
+    user.setPassword("password");
+    user.setToken(UUID.randomUUID().toString());
+    user.setStatus(UserStatus.ONLINE);
+    user.setDate(LocalDate.now());
+    token = sessionStore.create(userRepository.saveAndFlush(user).getId()).getToken();
+    rateLimiter.reset();
+  }
+
+  @Test
+  void GET_statistics_beyondLimit_429BeforeUserService() throws Exception {
+    mockMvc.perform(get("/users/statistics").header("Authorization", token))
+        .andExpect(status().isOk())
+        .andExpect(header().string("X-RateLimit-Limit", "2"))
+        .andExpect(header().string("X-RateLimit-Remaining", "1"));
+    mockMvc.perform(get("/users/statistics").header("Authorization", token))
+        .andExpect(status().isOk())
+        .andExpect(header().string("X-RateLimit-Remaining", "0"));
+
+    Mockito.clearInvocations(userService);
+    mockMvc.perform(get("/users/statistics").header("Authorization", token))
+        .andExpect(status().isTooManyRequests())
+        .andExpect(header().exists("Retry-After"))
+        .andExpect(header().string("X-RateLimit-Remaining", "0"));
+    Mockito.verifyNoInteractions(userService);
+  }
+
+  @Test
+  void GET_otherEndpoint_defaultLimit() throws Exception {
+    for (int i = 0; i < 3; i++) {
+      mockMvc.perform(get("/users/statistics").header("Authorization", token));
+    }
+
+    mockMvc.perform(get("/users/online").header("Authorization", token))
+        .andExpect(status().isOk())
+        .andExpect(header().string("X-RateLimit-Limit", "100"));
+  }
+}
@@ -0,0 +1,29 @@
+package ch.uzh.ifi.hase.soprafs24.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.is;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+public class ReadinessControllerTest {
+
+  @Autowired
+  private MockMvc mockMvc;
+
+  @Test
+  void GET_readiness_afterWarmUp_200() throws Exception {
+    mockMvc.perform(get("/readiness"))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.state", is("ACCEPTING_TRAFFIC")))
+        .andExpect(jsonPath("$.warmUpMillis", greaterThanOrEqualTo(0)));
+  }
+}
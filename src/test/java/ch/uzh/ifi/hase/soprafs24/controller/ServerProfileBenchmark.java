@@ -0,0 +1,110 @@
+package ch.uzh.ifi.hase.soprafs24.controller;
+
+import ch.uzh.ifi.hase.soprafs24.constant.UserStatus;
+import ch.uzh.ifi.hase.soprafs24.entity.User;
+import ch.uzh.ifi.hase.soprafs24.repository.UserRepository;
+import ch.uzh.ifi.hase.soprafs24.service.SessionStore;
+import ch.uzh.ifi.hase.soprafs24.utlis.BenchmarkUtils;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Bytes on the wire and latency of the user list endpoints with the prod
+ * server profile: HTTP/1.1 uncompressed, HTTP/1.1 with gzip and h2c with
+ * gzip. Compressed bodies are decompressed by the client, as a browser
+ * would. Run with ./gradlew benchmark [-Dbenchmark.users=N].
+ */
+@Tag("benchmark")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = "users.rate-limit.enabled=false")
+@ActiveProfiles("prod")
+public class ServerProfileBenchmark {
+
+  private static final int USERS = Integer.getInteger("benchmark.users", 10_000);
+  private static final int REQUESTS = Integer.getInteger("benchmark.requests", 200);
+
+  @LocalServerPort
+  private int port;
+
+  @Autowired
+  private UserRepository userRepository;
+
+  @Autowired
+  private SessionStore sessionStore;
+
+  @Test
+  public void getUsers_plainVsGzipVsHttp2() throws Exception {
+    userRepository.deleteAll();
+    List<User> users = new ArrayList<>();
+    for (int i = 0; i < USERS; i++) {
+      User user = new User();
+      user.setUsername("user" + i);
+      user.setPassword("password");
+      user.setToken(UUID.randomUUID().toString());
+      user.setStatus(i % 2 == 0 ? UserStatus.ONLINE : UserStatus.OFFLINE);
+      user.setDate(LocalDate.of(2025, 1, 1).plusDays(i % 365));
+      user.setBirthday(i % 3 == 0 ? null : LocalDate.of(1990 + i % 20, 1 + i % 12, 1 + i % 28));
+      users.add(user);
+    }
+    List<User> saved = userRepository.saveAll(users);
+    String token = sessionStore.create(saved.get(0).getId()).getToken();
+
+    HttpClient http1 = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+    HttpClient http2 = HttpClient.newBuilder().version(HttpClient.Version.HTTP_2).build();
+    for (String path : List.of("/users", "/users?fields=id,username")) {
+      run("HTTP/1.1 identity " + path, http1, request(path, token, false), HttpClient.Version.HTTP_1_1);
+      run("HTTP/1.1 gzip " + path, http1, request(path, token, true), HttpClient.Version.HTTP_1_1);
+      run("h2c gzip " + path, http2, request(path, token, true), HttpClient.Version.HTTP_2);
+    }
+  }
+
+  private HttpRequest request(String path, String token, boolean gzip) {
+    HttpRequest.Builder request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + path))
+        .header("Authorization", token);
+    if (gzip) {
+      request.header("Accept-Encoding", "gzip");
+    }
+    return request.build();
+  }
+
+  private void run(String name, HttpClient client, HttpRequest request, HttpClient.Version expectedVersion)
+      throws Exception {
+    HttpResponse<byte[]> response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+    assertEquals(200, response.statusCode());
+    // the first request of the h2c client upgrades the connection
+    response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+    assertEquals(expectedVersion, response.version());
+    int wireBytes = response.body().length;
+    int jsonBytes = decode(response).length;
+
+    BenchmarkUtils.measure(name, REQUESTS / 4, REQUESTS, () -> decode(client.send(request, HttpResponse.BodyHandlers.ofByteArray())));
+    System.out.printf("%-40s %12d B on the wire %12d B JSON%n", name, wireBytes, jsonBytes);
+  }
+
+  private static byte[] decode(HttpResponse<byte[]> response) throws IOException {
+    if (!"gzip".equals(response.headers().firstValue("Content-Encoding").orElse(null))) {
+      return response.body();
+    }
+    try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(response.body()))) {
+      return in.readAllBytes();
+    }
+  }
+}
@@ -0,0 +1,122 @@
+package ch.uzh.ifi.hase.soprafs24.controller;
+
+import ch.uzh.ifi.hase.soprafs24.constant.UserStatus;
+import ch.uzh.ifi.hase.soprafs24.entity.User;
+import ch.uzh.ifi.hase.soprafs24.repository.UserRepository;
+import ch.uzh.ifi.hase.soprafs24.service.AdminAllowlist;
+import ch.uzh.ifi.hase.soprafs24.service.SessionStore;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.LocalDate;
+import java.util.UUID;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+public class UserBatchEditIntegrationTest {
+
+  @Autowired
+  private MockMvc mockMvc;
+
+  @Autowired
+  private UserRepository userRepository;
+
+  @Autowired
+  private SessionStore sessionStore;
+
+  // the id of the admin is only known once it is saved
+  @MockBean
+  private AdminAllowlist adminAllowlist;
+
+  private String adminToken;
+  private User first;
+  private User second;
+  private User third;
+
+  @BeforeEach
+  public void setup() {
+    userRepository.deleteAll();
+    User admin = save("admin");
+    adminToken = sessionStore.create(admin.getId()).getToken();
+    Mockito.when(adminAllowlist.isAdmin(Mockito.any()))
+        .thenAnswer(invocation -> admin.getId().equals(((User) invocation.getArgument(0)).getId()));
+    first = save("first");
+    second = save("second");
+    third = save("third");
+  }
+
+  @Test
+  void PUT_users_batch_perItemResults() throws Exception {
+    String edits = "["
+        + edit(first.getId(), "renamed", "1990-05-17") + ","
+        + edit(second.getId(), "third", null) + ","
+        + edit(99999L, "unknown", null) + ","
+        + edit(third.getId(), " ", null)
+        + "]";
+
+    mockMvc.perform(put("/users/batch")
+        .header("Authorization", adminToken)
+        .contentType(MediaType.APPLICATION_JSON)
+        .content(edits))
+    .andExpect(status().isOk())
+    .andExpect(jsonPath("$[0].status", is(200)))
+    .andExpect(jsonPath("$[1].status", is(409)))
+    .andExpect(jsonPath("$[2].status", is(404)))
+    .andExpect(jsonPath("$[3].status", is(400)));
+
+    User renamed = userRepository.findById(first.getId()).orElseThrow();
+    assertEquals("renamed", renamed.getUsername());
+    assertEquals(LocalDate.of(1990, 5, 17), renamed.getBirthday());
+    assertEquals("second", userRepository.findById(second.getId()).orElseThrow().getUsername());
+  }
+
+  @Test
+  void PUT_users_batch_sameNewUsernameTwice_secondConflicts() throws Exception {
+    mockMvc.perform(put("/users/batch")
+        .header("Authorization", adminToken)
+        .contentType(MediaType.APPLICATION_JSON)
+        .content("[" + edit(first.getId(), "taken", null) + "," + edit(second.getId(), "taken", null) + "]"))
+    .andExpect(status().isOk())
+    .andExpect(jsonPath("$[0].status", is(200)))
+    .andExpect(jsonPath("$[1].status", is(409)));
+  }
+
+  @Test
+  void PUT_users_batch_notAdmin_403() throws Exception {
+    String token = sessionStore.create(first.getId()).getToken();
+
+    mockMvc.perform(put("/users/batch")
+        .header("Authorization", token)
+        .contentType(MediaType.APPLICATION_JSON)
+        .content("[" + edit(second.getId(), "renamed", null) + "]"))
+    .andExpect(status().isForbidden());
+  }
+
+  private User save(String username) {
+    User user = new User();
+    user.setUsername(username);
+    user.setPassword("password");
+    user.setToken(UUID.randomUUID().toString());
+    user.setStatus(UserStatus.ONLINE);
+    user.setDate(LocalDate.now());
+    return userRepository.saveAndFlush(user);
+  }
+
+  private static String edit(Long id, String username, String birthday) {
+    return "{\"id\":" + id + ",\"user\":{\"username\":\"" + username + "\""
+        + (birthday == null ? "" : ",\"birthday\":\"" + birthday + "\"") + "}}";
+  }
+}
@@ -5,9 +5,13 @@ import ch.uzh.ifi.hase.soprafs24.entity.User;
 import ch.uzh.ifi.hase.soprafs24.repository.UserRepository;
 import ch.uzh.ifi.hase.soprafs24.rest.dto.UserPostDTO;
 import ch.uzh.ifi.hase.soprafs24.rest.dto.UserPutDTO;
+import ch.uzh.ifi.hase.soprafs24.service.SessionStore;
 import ch.uzh.ifi.hase.soprafs24.service.UserService;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -16,6 +20,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
@@ -23,15 +28,19 @@ import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilde
 import org.springframework.web.server.ResponseStatusException;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
 
 import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.BDDMockito.given;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
@@ -48,6 +57,9 @@ public class UserControllerTest {
   @Autowired
   private UserRepository userRepository;
 
+  @Autowired
+  private SessionStore sessionStore;
+
   private static String ADMIN_TOKEN;
   private static User testUser;
 
@@ -69,7 +81,7 @@ public class UserControllerTest {
   
       // Save the user
       User createdUser = userRepository.saveAndFlush(user); // Force immediate commit
-      ADMIN_TOKEN = createdUser.getToken(); // Store token for authentication
+      ADMIN_TOKEN = sessionStore.create(createdUser.getId(), createdUser.getToken()).getToken(); // Open a session for authentication
       testUser = createdUser;
   
       System.out.println("Setup completed!");
@@ -128,7 +140,7 @@ public class UserControllerTest {
       
       // Verify the token
       System.out.println("Sent Token: " + ADMIN_TOKEN);   
-      System.out.println("User: " + userRepository.findByToken(ADMIN_TOKEN.trim().replace("\"", "")));
+      System.out.println("User: " + userService.getUserByToken(ADMIN_TOKEN.trim().replace("\"", "")));
     
       // Use the stored test user for GET request
       mockMvc.perform(get("/users/{id}", testUser.getId())
@@ -151,6 +163,28 @@ public class UserControllerTest {
           .andExpect(status().isNoContent());
   }
 
+  @Test
+  void PUT_user_id_thenGET_returnsEditedProfile() throws Exception {
+      // read once, so the profile is cached
+      mockMvc.perform(get("/users/{id}", testUser.getId())
+              .header("Authorization", ADMIN_TOKEN))
+          .andExpect(status().isOk())
+          .andExpect(jsonPath("$.username", is("admin")));
+
+      UserPutDTO updatedDTO = new UserPutDTO();
+      updatedDTO.setUsername("updatedUsername");
+      mockMvc.perform(put("/users/" + testUser.getId())
+              .contentType(MediaType.APPLICATION_JSON)
+              .content(asJsonString(updatedDTO))
+              .header("Authorization", ADMIN_TOKEN))
+          .andExpect(status().isNoContent());
+
+      mockMvc.perform(get("/users/{id}", testUser.getId())
+              .header("Authorization", ADMIN_TOKEN))
+          .andExpect(status().isOk())
+          .andExpect(jsonPath("$.username", is("updatedUsername")));
+  }
+
   @Test
   void PUT_user_id_404() throws Exception {
       // Test case where user doesn't exist
@@ -173,6 +207,14 @@ public class UserControllerTest {
   }
 
 
+  @Test
+  void GET_users_missingToken_401() throws Exception {
+    mockMvc.perform(get("/users")
+        .contentType(MediaType.APPLICATION_JSON))
+    .andExpect(status().isUnauthorized())
+    .andExpect(jsonPath("$.message", is("Invalid or missing token")));
+  }
+
   @Test
   public void createUser_validInput_userCreated() throws Exception {
       // given
@@ -215,6 +257,148 @@ public class UserControllerTest {
           .andExpect(jsonPath("$[1].status", is(user.getStatus().toString()))) // Verify the status
           .andExpect(jsonPath("$[1].date", is(user.getDate().toString())));
   }
+
+  @Test
+  void GET_users_fields_returnsOnlySelectedFields() throws Exception {
+    mockMvc.perform(get("/users")
+        .param("fields", "username,id")
+        .header("Authorization", ADMIN_TOKEN))
+    .andExpect(status().isOk())
+    .andExpect(jsonPath("$", hasSize(1)))
+    .andExpect(jsonPath("$[0].username", is("admin")))
+    .andExpect(jsonPath("$[0].id", is(testUser.getId().intValue())))
+    .andExpect(jsonPath("$[0].token").doesNotExist())
+    .andExpect(jsonPath("$[0].date").doesNotExist());
+  }
+
+  @Test
+  void GET_user_id_fields_returnsOnlySelectedFields() throws Exception {
+    mockMvc.perform(get("/users/{id}", testUser.getId())
+        .param("fields", "status,date")
+        .header("Authorization", ADMIN_TOKEN))
+    .andExpect(status().isOk())
+    .andExpect(jsonPath("$.status", is("ONLINE")))
+    .andExpect(jsonPath("$.date", is(testUser.getDate().toString())))
+    .andExpect(jsonPath("$.username").doesNotExist());
+  }
+
+  @Test
+  void GET_users_unknownField_400() throws Exception {
+    mockMvc.perform(get("/users")
+        .param("fields", "id,password")
+        .header("Authorization", ADMIN_TOKEN))
+    .andExpect(status().isBadRequest());
+  }
+
+  @Test
+  void POST_login_repeatedFailures_429() throws Exception {
+    UserPostDTO wrongPassword = new UserPostDTO();
+    wrongPassword.setUsername("guessedUsername");
+    wrongPassword.setPassword("wrong");
+
+    for (int i = 0; i < 5; i++) {
+      mockMvc.perform(post("/login/auth")
+          .with(request -> { request.setRemoteAddr("10.0.0.42"); return request; })
+          .contentType(MediaType.APPLICATION_JSON)
+          .content(asJsonString(wrongPassword)))
+      .andExpect(status().isNotFound());
+    }
+
+    mockMvc.perform(post("/login/auth")
+        .with(request -> { request.setRemoteAddr("10.0.0.42"); return request; })
+        .contentType(MediaType.APPLICATION_JSON)
+        .content(asJsonString(wrongPassword)))
+    .andExpect(status().isTooManyRequests())
+    .andExpect(header().exists("Retry-After"));
+  }
+
+  @Test
+  void GET_users_online_listsCreatedUser() throws Exception {
+    UserPostDTO userPostDTO = new UserPostDTO();
+    userPostDTO.setUsername("onlineUser");
+    userPostDTO.setPassword("testPassword");
+    mockMvc.perform(post("/users")
+        .contentType(MediaType.APPLICATION_JSON)
+        .content(asJsonString(userPostDTO)))
+    .andExpect(status().isCreated());
+    Long id = userRepository.findByUsername("onlineUser").getId();
+
+    mockMvc.perform(get("/users/online")
+        .param("after", Long.toString(id - 1))
+        .param("limit", "1")
+        .header("Authorization", ADMIN_TOKEN))
+    .andExpect(status().isOk())
+    .andExpect(jsonPath("$.ids[0]", is(id.intValue())));
+
+    mockMvc.perform(post("/users/online/intersection")
+        .header("Authorization", ADMIN_TOKEN)
+        .contentType(MediaType.APPLICATION_JSON)
+        .content(asJsonString(List.of(id, 99999L))))
+    .andExpect(status().isOk())
+    .andExpect(jsonPath("$", hasSize(1)))
+    .andExpect(jsonPath("$[0]", is(id.intValue())));
+  }
+
+  @Test
+  void POST_users_online_intersection_tooManyIds_413() throws Exception {
+    List<Long> ids = new ArrayList<>();
+    for (long id = 1; id <= 10_001; id++) {
+      ids.add(id);
+    }
+
+    mockMvc.perform(post("/users/online/intersection")
+        .header("Authorization", ADMIN_TOKEN)
+        .contentType(MediaType.APPLICATION_JSON)
+        .content(asJsonString(ids)))
+    .andExpect(status().isPayloadTooLarge());
+  }
+
+  @Test
+  void GET_user_id_cbor_200() throws Exception {
+      byte[] body = mockMvc.perform(get("/users/{id}", testUser.getId())
+              .accept(MediaType.APPLICATION_CBOR)
+              .header("Authorization", ADMIN_TOKEN))
+          .andExpect(status().isOk())
+          .andExpect(content().contentType(MediaType.APPLICATION_CBOR))
+          .andExpect(header().string(HttpHeaders.VARY, HttpHeaders.ACCEPT))
+          .andReturn().getResponse().getContentAsByteArray();
+
+      JsonNode user = new ObjectMapper(new CBORFactory()).readTree(body);
+      assertEquals(testUser.getUsername(), user.get("username").asText());
+      assertEquals(testUser.getDate().toString(), user.get("date").asText());
+  }
+
+  @Test
+  void GET_users_cbor_200() throws Exception {
+      byte[] body = mockMvc.perform(get("/users")
+              .accept(MediaType.APPLICATION_CBOR)
+              .header("Authorization", ADMIN_TOKEN))
+          .andExpect(status().isOk())
+          .andExpect(content().contentType(MediaType.APPLICATION_CBOR))
+          .andReturn().getResponse().getContentAsByteArray();
+
+      JsonNode users = new ObjectMapper(new CBORFactory()).readTree(body);
+      assertEquals(testUser.getUsername(), users.get(0).get("username").asText());
+  }
+
+  @Test
+  void POST_user_cborInSmileOut_201() throws Exception {
+      UserPostDTO userPostDTO = new UserPostDTO();
+      userPostDTO.setUsername("binaryUser");
+      userPostDTO.setPassword("testPassword");
+      MediaType smile = new MediaType("application", "x-jackson-smile");
+
+      byte[] body = mockMvc.perform(post("/users")
+              .contentType(MediaType.APPLICATION_CBOR)
+              .accept(smile)
+              .content(new ObjectMapper(new CBORFactory()).writeValueAsBytes(userPostDTO)))
+          .andExpect(status().isCreated())
+          .andExpect(content().contentType(smile))
+          .andReturn().getResponse().getContentAsByteArray();
+
+      assertEquals("binaryUser", new ObjectMapper(new SmileFactory()).readTree(body).get("username").asText());
+  }
+
   /**
    * Helper Method to convert userPostDTO into a JSON string such that the input
    * can be processed
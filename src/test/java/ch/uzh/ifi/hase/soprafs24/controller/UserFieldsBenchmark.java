@@ -0,0 +1,70 @@
+package ch.uzh.ifi.hase.soprafs24.controller;
+
+import ch.uzh.ifi.hase.soprafs24.constant.UserStatus;
+import ch.uzh.ifi.hase.soprafs24.entity.User;
+import ch.uzh.ifi.hase.soprafs24.repository.UserRepository;
+import ch.uzh.ifi.hase.soprafs24.service.SessionStore;
+import ch.uzh.ifi.hase.soprafs24.utlis.BenchmarkUtils;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+/**
+ * Compares response size and latency of GET /users with all fields and with
+ * fields=id,username, for a large user list. Run with ./gradlew benchmark
+ * [-Dbenchmark.users=N].
+ */
+@Tag("benchmark")
+@SpringBootTest(properties = "users.rate-limit.enabled=false")
+@AutoConfigureMockMvc
+public class UserFieldsBenchmark {
+
+  private static final int USERS = Integer.getInteger("benchmark.users", 10_000);
+
+  @Autowired
+  private MockMvc mockMvc;
+
+  @Autowired
+  private UserRepository userRepository;
+
+  @Autowired
+  private SessionStore sessionStore;
+
+  @Test
+  public void getUsers_allVsSelectedFields() throws Exception {
+    userRepository.deleteAll();
+    List<User> users = new ArrayList<>();
+    for (int i = 0; i < USERS; i++) {
+      User user = new User();
+      user.setUsername("user" + i);
+      user.setPassword("password");
+      user.setToken(UUID.randomUUID().toString());
+      user.setStatus(i % 2 == 0 ? UserStatus.ONLINE : UserStatus.OFFLINE);
+      user.setDate(LocalDate.of(2025, 1, 1).plusDays(i % 365));
+      user.setBirthday(i % 3 == 0 ? null : LocalDate.of(1990 + i % 20, 1 + i % 12, 1 + i % 28));
+      users.add(user);
+    }
+    List<User> saved = userRepository.saveAll(users);
+    String token = sessionStore.create(saved.get(0).getId()).getToken();
+
+    run("all fields", get("/users").header("Authorization", token));
+    run("fields=id,username", get("/users").param("fields", "id,username").header("Authorization", token));
+  }
+
+  private void run(String name, MockHttpServletRequestBuilder request) throws Exception {
+    int bytes = mockMvc.perform(request).andReturn().getResponse().getContentAsByteArray().length;
+    BenchmarkUtils.measure(name + " users=" + USERS, 20, 50, () -> mockMvc.perform(request));
+    System.out.printf("%-40s %12d B/response%n", name, bytes);
+  }
+}
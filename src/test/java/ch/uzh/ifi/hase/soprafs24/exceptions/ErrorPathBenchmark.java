@@ -0,0 +1,80 @@
+package ch.uzh.ifi.hase.soprafs24.exceptions;
+
+import ch.uzh.ifi.hase.soprafs24.utlis.BenchmarkUtils;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Cost per failed request before (ResponseStatusException with a stack trace,
+ * resolved through sendError and the /error dispatch) and after (stackless
+ * DomainException answered by GlobalExceptionAdvice), measured over real HTTP
+ * against the embedded server. The exception creation alone is measured at a
+ * stack depth comparable to a Tomcat + Spring MVC request.
+ */
+@Tag("benchmark")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@Import(ErrorPathBenchmark.FailingController.class)
+public class ErrorPathBenchmark {
+
+  private static final int STACK_DEPTH = 120;
+  private static final int REQUESTS = Integer.getInteger("benchmark.requests", 5_000);
+
+  @LocalServerPort
+  private int port;
+
+  @Test
+  public void exceptionCreation_withVsWithoutStackTrace() throws Exception {
+    BenchmarkUtils.measure("ResponseStatusException (depth " + STACK_DEPTH + ")", 100_000, 100_000,
+        () -> atDepth(STACK_DEPTH, () -> new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Password is incorrect")));
+    BenchmarkUtils.measure("UnauthorizedException (depth " + STACK_DEPTH + ")", 100_000, 100_000,
+        () -> atDepth(STACK_DEPTH, () -> new UnauthorizedException("Password is incorrect")));
+  }
+
+  @Test
+  public void failedRequest_beforeVsAfter() throws Exception {
+    HttpClient client = HttpClient.newHttpClient();
+    HttpRequest before = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/benchmark/errors/before")).build();
+    HttpRequest after = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/benchmark/errors/after")).build();
+
+    BenchmarkUtils.measure("401 via ResponseStatusException", REQUESTS, REQUESTS, () -> send(client, before));
+    BenchmarkUtils.measure("401 via DomainException", REQUESTS, REQUESTS, () -> send(client, after));
+  }
+
+  private static void send(HttpClient client, HttpRequest request) throws Exception {
+    HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+    assertEquals(401, response.statusCode());
+  }
+
+  private static Object atDepth(int depth, Supplier<Object> factory) {
+    return depth == 0 ? factory.get() : atDepth(depth - 1, factory);
+  }
+
+  @RestController
+  static class FailingController {
+
+    @GetMapping("/benchmark/errors/before")
+    public void before() {
+      throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Password is incorrect");
+    }
+
+    @GetMapping("/benchmark/errors/after")
+    public void after() {
+      throw new UnauthorizedException("Password is incorrect");
+    }
+  }
+}
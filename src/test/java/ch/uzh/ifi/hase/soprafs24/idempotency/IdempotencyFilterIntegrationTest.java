@@ -0,0 +1,128 @@
+package ch.uzh.ifi.hase.soprafs24.idempotency;
+
+import ch.uzh.ifi.hase.soprafs24.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+public class IdempotencyFilterIntegrationTest {
+
+  private static final String BODY = "{\"username\": \"idempotent\", \"password\": \"password\"}";
+
+  @Autowired
+  private MockMvc mockMvc;
+
+  @Autowired
+  private UserRepository userRepository;
+
+  @BeforeEach
+  public void setup() {
+    userRepository.deleteAll();
+  }
+
+  @Test
+  public void createUser_retriedWithSameKey_replaysFirstResponse() throws Exception {
+    String key = UUID.randomUUID().toString();
+
+    String first = mockMvc.perform(post("/users").header(IdempotencyFilter.HEADER, key)
+            .contentType(MediaType.APPLICATION_JSON).content(BODY))
+        .andExpect(status().isCreated())
+        .andExpect(header().doesNotExist(IdempotencyFilter.REPLAYED_HEADER))
+        .andReturn().getResponse().getContentAsString();
+
+    String retry = mockMvc.perform(post("/users").header(IdempotencyFilter.HEADER, key)
+            .contentType(MediaType.APPLICATION_JSON).content(BODY))
+        .andExpect(status().isCreated())
+        .andExpect(header().string(IdempotencyFilter.REPLAYED_HEADER, "true"))
+        .andReturn().getResponse().getContentAsString();
+
+    assertEquals(first, retry);
+    assertEquals(1, userRepository.count());
+  }
+
+  @Test
+  public void createUser_retriedWithoutKey_conflict() throws Exception {
+    mockMvc.perform(post("/users").contentType(MediaType.APPLICATION_JSON).content(BODY))
+        .andExpect(status().isCreated());
+    mockMvc.perform(post("/users").contentType(MediaType.APPLICATION_JSON).content(BODY))
+        .andExpect(status().isConflict());
+  }
+
+  @Test
+  public void createUser_bodyAboveLimit_payloadTooLarge() throws Exception {
+    String body = "{\"username\": \"" + "x".repeat(70_000) + "\", \"password\": \"password\"}";
+
+    mockMvc.perform(post("/users").header(IdempotencyFilter.HEADER, UUID.randomUUID().toString())
+            .contentType(MediaType.APPLICATION_JSON).content(body))
+        .andExpect(status().isPayloadTooLarge())
+        .andExpect(jsonPath("$.status").value(413));
+    assertEquals(0, userRepository.count());
+  }
+
+  @Test
+  public void createUser_sameKeyDifferentBody_unprocessable() throws Exception {
+    String key = UUID.randomUUID().toString();
+    mockMvc.perform(post("/users").header(IdempotencyFilter.HEADER, key)
+            .contentType(MediaType.APPLICATION_JSON).content(BODY))
+        .andExpect(status().isCreated());
+
+    mockMvc.perform(post("/users").header(IdempotencyFilter.HEADER, key)
+            .contentType(MediaType.APPLICATION_JSON)
+            .content("{\"username\": \"someoneElse\", \"password\": \"password\"}"))
+        .andExpect(status().isUnprocessableEntity())
+        .andExpect(jsonPath("$.status").value(422))
+        .andExpect(jsonPath("$.message").value(IdempotencyFilter.HEADER + " was already used for a different request"));
+  }
+
+  @Test
+  public void createUser_sameKeyFromOtherClient_notReplayed() throws Exception {
+    String key = UUID.randomUUID().toString();
+    mockMvc.perform(post("/users").header(IdempotencyFilter.HEADER, key)
+            .contentType(MediaType.APPLICATION_JSON).content(BODY))
+        .andExpect(status().isCreated());
+
+    mockMvc.perform(post("/users").header(IdempotencyFilter.HEADER, key)
+            .with(request -> {
+              request.setRemoteAddr("10.0.0.2");
+              return request;
+            })
+            .contentType(MediaType.APPLICATION_JSON)
+            .content("{\"username\": \"someoneElse\", \"password\": \"password\"}"))
+        .andExpect(status().isCreated())
+        .andExpect(header().doesNotExist(IdempotencyFilter.REPLAYED_HEADER));
+    assertEquals(2, userRepository.count());
+  }
+
+  @Test
+  public void login_retriedWithSameKey_sameToken() throws Exception {
+    mockMvc.perform(post("/users").contentType(MediaType.APPLICATION_JSON).content(BODY))
+        .andExpect(status().isCreated());
+    String key = UUID.randomUUID().toString();
+
+    String first = mockMvc.perform(post("/login/auth").header(IdempotencyFilter.HEADER, key)
+            .contentType(MediaType.APPLICATION_JSON).content(BODY))
+        .andExpect(status().isOk())
+        .andReturn().getResponse().getContentAsString();
+    String retry = mockMvc.perform(post("/login/auth").header(IdempotencyFilter.HEADER, key)
+            .contentType(MediaType.APPLICATION_JSON).content(BODY))
+        .andExpect(status().isOk())
+        .andExpect(header().string(IdempotencyFilter.REPLAYED_HEADER, "true"))
+        .andReturn().getResponse().getContentAsString();
+
+    assertEquals(first, retry);
+  }
+}
@@ -0,0 +1,98 @@
+package ch.uzh.ifi.hase.soprafs24.idempotency;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class IdempotencyStoreTest {
+
+  private static final byte[] FINGERPRINT = { 1, 2, 3 };
+
+  private MutableClock clock;
+  private IdempotencyStore store;
+
+  @BeforeEach
+  public void setup() {
+    clock = new MutableClock();
+    store = new IdempotencyStore(1000, 2, clock);
+  }
+
+  @Test
+  public void claim_sameKeyTwice_secondGetsFirstResponse() throws Exception {
+    Object first = new Object();
+    IdempotencyStore.Claim claim = store.claim("key", FINGERPRINT, first);
+    assertTrue(claim.isOwnedBy(first));
+
+    IdempotencyStore.Claim duplicate = store.claim("key", FINGERPRINT, new Object());
+    assertSame(claim, duplicate);
+    assertFalse(duplicate.getResponse().isDone());
+
+    store.complete(claim, new IdempotencyStore.StoredResponse(201, "application/json", new byte[] { 42 }));
+    assertEquals(201, duplicate.getResponse().get().getStatus());
+  }
+
+  @Test
+  public void complete_withoutResponse_releasesKey() {
+    IdempotencyStore.Claim claim = store.claim("key", FINGERPRINT, "first");
+    store.complete(claim, null);
+
+    assertTrue(store.claim("key", FINGERPRINT, "second").isOwnedBy("second"));
+  }
+
+  @Test
+  public void claim_afterTtl_newOwner() {
+    IdempotencyStore.Claim claim = store.claim("key", FINGERPRINT, "first");
+    store.complete(claim, new IdempotencyStore.StoredResponse(200, null, new byte[0]));
+
+    clock.advance(Duration.ofMillis(1000));
+
+    assertTrue(store.claim("key", FINGERPRINT, "second").isOwnedBy("second"));
+  }
+
+  @Test
+  public void claim_beyondMaxEntries_evictsOldest() {
+    store.claim("a", FINGERPRINT, "a");
+    store.claim("b", FINGERPRINT, "b");
+    store.claim("c", FINGERPRINT, "c");
+
+    assertEquals(2, store.size());
+    assertTrue(store.claim("a", FINGERPRINT, "again").isOwnedBy("again"));
+  }
+
+  @Test
+  public void matches_differentBody_false() {
+    IdempotencyStore.Claim claim = store.claim("key", FINGERPRINT, "first");
+
+    assertFalse(claim.matches(new byte[] { 9 }));
+  }
+
+  private static final class MutableClock extends Clock {
+
+    private Instant now = Instant.parse("2025-03-01T10:00:00Z");
+
+    void advance(Duration duration) {
+      now = now.plus(duration);
+    }
+
+    @Override
+    public ZoneOffset getZone() {
+      return ZoneOffset.UTC;
+    }
+
+    @Override
+    public Clock withZone(java.time.ZoneId zone) {
+      return this;
+    }
+
+    @Override
+    public Instant instant() {
+      return now;
+    }
+  }
+}
@@ -0,0 +1,96 @@
+package ch.uzh.ifi.hase.soprafs24.idempotency;
+
+import ch.uzh.ifi.hase.soprafs24.ratelimit.RateLimiter;
+import ch.uzh.ifi.hase.soprafs24.repository.UserRepository;
+import ch.uzh.ifi.hase.soprafs24.service.LoginThrottle;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * A request answered with a transient status (a rate limited POST /users or a
+ * throttled login, both 429) has to run again when it is retried with the
+ * same Idempotency-Key, not get the stored 429.
+ */
+@SpringBootTest(properties = {
+    "users.rate-limit.endpoints=POST /users=1:0.001",
+    "users.rate-limit.ip-factor=1",
+    "users.login-throttle.max-username-failures=1"
+})
+@AutoConfigureMockMvc
+public class IdempotencyTransientStatusIntegrationTest {
+
+  @Autowired
+  private MockMvc mockMvc;
+
+  @Autowired
+  private UserRepository userRepository;
+
+  @Autowired
+  private RateLimiter rateLimiter;
+
+  @Autowired
+  private LoginThrottle loginThrottle;
+
+  @BeforeEach
+  public void setup() {
+    userRepository.deleteAll();
+    rateLimiter.reset();
+  }
+
+  @Test
+  public void createUser_rateLimitedThenRetriedWithSameKey_runsAgain() throws Exception {
+    mockMvc.perform(post("/users").contentType(MediaType.APPLICATION_JSON)
+            .content("{\"username\": \"first\", \"password\": \"password\"}"))
+        .andExpect(status().isCreated());
+    String key = UUID.randomUUID().toString();
+    String body = "{\"username\": \"second\", \"password\": \"password\"}";
+
+    mockMvc.perform(post("/users").header(IdempotencyFilter.HEADER, key)
+            .contentType(MediaType.APPLICATION_JSON).content(body))
+        .andExpect(status().isTooManyRequests())
+        .andExpect(header().exists("Retry-After"));
+
+    rateLimiter.reset();
+    mockMvc.perform(post("/users").header(IdempotencyFilter.HEADER, key)
+            .contentType(MediaType.APPLICATION_JSON).content(body))
+        .andExpect(status().isCreated())
+        .andExpect(header().doesNotExist(IdempotencyFilter.REPLAYED_HEADER))
+        .andExpect(header().exists("X-RateLimit-Limit"));
+    assertEquals(2, userRepository.count());
+  }
+
+  @Test
+  public void login_throttledThenRetriedWithSameKey_runsAgain() throws Exception {
+    mockMvc.perform(post("/users").contentType(MediaType.APPLICATION_JSON)
+            .content("{\"username\": \"throttled\", \"password\": \"password\"}"))
+        .andExpect(status().isCreated());
+    mockMvc.perform(post("/login/auth").contentType(MediaType.APPLICATION_JSON)
+            .content("{\"username\": \"throttled\", \"password\": \"wrong\"}"))
+        .andExpect(status().isUnauthorized());
+    String key = UUID.randomUUID().toString();
+    String body = "{\"username\": \"throttled\", \"password\": \"password\"}";
+
+    mockMvc.perform(post("/login/auth").header(IdempotencyFilter.HEADER, key)
+            .contentType(MediaType.APPLICATION_JSON).content(body))
+        .andExpect(status().isTooManyRequests())
+        .andExpect(header().exists("Retry-After"));
+
+    loginThrottle.recordSuccess("throttled");
+    mockMvc.perform(post("/login/auth").header(IdempotencyFilter.HEADER, key)
+            .contentType(MediaType.APPLICATION_JSON).content(body))
+        .andExpect(status().isOk())
+        .andExpect(header().doesNotExist(IdempotencyFilter.REPLAYED_HEADER));
+  }
+}
@@ -0,0 +1,94 @@
+package ch.uzh.ifi.hase.soprafs24.ratelimit;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RateLimiterTest {
+
+  private static final long NOW = TimeUnit.HOURS.toNanos(1);
+  private static final String USERS = "GET /users";
+  private static final String USER = "GET /users/{id}";
+
+  private final RateLimiter rateLimiter = new RateLimiter(true, "10:5", "GET /users=3:1", 2, 1000);
+
+  @Test
+  public void acquire_endpointLimit_rejectsBeyondCapacityUntilRefilled() {
+    for (int i = 2; i >= 0; i--) {
+      RateLimiter.Decision decision = rateLimiter.acquire(USERS, "token", "10.0.0.1", NOW);
+      assertTrue(decision.isAllowed());
+      assertEquals(3, decision.getLimit());
+      assertEquals(i, decision.getRemaining());
+    }
+
+    RateLimiter.Decision rejected = rateLimiter.acquire(USERS, "token", "10.0.0.1", NOW);
+    assertFalse(rejected.isAllowed());
+    assertEquals(1, rejected.getRetryAfterSeconds());
+    assertEquals(3, rejected.getResetSeconds());
+
+    assertTrue(rateLimiter.acquire(USERS, "token", "10.0.0.1", NOW + TimeUnit.SECONDS.toNanos(1)).isAllowed());
+    assertFalse(rateLimiter.acquire(USERS, "token", "10.0.0.1", NOW + TimeUnit.SECONDS.toNanos(1)).isAllowed());
+  }
+
+  @Test
+  public void acquire_otherEndpointOrToken_ownBucket() {
+    for (int i = 0; i < 3; i++) {
+      rateLimiter.acquire(USERS, "token", "10.0.0.1", NOW);
+    }
+
+    assertTrue(rateLimiter.acquire(USERS, "otherToken", "10.0.0.1", NOW).isAllowed());
+    RateLimiter.Decision defaultLimit = rateLimiter.acquire(USER, "token", "10.0.0.1", NOW);
+    assertTrue(defaultLimit.isAllowed());
+    assertEquals(10, defaultLimit.getLimit());
+  }
+
+  @Test
+  public void acquire_changingTokens_limitedByAddress() {
+    // the address gets ip-factor (2) times the capacity of a token
+    for (int i = 0; i < 6; i++) {
+      assertTrue(rateLimiter.acquire(USERS, "token" + i, "10.0.0.1", NOW).isAllowed());
+    }
+
+    assertFalse(rateLimiter.acquire(USERS, "token6", "10.0.0.1", NOW).isAllowed());
+    assertFalse(rateLimiter.acquire(USERS, null, "10.0.0.1", NOW).isAllowed());
+    assertTrue(rateLimiter.acquire(USERS, "token6", "10.0.0.2", NOW).isAllowed());
+  }
+
+  @Test
+  public void reset_dropsAllBuckets() {
+    for (int i = 0; i < 4; i++) {
+      rateLimiter.acquire(USERS, "token", "10.0.0.1", NOW);
+    }
+
+    rateLimiter.reset();
+
+    assertEquals(0, rateLimiter.size());
+    assertTrue(rateLimiter.acquire(USERS, "token", "10.0.0.1", NOW).isAllowed());
+  }
+
+  @Test
+  public void resetKeys_dropsOnlyNewBuckets() {
+    for (int i = 0; i < 3; i++) {
+      rateLimiter.acquire(USERS, "token", "10.0.0.1", NOW);
+    }
+    Set<String> existing = rateLimiter.keys();
+    rateLimiter.acquire(USERS, "warmup", "10.0.0.2", NOW);
+
+    rateLimiter.reset(rateLimiter.keys().stream().filter(key -> !existing.contains(key)).collect(Collectors.toList()));
+
+    assertEquals(existing, rateLimiter.keys());
+    assertFalse(rateLimiter.acquire(USERS, "token", "10.0.0.1", NOW).isAllowed());
+  }
+
+  @Test
+  public void parseEndpoints_patternsWithLimits() {
+    assertEquals(2, RateLimit.parseEndpoints("GET /users=20:10, PUT /users/{id}=5:0.5,").size());
+    assertEquals(0.5, RateLimit.parseEndpoints("PUT /users/{id}=5:0.5").get("PUT /users/{id}").getRefillPerSecond());
+    assertThrows(IllegalArgumentException.class, () -> RateLimit.parseEndpoints("GET /users"));
+    assertThrows(IllegalArgumentException.class, () -> RateLimit.parse("0:1"));
+  }
+}
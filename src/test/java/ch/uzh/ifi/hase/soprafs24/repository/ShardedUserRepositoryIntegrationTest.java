@@ -0,0 +1,154 @@
+package ch.uzh.ifi.hase.soprafs24.repository;
+
+import ch.uzh.ifi.hase.soprafs24.config.ShardRoutingDataSource;
+import ch.uzh.ifi.hase.soprafs24.entity.User;
+import ch.uzh.ifi.hase.soprafs24.exceptions.UsernameConflictException;
+import ch.uzh.ifi.hase.soprafs24.rest.dto.UserPutDTO;
+import ch.uzh.ifi.hase.soprafs24.service.UserService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.web.WebAppConfiguration;
+
+import javax.persistence.EntityNotFoundException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the UserService on three local H2 databases as shards.
+ *
+ * @see ShardedUserRepository
+ */
+@WebAppConfiguration
+@SpringBootTest(properties = "users.sharding.urls="
+    + "jdbc:h2:mem:shardTest0,jdbc:h2:mem:shardTest1,jdbc:h2:mem:shardTest2")
+public class ShardedUserRepositoryIntegrationTest {
+
+  private static final int SHARDS = 3;
+
+  @Autowired
+  private ShardRoutingDataSource shardRoutingDataSource;
+
+  @Qualifier("userRepository")
+  @Autowired
+  private UserRepository userRepository;
+
+  @Autowired
+  private UserService userService;
+
+  @BeforeEach
+  public void setup() {
+    userRepository.deleteAll();
+  }
+
+  @Test
+  public void createUser_manyUsers_spreadOverShardsById() {
+    List<User> created = new ArrayList<>();
+    for (int i = 0; i < 30; i++) {
+      created.add(userService.createUser(newUser("user" + i)));
+    }
+
+    int total = 0;
+    for (int shard = 0; shard < SHARDS; shard++) {
+      JdbcTemplate jdbc = new JdbcTemplate(shardRoutingDataSource.getShards().get(shard));
+      int onShard = jdbc.queryForObject("SELECT COUNT(*) FROM USER", Integer.class);
+      assertTrue(onShard > 0, "shard " + shard + " is empty");
+      total += onShard;
+    }
+    assertEquals(30, total);
+
+    for (User user : created) {
+      assertEquals(ShardedUserRepository.shardOf(user.getUsername(), SHARDS),
+          ShardedUserRepository.shardOf(user.getId()));
+      assertEquals(user.getUsername(), userService.getUserById(user.getId()).getUsername());
+    }
+  }
+
+  @Test
+  public void getUsers_scatterGather_allUsersOrderedById() {
+    for (int i = 0; i < 10; i++) {
+      userService.createUser(newUser("user" + i));
+    }
+
+    List<User> users = userService.getUsers();
+
+    assertEquals(10, users.size());
+    for (int i = 1; i < users.size(); i++) {
+      assertTrue(users.get(i - 1).getId() < users.get(i).getId());
+    }
+    assertEquals(10L, userRepository.count());
+  }
+
+  @Test
+  public void findAll_sortAndPage_mergedAcrossShards() {
+    for (int i = 0; i < 10; i++) {
+      userService.createUser(newUser("user" + i));
+    }
+
+    List<User> byName = userRepository.findAll(Sort.by(Sort.Direction.DESC, "username"));
+    assertEquals("user9", byName.get(0).getUsername());
+    assertEquals("user0", byName.get(9).getUsername());
+
+    Page<User> page = userRepository.findAll(PageRequest.of(1, 4, Sort.by("username")));
+    assertEquals(10, page.getTotalElements());
+    assertEquals(List.of("user4", "user5", "user6", "user7"),
+        page.getContent().stream().map(User::getUsername).collect(Collectors.toList()));
+
+    User first = byName.get(0);
+    assertEquals("user9", userRepository.getOne(first.getId()).getUsername());
+    assertThrows(EntityNotFoundException.class, () -> userRepository.getOne(first.getId() + 1000));
+  }
+
+  @Test
+  public void createUser_duplicateUsername_throwsConflict() {
+    userService.createUser(newUser("taken"));
+
+    assertThrows(UsernameConflictException.class, () -> userService.createUser(newUser("taken")));
+  }
+
+  @Test
+  public void loginUser_byUsername_findsUserOnItsShard() {
+    User created = userService.createUser(newUser("loginUser"));
+
+    User loggedIn = userService.loginUser(newUser("loginUser"));
+
+    assertEquals(created.getId(), loggedIn.getId());
+  }
+
+  @Test
+  public void editUser_rename_movesClaim() {
+    User created = userService.createUser(newUser("before"));
+    userService.createUser(newUser("other"));
+
+    UserPutDTO rename = new UserPutDTO();
+    rename.setUsername("after");
+    userService.editUser(userService.getUserById(created.getId()), rename);
+
+    assertNull(userRepository.findByUsername("before"));
+    assertEquals(created.getId(), userRepository.findByUsername("after").getId());
+
+    // the old name is free again, the new one is taken
+    assertNotNull(userService.createUser(newUser("before")));
+    UserPutDTO clash = new UserPutDTO();
+    clash.setUsername("after");
+    User other = userRepository.findByUsername("other");
+    assertThrows(IllegalArgumentException.class, () -> userService.editUser(other, clash));
+  }
+
+  private static User newUser(String username) {
+    User user = new User();
+    user.setUsername(username);
+    user.setPassword("password");
+    return user;
+  }
+}
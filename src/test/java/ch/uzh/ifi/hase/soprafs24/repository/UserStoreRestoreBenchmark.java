@@ -0,0 +1,118 @@
+package ch.uzh.ifi.hase.soprafs24.repository;
+
+import ch.uzh.ifi.hase.soprafs24.Application;
+import ch.uzh.ifi.hase.soprafs24.constant.UserStatus;
+import ch.uzh.ifi.hase.soprafs24.entity.User;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import javax.sql.DataSource;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+/**
+ * Measures how long the persistent profile needs to serve a large user table
+ * again after a restart. Run with ./gradlew benchmark [-Dbenchmark.users=N].
+ */
+@Tag("benchmark")
+public class UserStoreRestoreBenchmark {
+
+  private static final int USERS = Integer.getInteger("benchmark.users", 1_000_000);
+  private static final int BATCH_SIZE = 10_000;
+
+  @TempDir
+  Path storage;
+
+  @Test
+  public void restore_persistentProfile() throws Exception {
+    // let Hibernate create the schema in an empty database
+    start().close();
+
+    long fillStart = System.nanoTime();
+    fill();
+    long filled = System.nanoTime();
+
+    // restart and time until the users are served again
+    ConfigurableApplicationContext context = start();
+    long booted = System.nanoTime();
+
+    UserRepository userRepository = context.getBean(UserRepository.class);
+    long count = userRepository.count();
+    long counted = System.nanoTime();
+
+    User user = userRepository.findByUsername("user" + (USERS / 2));
+    long found = System.nanoTime();
+
+    long scanned = scan(context.getBean(DataSource.class));
+    long scanEnd = System.nanoTime();
+    context.close();
+
+    assertEquals(USERS, count);
+    assertEquals(USERS, scanned);
+    assertNotNull(user);
+
+    System.out.printf("users=%d fill=%dms boot=%dms count=%dms findByUsername=%dms fullScan=%dms%n",
+        USERS, millis(fillStart, filled), millis(filled, booted), millis(booted, counted),
+        millis(counted, found), millis(found, scanEnd));
+  }
+
+  private ConfigurableApplicationContext start() {
+    return new SpringApplicationBuilder(Application.class)
+        .profiles("persistent")
+        .run("--users.storage.path=" + storage.toAbsolutePath(), "--server.port=0");
+  }
+
+  private void fill() throws Exception {
+    String url = "jdbc:h2:file:" + storage.toAbsolutePath() + "/users";
+    try (Connection connection = DriverManager.getConnection(url, "sa", "")) {
+      connection.setAutoCommit(false);
+      try (PreparedStatement insert = connection.prepareStatement(
+          "INSERT INTO USER (USERNAME, TOKEN, PASSWORD, STATUS, DATE) VALUES (?, ?, ?, ?, ?)")) {
+        java.sql.Date today = java.sql.Date.valueOf(LocalDate.now());
+        for (int i = 0; i < USERS; i++) {
+          insert.setString(1, "user" + i);
+          insert.setString(2, UUID.randomUUID().toString());
+          insert.setString(3, "password");
+          insert.setInt(4, UserStatus.OFFLINE.ordinal());
+          insert.setDate(5, today);
+          insert.addBatch();
+          if ((i + 1) % BATCH_SIZE == 0) {
+            insert.executeBatch();
+            connection.commit();
+          }
+        }
+        insert.executeBatch();
+        connection.commit();
+      }
+    }
+  }
+
+  private long scan(DataSource dataSource) throws Exception {
+    long rows = 0;
+    try (Connection connection = dataSource.getConnection();
+         Statement statement = connection.createStatement();
+         ResultSet resultSet = statement.executeQuery("SELECT ID, USERNAME, STATUS, DATE FROM USER")) {
+      while (resultSet.next()) {
+        rows++;
+      }
+    }
+    return rows;
+  }
+
+  private static long millis(long from, long to) {
+    return (to - from) / 1_000_000;
+  }
+}
@@ -0,0 +1,85 @@
+package ch.uzh.ifi.hase.soprafs24.rest.json;
+
+import ch.uzh.ifi.hase.soprafs24.constant.UserStatus;
+import ch.uzh.ifi.hase.soprafs24.rest.dto.UserGetDTO;
+import ch.uzh.ifi.hase.soprafs24.rest.dto.UserPostDTO;
+import ch.uzh.ifi.hase.soprafs24.rest.dto.UserPutDTO;
+import ch.uzh.ifi.hase.soprafs24.utlis.BenchmarkUtils;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Size, encode and decode cost of the user DTOs as JSON, CBOR and Smile,
+ * with the mappers configured like the HTTP message converters (same
+ * builder settings and UserGetDTOSerializer). Covers a GET /users sized
+ * list of UserGetDTO and single UserPostDTO and UserPutDTO bodies.
+ */
+@Tag("benchmark")
+public class BinaryFormatBenchmark {
+
+  private static final int LIST_SIZE = Integer.getInteger("benchmark.listSize", 1_000);
+
+  @Test
+  public void userDTOs_jsonVsCborVsSmile() throws Exception {
+    List<UserGetDTO> users = new ArrayList<>();
+    for (int i = 0; i < LIST_SIZE; i++) {
+      users.add(user(i));
+    }
+    UserPostDTO post = new UserPostDTO();
+    post.setUsername("user1");
+    post.setPassword("password");
+    UserPutDTO putDTO = new UserPutDTO();
+    putDTO.setUsername("user2");
+    putDTO.setBirthday(LocalDate.of(1995, 5, 17));
+
+    for (JsonFactory factory : List.of(new JsonFactory(), new CBORFactory(), new SmileFactory())) {
+      ObjectMapper mapper = Jackson2ObjectMapperBuilder.json()
+          .factory(factory)
+          .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+          .serializers(new UserGetDTOSerializer())
+          .build();
+      String format = factory.getFormatName();
+      JavaType listType = mapper.getTypeFactory().constructCollectionType(List.class, UserGetDTO.class);
+      run(format + " list[" + LIST_SIZE + "]", mapper.writer(), mapper.readerFor(listType), users, 500);
+      run(format + " UserPostDTO", mapper.writer(), mapper.readerFor(UserPostDTO.class), post, 200_000);
+      run(format + " UserPutDTO", mapper.writer(), mapper.readerFor(UserPutDTO.class), putDTO, 200_000);
+    }
+  }
+
+  private void run(String name, ObjectWriter writer, ObjectReader reader, Object value, int ops) throws Exception {
+    ByteArrayOutputStream buffer = new ByteArrayOutputStream(64 * 1024);
+    byte[] encoded = writer.writeValueAsBytes(value);
+    BenchmarkUtils.measure("encode " + name, ops, ops, () -> {
+      buffer.reset();
+      writer.writeValue(buffer, value);
+    });
+    BenchmarkUtils.measure("decode " + name, ops, ops, () -> reader.readValue(encoded));
+    System.out.printf("%-40s %12d B%n", name, encoded.length);
+  }
+
+  private static UserGetDTO user(int i) {
+    UserGetDTO user = new UserGetDTO();
+    user.setId((long) i);
+    user.setUsername("user" + i);
+    user.setToken(UUID.randomUUID().toString());
+    user.setStatus(i % 2 == 0 ? UserStatus.ONLINE : UserStatus.OFFLINE);
+    user.setBirthday(i % 3 == 0 ? null : LocalDate.of(1990 + i % 20, 1 + i % 12, 1 + i % 28));
+    user.setDate(LocalDate.of(2025, 1, 1).plusDays(i % 365));
+    return user;
+  }
+}
@@ -0,0 +1,73 @@
+package ch.uzh.ifi.hase.soprafs24.rest.json;
+
+import ch.uzh.ifi.hase.soprafs24.constant.UserStatus;
+import ch.uzh.ifi.hase.soprafs24.rest.dto.UserGetDTO;
+import ch.uzh.ifi.hase.soprafs24.utlis.BenchmarkUtils;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Compares throughput and allocation of the default (reflective) UserGetDTO
+ * serialization with UserGetDTOSerializer, for a single user and for a
+ * GET /users sized list. Both write into the same reused output buffer, like
+ * the HTTP message converter writing to the response stream.
+ */
+@Tag("benchmark")
+public class UserGetDTOSerializerBenchmark {
+
+  private static final int LIST_SIZE = Integer.getInteger("benchmark.listSize", 1_000);
+
+  @Test
+  public void serialize_defaultVsOptimized() throws Exception {
+    ObjectMapper defaultMapper = Jackson2ObjectMapperBuilder.json()
+        .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+        .build();
+    ObjectMapper optimizedMapper = Jackson2ObjectMapperBuilder.json()
+        .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+        .serializers(new UserGetDTOSerializer())
+        .build();
+
+    UserGetDTO user = user(1);
+    List<UserGetDTO> users = new ArrayList<>();
+    for (int i = 0; i < LIST_SIZE; i++) {
+      users.add(user(i));
+    }
+
+    run("single", defaultMapper.writer(), optimizedMapper.writer(), user, 200_000);
+    run("list[" + LIST_SIZE + "]", defaultMapper.writer(), optimizedMapper.writer(), users, 500);
+  }
+
+  private void run(String name, ObjectWriter defaultWriter, ObjectWriter optimizedWriter, Object value,
+                   int ops) throws Exception {
+    ByteArrayOutputStream buffer = new ByteArrayOutputStream(64 * 1024);
+    BenchmarkUtils.measure("default   " + name, ops, ops, () -> {
+      buffer.reset();
+      defaultWriter.writeValue(buffer, value);
+    });
+    BenchmarkUtils.measure("optimized " + name, ops, ops, () -> {
+      buffer.reset();
+      optimizedWriter.writeValue(buffer, value);
+    });
+  }
+
+  private static UserGetDTO user(int i) {
+    UserGetDTO user = new UserGetDTO();
+    user.setId((long) i);
+    user.setUsername("user" + i);
+    user.setToken(UUID.randomUUID().toString());
+    user.setStatus(i % 2 == 0 ? UserStatus.ONLINE : UserStatus.OFFLINE);
+    user.setBirthday(i % 3 == 0 ? null : LocalDate.of(1990 + i % 20, 1 + i % 12, 1 + i % 28));
+    user.setDate(LocalDate.of(2025, 1, 1).plusDays(i % 365));
+    return user;
+  }
+}
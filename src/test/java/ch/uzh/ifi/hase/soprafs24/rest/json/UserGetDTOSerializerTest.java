@@ -0,0 +1,65 @@
+package ch.uzh.ifi.hase.soprafs24.rest.json;
+
+import ch.uzh.ifi.hase.soprafs24.constant.UserStatus;
+import ch.uzh.ifi.hase.soprafs24.rest.dto.UserGetDTO;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * UserGetDTOSerializerTest
+ * Tests that the hand-written serializer produces exactly what the default
+ * reflection-based serialization produces.
+ */
+public class UserGetDTOSerializerTest {
+
+  private final ObjectMapper defaultMapper = Jackson2ObjectMapperBuilder.json()
+      .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+      .build();
+
+  private final ObjectMapper optimizedMapper = Jackson2ObjectMapperBuilder.json()
+      .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+      .serializers(new UserGetDTOSerializer())
+      .build();
+
+  @Test
+  public void serialize_allFieldsSet_sameAsDefault() throws Exception {
+    UserGetDTO user = new UserGetDTO();
+    user.setId(1L);
+    user.setUsername("firstname@lastname");
+    user.setToken("token \"with\" quotes");
+    user.setStatus(UserStatus.ONLINE);
+    user.setBirthday(LocalDate.of(2000, 2, 29));
+    user.setDate(LocalDate.of(2025, 3, 1));
+
+    assertEquals(defaultMapper.writeValueAsString(user), optimizedMapper.writeValueAsString(user));
+  }
+
+  @Test
+  public void serialize_nullFields_sameAsDefault() throws Exception {
+    UserGetDTO user = new UserGetDTO();
+
+    assertEquals(defaultMapper.writeValueAsString(user), optimizedMapper.writeValueAsString(user));
+  }
+
+  @Test
+  public void serialize_list_sameAsDefault() throws Exception {
+    UserGetDTO first = new UserGetDTO();
+    first.setId(1L);
+    first.setUsername("first");
+    first.setStatus(UserStatus.OFFLINE);
+    UserGetDTO second = new UserGetDTO();
+    second.setId(2L);
+    second.setUsername("second");
+    second.setDate(LocalDate.of(2025, 1, 1));
+
+    List<UserGetDTO> users = List.of(first, second);
+    assertEquals(defaultMapper.writeValueAsString(users), optimizedMapper.writeValueAsString(users));
+  }
+}
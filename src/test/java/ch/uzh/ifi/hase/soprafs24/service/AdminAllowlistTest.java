@@ -0,0 +1,31 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+import ch.uzh.ifi.hase.soprafs24.entity.User;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AdminAllowlistTest {
+
+  @Test
+  public void isAdmin_byIdNotUsername() {
+    AdminAllowlist allowlist = new AdminAllowlist(" 1, 42 ,");
+
+    assertTrue(allowlist.isAdmin(user(42L, "anyone")));
+    assertFalse(allowlist.isAdmin(user(7L, "42")));
+    assertFalse(allowlist.isAdmin(user(null, "admin")));
+    assertFalse(allowlist.isAdmin(null));
+  }
+
+  @Test
+  public void isAdmin_emptyByDefault() {
+    assertFalse(new AdminAllowlist("").isAdmin(user(1L, "admin")));
+  }
+
+  private static User user(Long id, String username) {
+    User user = new User();
+    user.setId(id);
+    user.setUsername(username);
+    return user;
+  }
+}
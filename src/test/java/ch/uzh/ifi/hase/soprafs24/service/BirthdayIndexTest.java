@@ -0,0 +1,81 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+import ch.uzh.ifi.hase.soprafs24.entity.User;
+import ch.uzh.ifi.hase.soprafs24.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BirthdayIndexTest {
+
+  @Mock
+  private UserRepository userRepository;
+
+  private BirthdayIndex birthdayIndex;
+
+  @BeforeEach
+  public void setup() {
+    MockitoAnnotations.openMocks(this);
+    Mockito.when(userRepository.findBirthdays()).thenReturn(List.<Object[]>of(
+        new Object[] { 1L, LocalDate.of(1990, 3, 14) },
+        new Object[] { 2L, LocalDate.of(1985, 3, 16) },
+        new Object[] { 3L, LocalDate.of(2000, 2, 29) }));
+
+    birthdayIndex = new BirthdayIndex(userRepository);
+    birthdayIndex.load();
+  }
+
+  @Test
+  public void find_returnsUsersOfTheRequestedDays() {
+    assertEquals(List.of(1L), birthdayIndex.find(LocalDate.of(2025, 3, 14), 1));
+    assertEquals(List.of(1L, 2L), birthdayIndex.find(LocalDate.of(2025, 3, 10), 7));
+    assertTrue(birthdayIndex.find(LocalDate.of(2025, 3, 15), 1).isEmpty());
+  }
+
+  @Test
+  public void find_february29_celebratedOnFebruary28InCommonYears() {
+    assertEquals(List.of(3L), birthdayIndex.find(LocalDate.of(2025, 2, 28), 1));
+    assertTrue(birthdayIndex.find(LocalDate.of(2024, 2, 28), 1).isEmpty());
+    assertEquals(List.of(3L), birthdayIndex.find(LocalDate.of(2024, 2, 29), 1));
+  }
+
+  @Test
+  public void update_movesUserToNewBucket() {
+    birthdayIndex.update(1L, LocalDate.of(1990, 12, 31));
+
+    assertTrue(birthdayIndex.find(LocalDate.of(2025, 3, 14), 1).isEmpty());
+    assertEquals(List.of(1L), birthdayIndex.find(LocalDate.of(2025, 12, 30), 7));
+    assertEquals(3, birthdayIndex.size());
+  }
+
+  @Test
+  public void onUserChanged_edited_readsCommittedBirthdays() {
+    User moved = new User();
+    moved.setId(1L);
+    moved.setBirthday(LocalDate.of(1990, 12, 31));
+    User cleared = new User();
+    cleared.setId(2L);
+    Mockito.when(userRepository.findAllById(List.of(1L, 2L, 3L))).thenReturn(List.of(moved, cleared));
+
+    birthdayIndex.onUserChanged(new UserChangedEvent(UserChangedEvent.Kind.EDITED, List.of(1L, 2L, 3L)));
+
+    assertEquals(List.of(1L), birthdayIndex.find(LocalDate.of(2025, 12, 31), 1));
+    assertTrue(birthdayIndex.find(LocalDate.of(2025, 3, 10), 7).isEmpty());
+    // deleted meanwhile
+    assertEquals(1, birthdayIndex.size());
+  }
+
+  @Test
+  public void isCelebratedOn_matchesMonthAndDay() {
+    assertTrue(BirthdayIndex.isCelebratedOn(LocalDate.of(1990, 3, 14), LocalDate.of(2025, 3, 14)));
+    assertFalse(BirthdayIndex.isCelebratedOn(LocalDate.of(1990, 3, 14), LocalDate.of(2025, 3, 15)));
+    assertTrue(BirthdayIndex.isCelebratedOn(LocalDate.of(2000, 2, 29), LocalDate.of(2025, 2, 28)));
+  }
+}
@@ -0,0 +1,56 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LoginThrottleTest {
+
+  private static final Instant NOW = Instant.parse("2025-03-01T12:00:00Z");
+
+  private final LoginThrottle loginThrottle = new LoginThrottle(3, 10, 60, 1000, 4);
+
+  @Test
+  public void retryAfter_usernameLimitReached_throttlesUntilDecayed() {
+    for (int i = 0; i < 3; i++) {
+      assertEquals(0, loginThrottle.retryAfterSeconds("alice", "10.0.0.1", NOW));
+      loginThrottle.recordFailure("alice", "10.0.0.1", NOW);
+    }
+
+    long retryAfter = loginThrottle.retryAfterSeconds("alice", "10.0.0.2", NOW);
+    assertTrue(retryAfter > 0);
+    assertEquals(0, loginThrottle.retryAfterSeconds("bob", "10.0.0.1", NOW));
+    assertEquals(0, loginThrottle.retryAfterSeconds("alice", "10.0.0.2", NOW.plusSeconds(retryAfter)));
+  }
+
+  @Test
+  public void retryAfter_clientLimitReached_throttlesEveryUsername() {
+    for (int i = 0; i < 10; i++) {
+      loginThrottle.recordFailure("user" + i, "10.0.0.1", NOW);
+    }
+
+    assertTrue(loginThrottle.retryAfterSeconds("someoneElse", "10.0.0.1", NOW) > 0);
+    assertEquals(0, loginThrottle.retryAfterSeconds("someoneElse", "10.0.0.2", NOW));
+  }
+
+  @Test
+  public void recordSuccess_forgetsUsernameFailures() {
+    for (int i = 0; i < 3; i++) {
+      loginThrottle.recordFailure("alice", "10.0.0.1", NOW);
+    }
+    loginThrottle.recordSuccess("alice");
+
+    assertEquals(0, loginThrottle.retryAfterSeconds("alice", "10.0.0.1", NOW));
+  }
+
+  @Test
+  public void recordFailure_manyKeys_boundedByMaxEntries() {
+    for (int i = 0; i < 5000; i++) {
+      loginThrottle.recordFailure("user" + i, "10.0." + (i / 256) + "." + (i % 256), NOW);
+    }
+
+    assertTrue(loginThrottle.size() <= 1000);
+  }
+}
@@ -0,0 +1,52 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Measures password verifications per second and per core at the configured
+ * iterations, with more concurrent callers than hashing threads like during a
+ * login storm. Run with ./gradlew benchmark [-Dbenchmark.iterations=N].
+ */
+@Tag("benchmark")
+public class PasswordHasherBenchmark {
+
+  private static final int ITERATIONS = Integer.getInteger("benchmark.iterations", 210_000);
+  private static final int LOGINS = Integer.getInteger("benchmark.logins", 500);
+
+  @Test
+  public void verify_throughputPerCore() throws Exception {
+    int cores = Runtime.getRuntime().availableProcessors();
+    PasswordHasher passwordHasher = new PasswordHasher(ITERATIONS, 0, 0, LOGINS, 60_000);
+    ExecutorService callers = Executors.newFixedThreadPool(cores * 4);
+    try {
+      String hash = passwordHasher.hash("password");
+      for (int i = 0; i < cores * 2; i++) {
+        passwordHasher.verify("password", hash);
+      }
+
+      long start = System.nanoTime();
+      List<Future<Boolean>> logins = new ArrayList<>();
+      for (int i = 0; i < LOGINS; i++) {
+        logins.add(callers.submit(() -> passwordHasher.verify("password", hash)));
+      }
+      for (Future<Boolean> login : logins) {
+        login.get();
+      }
+      double seconds = (System.nanoTime() - start) / 1e9;
+
+      System.out.printf("iterations=%d cores=%d logins=%d %.1f logins/s %.1f logins/s/core %.1f ms/login%n",
+          ITERATIONS, cores, LOGINS, LOGINS / seconds, LOGINS / seconds / cores, seconds * 1000 * cores / LOGINS);
+    }
+    finally {
+      callers.shutdown();
+      passwordHasher.shutdown();
+    }
+  }
+}
@@ -0,0 +1,102 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+import ch.uzh.ifi.hase.soprafs24.exceptions.ServiceUnavailableException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PasswordHasherTest {
+
+  private final PasswordHasher passwordHasher = new PasswordHasher(10_000, 0, 2, 16, 30_000);
+
+  @AfterEach
+  public void shutdown() {
+    passwordHasher.shutdown();
+  }
+
+  @Test
+  public void hash_verifiesOnlyTheSamePassword() {
+    String hash = passwordHasher.hash("secret");
+
+    assertTrue(hash.startsWith("pbkdf2-sha256$10000$"));
+    assertNotEquals(hash, passwordHasher.hash("secret"));
+    assertTrue(passwordHasher.verify("secret", hash));
+    assertFalse(passwordHasher.verify("Secret", hash));
+    assertFalse(passwordHasher.needsRehash(hash));
+  }
+
+  @Test
+  public void verify_plaintextOfOlderRows_needsRehash() {
+    assertTrue(passwordHasher.verify("secret", "secret"));
+    assertFalse(passwordHasher.verify("other", "secret"));
+    assertTrue(passwordHasher.needsRehash("secret"));
+  }
+
+  @Test
+  public void verify_malformedHash_false() {
+    assertFalse(passwordHasher.verify("secret", "pbkdf2-sha256$many$c2FsdA$aGFzaA"));
+    assertFalse(passwordHasher.verify("secret", "pbkdf2-sha256$10000$not base64!$aGFzaA"));
+    assertFalse(passwordHasher.verify("secret", "pbkdf2-sha256$0$c2FsdA$aGFzaA"));
+    assertFalse(passwordHasher.verify("secret", "pbkdf2-sha256$10000$$aGFzaA"));
+  }
+
+  @Test
+  public void hash_tooSlow_throwsServiceUnavailable() {
+    PasswordHasher slow = new PasswordHasher(2_000_000, 0, 1, 1, 1);
+    try {
+      assertThrows(ServiceUnavailableException.class, () -> slow.hash("secret"));
+    }
+    finally {
+      slow.shutdown();
+    }
+  }
+
+  @Test
+  public void needsRehash_otherIterations() {
+    PasswordHasher stronger = new PasswordHasher(20_000, 0, 1, 1, 30_000);
+    try {
+      String hash = passwordHasher.hash("secret");
+
+      assertTrue(stronger.verify("secret", hash));
+      assertTrue(stronger.needsRehash(hash));
+    }
+    finally {
+      stronger.shutdown();
+    }
+  }
+
+  @Test
+  public void hash_queueFull_throwsServiceUnavailable() throws Exception {
+    PasswordHasher saturated = new PasswordHasher(2_000_000, 0, 1, 1, 30_000);
+    ExecutorService callers = Executors.newFixedThreadPool(2);
+    CountDownLatch started = new CountDownLatch(2);
+    try {
+      // one hash running, one queued
+      Future<?> first = callers.submit(() -> {
+        started.countDown();
+        return saturated.hash("a");
+      });
+      Future<?> second = callers.submit(() -> {
+        started.countDown();
+        return saturated.hash("b");
+      });
+      started.await();
+      Thread.sleep(100);
+
+      assertThrows(ServiceUnavailableException.class, () -> saturated.hash("c"));
+      first.get(30, TimeUnit.SECONDS);
+      second.get(30, TimeUnit.SECONDS);
+    }
+    finally {
+      callers.shutdownNow();
+      saturated.shutdown();
+    }
+  }
+}
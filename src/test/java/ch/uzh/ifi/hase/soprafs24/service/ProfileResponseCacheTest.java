@@ -0,0 +1,116 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+import ch.uzh.ifi.hase.soprafs24.constant.UserStatus;
+import ch.uzh.ifi.hase.soprafs24.entity.User;
+import ch.uzh.ifi.hase.soprafs24.exceptions.UserNotFoundException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ProfileResponseCacheTest {
+
+  @Mock
+  private UserService userService;
+
+  private ProfileResponseCache profileResponseCache;
+
+  private User testUser;
+
+  @BeforeEach
+  public void setup() {
+    MockitoAnnotations.openMocks(this);
+    profileResponseCache = new ProfileResponseCache(userService, List.of(
+        new MappingJackson2CborHttpMessageConverter(new ObjectMapper(new CBORFactory()).findAndRegisterModules()),
+        new MappingJackson2HttpMessageConverter(new ObjectMapper().findAndRegisterModules())), 1 << 20);
+
+    testUser = new User();
+    testUser.setId(1L);
+    testUser.setUsername("testUsername");
+    testUser.setToken("token");
+    testUser.setStatus(UserStatus.ONLINE);
+    testUser.setDate(LocalDate.now());
+    Mockito.when(userService.getUserByIdFromPrimary(1L)).thenReturn(testUser);
+  }
+
+  @Test
+  public void getProfile_twice_loadsOnce() {
+    byte[] first = profileResponseCache.getProfile(1L);
+    byte[] second = profileResponseCache.getProfile(1L);
+
+    assertSame(first, second);
+    assertTrue(new String(first, StandardCharsets.UTF_8).contains("\"testUsername\""));
+    Mockito.verify(userService, Mockito.times(1)).getUserById(1L);
+  }
+
+  @Test
+  public void negotiate_acceptHeader_picksFormat() {
+    assertEquals(MediaType.APPLICATION_JSON, profileResponseCache.negotiate(null));
+    assertEquals(MediaType.APPLICATION_JSON, profileResponseCache.negotiate("*/*"));
+    assertEquals(MediaType.APPLICATION_CBOR, profileResponseCache.negotiate("application/cbor"));
+    assertEquals(MediaType.APPLICATION_CBOR, profileResponseCache.negotiate("application/json;q=0.5, application/cbor"));
+    assertEquals(MediaType.APPLICATION_JSON, profileResponseCache.negotiate("text/html"));
+  }
+
+  @Test
+  public void getProfile_cbor_cachedSeparatelyAndInvalidatedTogether() throws Exception {
+    byte[] json = profileResponseCache.getProfile(1L);
+    byte[] cbor = profileResponseCache.getProfile(1L, MediaType.APPLICATION_CBOR);
+
+    JsonNode decoded = new ObjectMapper(new CBORFactory()).readTree(cbor);
+    assertEquals("testUsername", decoded.get("username").asText());
+    assertTrue(cbor.length < json.length);
+    assertSame(cbor, profileResponseCache.getProfile(1L, MediaType.APPLICATION_CBOR));
+
+    profileResponseCache.invalidate(1L);
+    profileResponseCache.getProfile(1L);
+    profileResponseCache.getProfile(1L, MediaType.APPLICATION_CBOR);
+
+    Mockito.verify(userService, Mockito.times(4)).getUserById(1L);
+  }
+
+  @Test
+  public void getProfile_afterUserChanged_reloads() {
+    profileResponseCache.getProfile(1L);
+
+    testUser.setUsername("editedUsername");
+    profileResponseCache.onUserChanged(new UserChangedEvent(UserChangedEvent.Kind.EDITED, 1L));
+
+    assertTrue(new String(profileResponseCache.getProfile(1L), StandardCharsets.UTF_8).contains("\"editedUsername\""));
+    Mockito.verify(userService, Mockito.times(2)).getUserById(1L);
+  }
+
+  @Test
+  public void getProfile_changedWhileLoading_notCached() {
+    // the change lands between loading the user and putting the encoded profile
+    Mockito.when(userService.getUserByIdFromPrimary(1L)).thenAnswer(invocation -> {
+      profileResponseCache.invalidate(1L);
+      return testUser;
+    });
+
+    profileResponseCache.getProfile(1L);
+
+    assertEquals(0, profileResponseCache.size());
+  }
+
+  @Test
+  public void getProfile_unknownUser_throws() {
+    Mockito.when(userService.getUserByIdFromPrimary(2L)).thenThrow(new UserNotFoundException("User not found"));
+
+    assertThrows(UserNotFoundException.class, () -> profileResponseCache.getProfile(2L));
+    assertEquals(0, profileResponseCache.size());
+  }
+}
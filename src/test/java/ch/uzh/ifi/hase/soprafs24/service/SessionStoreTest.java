@@ -0,0 +1,162 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+import ch.uzh.ifi.hase.soprafs24.entity.Session;
+import ch.uzh.ifi.hase.soprafs24.repository.SessionRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+public class SessionStoreTest {
+
+  @Mock
+  private SessionRepository sessionRepository;
+
+  private SessionStore sessionStore;
+
+  @BeforeEach
+  public void setup() {
+    MockitoAnnotations.openMocks(this);
+    sessionStore = new SessionStore(sessionRepository, 60);
+  }
+
+  @Test
+  public void find_expiredSession_returnsNull() {
+    Session session = sessionStore.create(1L);
+
+    assertSame(session, sessionStore.find(session.getToken()));
+    assertNull(sessionStore.find(session.getToken(), Instant.now().plusSeconds(61 * 60)));
+  }
+
+  @Test
+  public void revoke_oneOfTwoSessions_userKeepsOtherSession() {
+    Session first = sessionStore.create(1L);
+    Session second = sessionStore.create(1L);
+
+    sessionStore.revoke(first.getToken());
+
+    assertNull(sessionStore.find(first.getToken()));
+    assertSame(second, sessionStore.find(second.getToken()));
+    assertTrue(sessionStore.hasSessions(1L));
+
+    sessionStore.revoke(second.getToken());
+    assertFalse(sessionStore.hasSessions(1L));
+  }
+
+  @Test
+  public void find_sessionOfOtherNode_readFromRepository() {
+    Instant now = Instant.now();
+    Session remote = new Session("remote", 1L, now, now.plusSeconds(60));
+    Mockito.when(sessionRepository.findById("remote")).thenReturn(Optional.of(remote));
+
+    assertSame(remote, sessionStore.find("remote"));
+    assertTrue(sessionStore.hasLocalSessions(1L));
+    assertNull(sessionStore.find("unknown"));
+  }
+
+  @Test
+  public void onUserChanged_remoteLogout_dropsSessionsOfUser() {
+    Session session = sessionStore.create(1L);
+    Session other = sessionStore.create(2L);
+
+    sessionStore.onUserChanged(new UserChangedEvent(UserChangedEvent.Kind.LOGGED_OUT, List.of(1L), true));
+
+    assertFalse(sessionStore.hasLocalSessions(1L));
+    assertNull(sessionStore.find(session.getToken()));
+    assertSame(other, sessionStore.find(other.getToken()));
+    Mockito.verify(sessionRepository, Mockito.never()).deleteByTokenIn(Mockito.any());
+  }
+
+  @Test
+  public void expire_boundedBatch_removesOnlyExpired() {
+    sessionStore.create(1L);
+    sessionStore.create(2L);
+    sessionStore.create(3L);
+    Instant later = Instant.now().plusSeconds(61 * 60);
+
+    List<Session> firstBatch = sessionStore.expire(later, 2);
+    List<Session> secondBatch = sessionStore.expire(later, 2);
+
+    assertEquals(2, firstBatch.size());
+    assertEquals(1, secondBatch.size());
+    assertEquals(0, sessionStore.size());
+    assertTrue(sessionStore.expire(Instant.now(), 10).isEmpty());
+  }
+
+  @Test
+  public void expire_manyRevokedSessions_purgesThemFromQueue() {
+    Session kept = sessionStore.create(1L);
+    for (int i = 0; i < 2000; i++) {
+      sessionStore.revoke(sessionStore.create(2L).getToken());
+    }
+    assertEquals(2001, sessionStore.expiryQueueSize());
+
+    assertTrue(sessionStore.expire(Instant.now(), 10).isEmpty());
+
+    assertEquals(1, sessionStore.expiryQueueSize());
+    assertSame(kept, sessionStore.find(kept.getToken()));
+  }
+
+  @Test
+  public void create_inTransaction_visibleOnlyAfterCommit() {
+    TransactionSynchronizationManager.initSynchronization();
+    try {
+      Session session = sessionStore.create(1L);
+
+      Mockito.verify(sessionRepository).save(session);
+      assertNull(sessionStore.find(session.getToken()));
+      assertFalse(sessionStore.hasSessions(1L));
+
+      TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+      assertSame(session, sessionStore.find(session.getToken()));
+    }
+    finally {
+      TransactionSynchronizationManager.clearSynchronization();
+    }
+  }
+
+  @Test
+  public void create_rolledBack_tokenNeverValid() {
+    TransactionSynchronizationManager.initSynchronization();
+    Session session;
+    try {
+      session = sessionStore.create(1L);
+      TransactionSynchronizationManager.getSynchronizations()
+          .forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+    }
+    finally {
+      TransactionSynchronizationManager.clearSynchronization();
+    }
+
+    assertNull(sessionStore.find(session.getToken()));
+    assertFalse(sessionStore.hasSessions(1L));
+  }
+
+  @SuppressWarnings("unchecked")
+  @Test
+  public void revokeAndExpire_deleteRevokedNowAndExpiredOnFlush() {
+    Session revoked = sessionStore.create(1L);
+    Session expired = sessionStore.create(2L);
+
+    sessionStore.revoke(revoked.getToken());
+    Mockito.verify(sessionRepository).deleteByTokenIn(List.of(revoked.getToken()));
+
+    sessionStore.expire(Instant.now().plusSeconds(61 * 60), 10);
+    sessionStore.flush();
+
+    ArgumentCaptor<Collection<String>> deleted = ArgumentCaptor.forClass(Collection.class);
+    Mockito.verify(sessionRepository, Mockito.times(2)).deleteByTokenIn(deleted.capture());
+    assertEquals(List.of(expired.getToken()), List.copyOf(deleted.getValue()));
+  }
+}
@@ -0,0 +1,92 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+import ch.uzh.ifi.hase.soprafs24.repository.ShardedUserRepository;
+import ch.uzh.ifi.hase.soprafs24.utlis.BenchmarkUtils;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.lang.ref.Reference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Memory per million online users and query speed of UserIdBitmap, compared
+ * with a ConcurrentHashMap key set. Heap use is measured as the difference of
+ * used memory after GC, so run it alone: ./gradlew benchmark
+ * [-Dbenchmark.users=N].
+ */
+@Tag("benchmark")
+public class UserIdBitmapBenchmark {
+
+  private static final int USERS = Integer.getInteger("benchmark.users", 1_000_000);
+
+  @Test
+  public void memoryAndQueries() throws Exception {
+    Random random = new Random(1);
+
+    // every second user of 2 * USERS registered users online
+    long[] dense = new long[USERS];
+    for (int i = 0; i < USERS; i++) {
+      dense[i] = 1 + 2L * i;
+    }
+    // the same number spread over four shards with 2^24 users each
+    long[] sharded = new long[USERS];
+    for (int i = 0; i < USERS; i++) {
+      sharded[i] = ShardedUserRepository.firstId(i % 4) + random.nextInt(1 << 24);
+    }
+
+    measureMemory("bitmap dense", () -> bitmapOf(dense));
+    measureMemory("bitmap sharded", () -> bitmapOf(sharded));
+    measureMemory("hash set dense", () -> setOf(dense));
+
+    UserIdBitmap bitmap = bitmapOf(dense);
+    List<Long> lobby = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      lobby.add(1L + random.nextInt(2 * USERS));
+    }
+    BenchmarkUtils.measure("retain lobby of 100", 10_000, 100_000, () -> bitmap.retain(lobby));
+    BenchmarkUtils.measure("cardinality", 100_000, 1_000_000, bitmap::cardinality);
+    BenchmarkUtils.measure("page of 1000", 1_000, 10_000, () -> bitmap.page(random.nextInt(2 * USERS), 1000));
+  }
+
+  private interface Builder {
+    Object build();
+  }
+
+  private static void measureMemory(String name, Builder builder) {
+    long before = usedAfterGc();
+    Object built = builder.build();
+    long used = usedAfterGc() - before;
+    String estimate = built instanceof UserIdBitmap ? " (estimated " + ((UserIdBitmap) built).memoryBytes() + ")" : "";
+    System.out.printf("%-20s users=%d heap=%d bytes, %.2f bytes/user%s%n",
+        name, USERS, used, (double) used / USERS, estimate);
+    Reference.reachabilityFence(built);
+  }
+
+  private static long usedAfterGc() {
+    Runtime runtime = Runtime.getRuntime();
+    for (int i = 0; i < 3; i++) {
+      System.gc();
+    }
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+
+  private static UserIdBitmap bitmapOf(long[] ids) {
+    UserIdBitmap bitmap = new UserIdBitmap();
+    for (long id : ids) {
+      bitmap.add(id);
+    }
+    return bitmap;
+  }
+
+  private static Set<Long> setOf(long[] ids) {
+    Set<Long> set = ConcurrentHashMap.newKeySet();
+    for (long id : ids) {
+      set.add(id);
+    }
+    return set;
+  }
+}
@@ -0,0 +1,79 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+import ch.uzh.ifi.hase.soprafs24.repository.ShardedUserRepository;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class UserIdBitmapTest {
+
+  @Test
+  public void randomChanges_matchTreeSet() {
+    UserIdBitmap bitmap = new UserIdBitmap();
+    TreeSet<Long> expected = new TreeSet<>();
+    Random random = new Random(42);
+
+    for (int i = 0; i < 200_000; i++) {
+      // dense ids in the first chunks, sparse ones on another shard
+      long id = random.nextInt(4) == 0
+          ? ShardedUserRepository.firstId(2) + random.nextInt(1 << 20)
+          : 1 + random.nextInt(150_000);
+      boolean add = random.nextInt(3) != 0;
+      assertEquals(add ? expected.add(id) : expected.remove(id), add ? bitmap.add(id) : bitmap.remove(id));
+    }
+
+    assertEquals(expected.size(), bitmap.cardinality());
+    assertEquals(new ArrayList<>(expected), pageAll(bitmap, 997));
+  }
+
+  @Test
+  public void denseThenSparse_convertsBackAndForth() {
+    UserIdBitmap bitmap = new UserIdBitmap();
+    for (long id = 1; id <= 10_000; id++) {
+      bitmap.add(id);
+    }
+    long dense = bitmap.memoryBytes();
+    for (long id = 1; id <= 10_000; id += 2) {
+      bitmap.remove(id);
+    }
+    for (long id = 2; id <= 10_000; id += 4) {
+      bitmap.remove(id);
+    }
+    for (long id = 4; id <= 10_000; id += 8) {
+      bitmap.remove(id);
+    }
+
+    assertEquals(1_250, bitmap.cardinality());
+    assertTrue(bitmap.contains(8) && !bitmap.contains(4) && !bitmap.contains(3));
+    assertTrue(bitmap.memoryBytes() < dense);
+  }
+
+  @Test
+  public void page_continuesAfterLastId() {
+    UserIdBitmap bitmap = new UserIdBitmap();
+    bitmap.add(5);
+    bitmap.add(65_535);
+    bitmap.add(65_536);
+    bitmap.add(1L << 40);
+
+    assertEquals(List.of(5L, 65_535L), bitmap.page(0, 2));
+    assertEquals(List.of(65_536L, 1L << 40), bitmap.page(65_535, 10));
+    assertEquals(List.of(), bitmap.page(1L << 40, 10));
+    assertEquals(List.of(65_536L), bitmap.retain(List.of(7L, 65_536L, 65_537L)));
+  }
+
+  private static List<Long> pageAll(UserIdBitmap bitmap, int pageSize) {
+    List<Long> all = new ArrayList<>();
+    long after = 0;
+    for (List<Long> page = bitmap.page(after, pageSize); !page.isEmpty(); page = bitmap.page(after, pageSize)) {
+      all.addAll(page);
+      after = page.get(page.size() - 1);
+    }
+    return all;
+  }
+}
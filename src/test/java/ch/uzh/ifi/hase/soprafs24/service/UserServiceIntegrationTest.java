@@ -71,4 +71,69 @@ public class UserServiceIntegrationTest {
     // check that an error is thrown
     assertThrows(ResponseStatusException.class, () -> userService.createUser(testUser2));
   }
+
+  @Test
+  public void loginUser_secondDevice_opensSeparateSession() {
+    User testUser = new User();
+    testUser.setUsername("testUsername");
+    testUser.setPassword("testPassword");
+    User createdUser = userService.createUser(testUser);
+    String firstToken = createdUser.getToken();
+
+    User credentials = new User();
+    credentials.setUsername("testUsername");
+    credentials.setPassword("testPassword");
+    String secondToken = userService.loginUser(credentials).getToken();
+
+    // both sessions authenticate the same user
+    assertNotEquals(firstToken, secondToken);
+    assertEquals(createdUser.getId(), userService.getUserByToken(firstToken).getId());
+    assertEquals(createdUser.getId(), userService.getUserByToken(secondToken).getId());
+  }
+
+  @Test
+  public void logoutUser_oneOfTwoSessions_otherSessionStaysValid() {
+    User testUser = new User();
+    testUser.setUsername("testUsername");
+    testUser.setPassword("testPassword");
+    User createdUser = userService.createUser(testUser);
+    String firstToken = createdUser.getToken();
+
+    User credentials = new User();
+    credentials.setUsername("testUsername");
+    credentials.setPassword("testPassword");
+    String secondToken = userService.loginUser(credentials).getToken();
+
+    // when -> log out the first device
+    userService.logoutUser(userService.getUserById(createdUser.getId()), firstToken);
+
+    // then
+    assertNull(userService.getUserByToken(firstToken));
+    assertNotNull(userService.getUserByToken(secondToken));
+    assertEquals(UserStatus.ONLINE, userService.getUserById(createdUser.getId()).getStatus());
+
+    // when -> log out the last device
+    userService.logoutUser(userService.getUserById(createdUser.getId()), secondToken);
+
+    // then
+    assertNull(userService.getUserByToken(secondToken));
+    assertEquals(UserStatus.OFFLINE, userService.getUserById(createdUser.getId()).getStatus());
+  }
+
+  @Test
+  public void logoutUser_tokenOfOtherUser_throwsException() {
+    User firstUser = new User();
+    firstUser.setUsername("firstUser");
+    firstUser.setPassword("testPassword");
+    firstUser = userService.createUser(firstUser);
+
+    User secondUser = new User();
+    secondUser.setUsername("secondUser");
+    secondUser.setPassword("testPassword");
+    String foreignToken = userService.createUser(secondUser).getToken();
+
+    User userToLogOut = userService.getUserById(firstUser.getId());
+    assertThrows(ResponseStatusException.class, () -> userService.logoutUser(userToLogOut, foreignToken));
+    assertNotNull(userService.getUserByToken(foreignToken));
+  }
 }
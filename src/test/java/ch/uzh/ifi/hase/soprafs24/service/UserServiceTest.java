@@ -1,16 +1,24 @@
 package ch.uzh.ifi.hase.soprafs24.service;
 
 import ch.uzh.ifi.hase.soprafs24.constant.UserStatus;
+import ch.uzh.ifi.hase.soprafs24.entity.Session;
 import ch.uzh.ifi.hase.soprafs24.entity.User;
+import ch.uzh.ifi.hase.soprafs24.exceptions.UnauthorizedException;
 import ch.uzh.ifi.hase.soprafs24.repository.UserRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.web.server.ResponseStatusException;
 
+import java.time.Instant;
+import java.util.Optional;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 public class UserServiceTest {
@@ -18,6 +26,21 @@ public class UserServiceTest {
   @Mock
   private UserRepository userRepository;
 
+  @Mock
+  private SessionStore sessionStore;
+
+  @Mock
+  private ApplicationEventPublisher eventPublisher;
+
+  @Mock
+  private BirthdayIndex birthdayIndex;
+
+  @Mock
+  private PasswordHasher passwordHasher;
+
+  @Mock
+  private PlatformTransactionManager transactionManager;
+
   @InjectMocks
   private UserService userService;
 
@@ -64,5 +87,53 @@ public class UserServiceTest {
       assertThrows(ResponseStatusException.class, () -> userService.createUser(testUser));
   }
 
+  @Test
+  public void loginUser_wrongPassword_throwsStacklessUnauthorized() {
+      // given -> a stored user with a different password
+      Mockito.when(userRepository.findByUsername("testUsername")).thenReturn(testUser);
+
+      User loginAttempt = new User();
+      loginAttempt.setUsername("testUsername");
+      loginAttempt.setPassword("wrongPassword");
+
+      // then -> expected failures are cheap: no stack trace is captured
+      UnauthorizedException exception = assertThrows(UnauthorizedException.class,
+          () -> userService.loginUser(loginAttempt));
+      assertEquals(0, exception.getStackTrace().length);
+  }
+
+  @Test
+  public void createUser_hashesBeforeTheTransaction() {
+    userService.createUser(testUser);
+
+    // the hashing must not hold a connection
+    InOrder inOrder = Mockito.inOrder(passwordHasher, transactionManager, userRepository);
+    inOrder.verify(passwordHasher).hash("testPassword");
+    inOrder.verify(transactionManager).getTransaction(Mockito.any());
+    inOrder.verify(userRepository).save(Mockito.any());
+  }
+
+  @Test
+  public void loginUser_verifiesBetweenTheTransactions() {
+    testUser.setId(1L);
+    Mockito.when(userRepository.findByUsername("testUsername")).thenReturn(testUser);
+    Mockito.when(userRepository.findById(1L)).thenReturn(Optional.of(testUser));
+    Mockito.when(passwordHasher.verify("testPassword", "testPassword")).thenReturn(true);
+    Mockito.when(sessionStore.create(1L)).thenReturn(new Session("token", 1L, Instant.now(), Instant.now().plusSeconds(60)));
+
+    User loginAttempt = new User();
+    loginAttempt.setUsername("testUsername");
+    loginAttempt.setPassword("testPassword");
+    userService.loginUser(loginAttempt);
+
+    InOrder inOrder = Mockito.inOrder(passwordHasher, transactionManager, userRepository);
+    inOrder.verify(transactionManager).getTransaction(Mockito.any());
+    inOrder.verify(userRepository).findByUsername("testUsername");
+    inOrder.verify(transactionManager).commit(Mockito.any());
+    inOrder.verify(passwordHasher).verify("testPassword", "testPassword");
+    inOrder.verify(transactionManager).getTransaction(Mockito.any());
+    inOrder.verify(userRepository).saveAndFlush(testUser);
+  }
+
 
 }
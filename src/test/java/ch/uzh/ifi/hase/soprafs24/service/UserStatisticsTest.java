@@ -0,0 +1,84 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+import ch.uzh.ifi.hase.soprafs24.constant.UserStatus;
+import ch.uzh.ifi.hase.soprafs24.exceptions.ParameterOutOfRangeException;
+import ch.uzh.ifi.hase.soprafs24.repository.UserRepository;
+import ch.uzh.ifi.hase.soprafs24.rest.dto.UserStatisticsDTO;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class UserStatisticsTest {
+
+  @Mock
+  private UserRepository userRepository;
+
+  private OnlineIndex onlineIndex;
+
+  private UserStatistics userStatistics;
+
+  @BeforeEach
+  public void setup() {
+    MockitoAnnotations.openMocks(this);
+    onlineIndex = new OnlineIndex(userRepository);
+    userStatistics = new UserStatistics(userRepository, onlineIndex);
+
+    LocalDate yesterday = LocalDate.now().minusDays(1);
+    Mockito.when(userRepository.count()).thenReturn(3L);
+    Mockito.when(userRepository.findIdsByStatus(UserStatus.ONLINE)).thenReturn(List.of(1L));
+    Mockito.when(userRepository.countByDate()).thenReturn(List.<Object[]>of(new Object[] { yesterday, 3L }));
+    userStatistics.reconcile();
+  }
+
+  @Test
+  public void reconcile_countsFromDatabase() {
+    UserStatisticsDTO statistics = userStatistics.getStatistics(30);
+
+    assertEquals(3L, statistics.getTotal());
+    assertEquals(1L, statistics.getByStatus().get(UserStatus.ONLINE));
+    assertEquals(2L, statistics.getByStatus().get(UserStatus.OFFLINE));
+    assertEquals(3L, statistics.getRegistrationsByDay().get(LocalDate.now().minusDays(1)));
+    assertNotNull(statistics.getReconciledAt());
+  }
+
+  @Test
+  public void onUserChanged_followsCreateLoginAndLogout() {
+    publish(new UserChangedEvent(UserChangedEvent.Kind.CREATED, 4L));
+    publish(new UserChangedEvent(UserChangedEvent.Kind.LOGGED_IN, 2L));
+    publish(new UserChangedEvent(UserChangedEvent.Kind.LOGGED_IN, 2L));
+    publish(new UserChangedEvent(UserChangedEvent.Kind.WENT_OFFLINE, 1L));
+
+    UserStatisticsDTO statistics = userStatistics.getStatistics(30);
+
+    assertEquals(4L, statistics.getTotal());
+    assertEquals(2L, statistics.getByStatus().get(UserStatus.ONLINE));
+    assertEquals(2L, statistics.getByStatus().get(UserStatus.OFFLINE));
+    assertEquals(1L, statistics.getRegistrationsByDay().get(LocalDate.now()));
+  }
+
+  @Test
+  public void getStatistics_onlyListsRequestedDays() {
+    assertTrue(userStatistics.getStatistics(1).getRegistrationsByDay().isEmpty());
+    assertEquals(1, userStatistics.getStatistics(2).getRegistrationsByDay().size());
+  }
+
+  @Test
+  public void getStatistics_daysOutOfRange_throws() {
+    assertThrows(ParameterOutOfRangeException.class, () -> userStatistics.getStatistics(0));
+    assertThrows(ParameterOutOfRangeException.class, () -> userStatistics.getStatistics(UserStatistics.MAX_DAYS + 1));
+    assertThrows(ParameterOutOfRangeException.class, () -> userStatistics.getStatistics(Integer.MAX_VALUE));
+    assertEquals(1, userStatistics.getStatistics(UserStatistics.MAX_DAYS).getRegistrationsByDay().size());
+  }
+
+  private void publish(UserChangedEvent event) {
+    onlineIndex.onUserChanged(event);
+    userStatistics.onUserChanged(event);
+  }
+}
@@ -0,0 +1,254 @@
+package ch.uzh.ifi.hase.soprafs24.soak;
+
+import ch.uzh.ifi.hase.soprafs24.utlis.TrendUtils;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import javax.sql.DataSource;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs mixed user traffic against the application for a long time and
+ * samples heap after GC, live threads, open file descriptors and the
+ * connection pool. Fails if one of them keeps growing beyond its limit per
+ * hour, ignoring the first part of the run while caches fill up. Run with
+ * ./gradlew soak [-Dsoak.minutes=N -Dsoak.clients=N ...]; the samples are
+ * printed as CSV for closer analysis.
+ * Every client works on its own fixed set of users and logs out every
+ * session it opened, so the steady state has a constant amount of data.
+ */
+@Tag("soak")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+    // all clients come from 127.0.0.1, poll as fast as they can and some logins fail on purpose
+    "users.login-throttle.max-client-failures=1000000000",
+    "users.rate-limit.enabled=false",
+    "users.audit.max-segments=4",
+    "users.audit.segment-bytes=1048576"
+})
+public class SoakTest {
+
+  private static final int MINUTES = Integer.getInteger("soak.minutes", 120);
+  private static final int CLIENTS = Integer.getInteger("soak.clients", 8);
+  private static final int USERS_PER_CLIENT = Integer.getInteger("soak.users-per-client", 50);
+  private static final int SAMPLE_SECONDS = Integer.getInteger("soak.sample-seconds", 30);
+  private static final double SKIP_FRACTION = Double.parseDouble(System.getProperty("soak.skip-fraction", "0.2"));
+  private static final double MAX_HEAP_MB_PER_HOUR = Double.parseDouble(System.getProperty("soak.max-heap-mb-per-hour", "16"));
+  private static final double MAX_THREADS_PER_HOUR = Double.parseDouble(System.getProperty("soak.max-threads-per-hour", "2"));
+  private static final double MAX_FDS_PER_HOUR = Double.parseDouble(System.getProperty("soak.max-fds-per-hour", "10"));
+  private static final double MAX_POOL_PER_HOUR = Double.parseDouble(System.getProperty("soak.max-pool-per-hour", "1"));
+
+  private final ObjectMapper objectMapper = new ObjectMapper();
+  private final HttpClient http = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+
+  @LocalServerPort
+  private int port;
+
+  @Autowired
+  private DataSource dataSource;
+
+  @DynamicPropertySource
+  static void directories(DynamicPropertyRegistry registry) throws IOException {
+    String audit = Files.createTempDirectory("soak-audit").toString();
+    registry.add("users.audit.directory", () -> audit);
+  }
+
+  @Test
+  public void mixedTraffic_noResourceGrowsSteadily() throws Exception {
+    TrendUtils.Series heap = new TrendUtils.Series("heap after GC", "MB");
+    TrendUtils.Series threads = new TrendUtils.Series("live threads", "threads");
+    TrendUtils.Series fds = new TrendUtils.Series("open file descriptors", "fds");
+    TrendUtils.Series poolActive = new TrendUtils.Series("active connections", "connections");
+    TrendUtils.Series poolTotal = new TrendUtils.Series("pooled connections", "connections");
+
+    AtomicBoolean running = new AtomicBoolean(true);
+    LongAdder requests = new LongAdder();
+    LongAdder errors = new LongAdder();
+    ExecutorService clients = Executors.newFixedThreadPool(CLIENTS);
+    for (int client = 0; client < CLIENTS; client++) {
+      int id = client;
+      clients.submit(() -> {
+        runClient(id, running, requests, errors);
+        return null;
+      });
+    }
+
+    System.out.println("minute,heapMb,threads,fds,poolActive,poolTotal,requests,errors");
+    long start = System.currentTimeMillis();
+    long end = start + TimeUnit.MINUTES.toMillis(MINUTES);
+    while (System.currentTimeMillis() < end) {
+      Thread.sleep(TimeUnit.SECONDS.toMillis(SAMPLE_SECONDS));
+      long now = System.currentTimeMillis();
+      heap.add(now, heapAfterGcMb());
+      threads.add(now, ManagementFactory.getThreadMXBean().getThreadCount());
+      fds.add(now, openFileDescriptors());
+      HikariPoolMXBean pool = pool();
+      poolActive.add(now, pool == null ? 0 : pool.getActiveConnections());
+      poolTotal.add(now, pool == null ? 0 : pool.getTotalConnections());
+      System.out.printf("%.1f,%.1f,%.0f,%.0f,%.0f,%.0f,%d,%d%n", (now - start) / 60_000.0, heap.last(), threads.last(),
+          fds.last(), poolActive.last(), poolTotal.last(), requests.sum(), errors.sum());
+    }
+    running.set(false);
+    clients.shutdown();
+    assertTrue(clients.awaitTermination(1, TimeUnit.MINUTES));
+
+    List<String> failures = new ArrayList<>();
+    addIfNotNull(failures, heap.checkTrend(SKIP_FRACTION, MAX_HEAP_MB_PER_HOUR));
+    addIfNotNull(failures, threads.checkTrend(SKIP_FRACTION, MAX_THREADS_PER_HOUR));
+    addIfNotNull(failures, fds.checkTrend(SKIP_FRACTION, MAX_FDS_PER_HOUR));
+    addIfNotNull(failures, poolActive.checkTrend(SKIP_FRACTION, MAX_POOL_PER_HOUR));
+    addIfNotNull(failures, poolTotal.checkTrend(SKIP_FRACTION, MAX_POOL_PER_HOUR));
+    System.out.printf("requests=%d errors=%d%n", requests.sum(), errors.sum());
+    assertTrue(failures.isEmpty(), String.join("\n", failures));
+    assertTrue(errors.sum() < requests.sum() / 100, "more than 1% of the requests failed unexpectedly");
+  }
+
+  /**
+   * Registers the users of the client, then loops over login, reads, edits,
+   * a failed login and logout.
+   */
+  private void runClient(int client, AtomicBoolean running, LongAdder requests, LongAdder errors) throws Exception {
+    Random random = new Random(client);
+    long[] ids = new long[USERS_PER_CLIENT];
+    for (int i = 0; i < USERS_PER_CLIENT; i++) {
+      JsonNode created = send("POST", "/users", null, "{\"username\":\"" + username(client, i, 0)
+          + "\",\"password\":\"password\"}", 201, requests, errors);
+      ids[i] = created == null ? -1 : created.get("id").asLong();
+    }
+
+    int[] renames = new int[USERS_PER_CLIENT];
+    while (running.get()) {
+      int i = random.nextInt(USERS_PER_CLIENT);
+      if (ids[i] < 0) {
+        continue;
+      }
+      JsonNode login = send("POST", "/login/auth", null, "{\"username\":\"" + username(client, i, renames[i])
+          + "\",\"password\":\"password\"}", 200, requests, errors);
+      if (login == null) {
+        continue;
+      }
+      String token = login.get("token").asText();
+
+      for (int op = 0; op < 10 && running.get(); op++) {
+        switch (random.nextInt(8)) {
+          case 0:
+            send("GET", "/users", token, null, 200, requests, errors);
+            break;
+          case 1:
+            send("GET", "/users?fields=id,username,status", token, null, 200, requests, errors);
+            break;
+          case 2:
+            send("GET", "/users/statistics", token, null, 200, requests, errors);
+            break;
+          case 3:
+            send("GET", "/users/online?limit=100", token, null, 200, requests, errors);
+            break;
+          case 4:
+            send("GET", "/users/birthdays/week", token, null, 200, requests, errors);
+            break;
+          case 5:
+            renames[i]++;
+            send("PUT", "/users/" + ids[i], token, "{\"username\":\"" + username(client, i, renames[i])
+                + "\",\"birthday\":\"1990-0" + (1 + random.nextInt(9)) + "-1" + random.nextInt(10) + "\"}",
+                204, requests, errors);
+            break;
+          case 6:
+            send("POST", "/login/auth", null, "{\"username\":\"" + username(client, i, renames[i])
+                + "\",\"password\":\"wrong\"}", 401, requests, errors);
+            break;
+          default:
+            send("GET", "/users/" + ids[random.nextInt(USERS_PER_CLIENT)], token, null, 200, requests, errors);
+            break;
+        }
+      }
+      send("PUT", "/users/logout", null, "{\"id\":" + ids[i] + ",\"token\":\"" + token + "\"}", 204, requests, errors);
+    }
+  }
+
+  private JsonNode send(String method, String path, String token, String body, int expectedStatus,
+                        LongAdder requests, LongAdder errors) {
+    HttpRequest.Builder request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + path))
+        .timeout(Duration.ofSeconds(30))
+        .header("Content-Type", "application/json")
+        .method(method, body == null ? HttpRequest.BodyPublishers.noBody() : HttpRequest.BodyPublishers.ofString(body));
+    if (token != null) {
+      request.header("Authorization", token);
+    }
+    requests.increment();
+    try {
+      HttpResponse<String> response = http.send(request.build(), HttpResponse.BodyHandlers.ofString());
+      if (response.statusCode() != expectedStatus) {
+        errors.increment();
+        return null;
+      }
+      return response.body().isEmpty() ? null : objectMapper.readTree(response.body());
+    }
+    catch (IOException e) {
+      errors.increment();
+      return null;
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return null;
+    }
+  }
+
+  private static String username(int client, int user, int rename) {
+    return "soak-" + client + "-" + user + "-" + rename;
+  }
+
+  private static double heapAfterGcMb() {
+    for (int i = 0; i < 3; i++) {
+      System.gc();
+    }
+    return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed() / (1024.0 * 1024.0);
+  }
+
+  private static double openFileDescriptors() {
+    OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+    if (os instanceof com.sun.management.UnixOperatingSystemMXBean) {
+      return ((com.sun.management.UnixOperatingSystemMXBean) os).getOpenFileDescriptorCount();
+    }
+    return 0;
+  }
+
+  private HikariPoolMXBean pool() throws Exception {
+    if (!dataSource.isWrapperFor(HikariDataSource.class)) {
+      return null;
+    }
+    return dataSource.unwrap(HikariDataSource.class).getHikariPoolMXBean();
+  }
+
+  private static void addIfNotNull(List<String> list, String value) {
+    if (value != null) {
+      list.add(value);
+    }
+  }
+}
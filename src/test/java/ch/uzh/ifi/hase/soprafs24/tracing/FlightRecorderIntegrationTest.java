@@ -0,0 +1,106 @@
+package ch.uzh.ifi.hase.soprafs24.tracing;
+
+import ch.uzh.ifi.hase.soprafs24.entity.User;
+import ch.uzh.ifi.hase.soprafs24.repository.UserRepository;
+import ch.uzh.ifi.hase.soprafs24.service.UserService;
+import com.jayway.jsonpath.JsonPath;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = "users.recording.directory=${java.io.tmpdir}/soprafs24-recordings")
+@AutoConfigureMockMvc
+public class FlightRecorderIntegrationTest {
+
+  @Autowired
+  private MockMvc mockMvc;
+
+  @Autowired
+  private UserRepository userRepository;
+
+  @Autowired
+  private UserService userService;
+
+  @BeforeEach
+  public void setup() {
+    userRepository.deleteAll();
+  }
+
+  @Test
+  public void recording_startCreateStop_containsUserEvents() throws Exception {
+    String started = mockMvc.perform(post("/internal/recordings").param("name", "test"))
+        .andExpect(status().isCreated())
+        .andExpect(jsonPath("$.state").value("RUNNING"))
+        .andReturn().getResponse().getContentAsString();
+    long id = ((Number) JsonPath.read(started, "$.id")).longValue();
+
+    User newUser = new User();
+    newUser.setUsername("recorded");
+    newUser.setPassword("password");
+    User createdUser = userService.createUser(newUser);
+    assertNull(userService.getUserByToken("unknown-token"));
+
+    String stopped = mockMvc.perform(post("/internal/recordings/" + id + "/stop"))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.state").value("STOPPED"))
+        .andReturn().getResponse().getContentAsString();
+    String file = JsonPath.read(stopped, "$.file");
+
+    List<RecordedEvent> events = RecordingFile.readAllEvents(Paths.get(file)).stream()
+        .filter(event -> event.getEventType().getName().startsWith("soprafs24."))
+        .collect(Collectors.toList());
+
+    RecordedEvent create = events.stream()
+        .filter(event -> event.getEventType().getName().equals("soprafs24.UserCreate"))
+        .findFirst().orElseThrow();
+    assertEquals(createdUser.getId().longValue(), create.getLong("userId"));
+    assertEquals("success", create.getString("outcome"));
+
+    assertTrue(events.stream().anyMatch(event -> event.getEventType().getName().equals("soprafs24.TokenValidation")
+        && "invalid".equals(event.getString("outcome"))));
+  }
+
+  @Test
+  public void stopRecording_alreadyStopped_writtenAndReleased() throws Exception {
+    Recording recording = new Recording();
+    recording.setName("stoppedOnItsOwn");
+    recording.start();
+    recording.stop();
+
+    mockMvc.perform(post("/internal/recordings/" + recording.getId() + "/stop"))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.state").value("STOPPED"))
+        .andExpect(jsonPath("$.file").isNotEmpty());
+    mockMvc.perform(post("/internal/recordings/" + recording.getId() + "/stop"))
+        .andExpect(status().isNotFound());
+  }
+
+  @Test
+  public void stopRecording_neverStarted_conflict() throws Exception {
+    try (Recording recording = new Recording()) {
+      mockMvc.perform(post("/internal/recordings/" + recording.getId() + "/stop"))
+          .andExpect(status().isConflict());
+    }
+  }
+
+  @Test
+  public void stopRecording_unknownId_notFound() throws Exception {
+    mockMvc.perform(post("/internal/recordings/999999/stop"))
+        .andExpect(status().isNotFound());
+  }
+}
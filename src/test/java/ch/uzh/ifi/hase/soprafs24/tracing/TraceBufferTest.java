@@ -0,0 +1,53 @@
+package ch.uzh.ifi.hase.soprafs24.tracing;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TraceBufferTest {
+
+  @Test
+  public void recent_belowCapacity_newestFirst() {
+    TraceBuffer buffer = new TraceBuffer(4);
+    Trace first = new Trace("GET", "/users/1");
+    Trace second = new Trace("GET", "/users/2");
+    buffer.add(first);
+    buffer.add(second);
+
+    assertEquals(List.of(second, first), buffer.recent(10));
+  }
+
+  @Test
+  public void add_beyondCapacity_overwritesOldest() {
+    TraceBuffer buffer = new TraceBuffer(2);
+    Trace first = new Trace("GET", "/users/1");
+    Trace second = new Trace("GET", "/users/2");
+    Trace third = new Trace("GET", "/users/3");
+    buffer.add(first);
+    buffer.add(second);
+    buffer.add(third);
+
+    assertEquals(List.of(third, second), buffer.recent(10));
+    assertEquals(List.of(third), buffer.recent(1));
+  }
+
+  @Test
+  public void finish_afterHandler_addsResponseSpan() {
+    Trace trace = new Trace("GET", "/users");
+    long start = System.nanoTime();
+    Span controller = trace.begin("controller", "UserController.getAllUsers");
+    Span service = trace.begin("service", "UserService.getUsers");
+    trace.end(service, start);
+    trace.end(controller, start);
+    trace.finish(200);
+
+    List<Span> spans = trace.getSpans();
+    assertEquals(3, spans.size());
+    assertEquals(0, spans.get(0).getDepth());
+    assertEquals(1, spans.get(1).getDepth());
+    assertEquals("response", spans.get(2).getLayer());
+    assertTrue(spans.get(2).getDurationMillis() >= 0);
+  }
+}
@@ -0,0 +1,59 @@
+package ch.uzh.ifi.hase.soprafs24.tracing;
+
+import ch.uzh.ifi.hase.soprafs24.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.hamcrest.Matchers.hasItem;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = "users.tracing.sample-rate=1.0")
+@AutoConfigureMockMvc
+public class TracingIntegrationTest {
+
+  @Autowired
+  private MockMvc mockMvc;
+
+  @Autowired
+  private UserRepository userRepository;
+
+  @BeforeEach
+  public void setup() {
+    userRepository.deleteAll();
+  }
+
+  @Test
+  public void createUser_traced_spansOfAllLayers() throws Exception {
+    mockMvc.perform(post("/users")
+            .contentType(MediaType.APPLICATION_JSON)
+            .content("{\"username\": \"traced\", \"password\": \"password\"}"))
+        .andExpect(status().isCreated());
+
+    mockMvc.perform(get("/internal/traces").param("limit", "1"))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$[0].method").value("POST"))
+        .andExpect(jsonPath("$[0].path").value("/users"))
+        .andExpect(jsonPath("$[0].status").value(201))
+        .andExpect(jsonPath("$[0].spans[0].name").value("UserController.createUser"))
+        .andExpect(jsonPath("$[0].spans[*].name").value(hasItem("UserService.createUser")))
+        .andExpect(jsonPath("$[0].spans[*].name").value(hasItem("UserRepository.findByUsername")))
+        .andExpect(jsonPath("$[0].spans[*].layer").value(hasItem("response")));
+  }
+
+  @Test
+  public void getTraces_remoteCaller_forbidden() throws Exception {
+    mockMvc.perform(get("/internal/traces").with(request -> {
+          request.setRemoteAddr("10.0.0.1");
+          return request;
+        }))
+        .andExpect(status().isForbidden());
+  }
+}
@@ -0,0 +1,75 @@
+package ch.uzh.ifi.hase.soprafs24.utlis;
+
+import java.lang.management.ManagementFactory;
+
+public class BenchmarkUtils {
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    @FunctionalInterface
+    public interface Operation {
+        void run() throws Exception;
+    }
+
+    /**
+     * Runs the operation warmupOps times, then measures ops runs on the calling
+     * thread and prints throughput and allocation per operation.
+     *
+     * @param name      The label printed with the result.
+     * @param warmupOps The number of unmeasured runs to warm up the JIT.
+     * @param ops       The number of measured runs.
+     * @param operation The operation to measure.
+     * @return The measured result.
+     */
+    public static Result measure(String name, int warmupOps, int ops, Operation operation) throws Exception {
+        for (int i = 0; i < warmupOps; i++) {
+            operation.run();
+        }
+
+        long threadId = Thread.currentThread().getId();
+        long allocatedBefore = THREADS.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+        for (int i = 0; i < ops; i++) {
+            operation.run();
+        }
+        long nanos = System.nanoTime() - start;
+        long allocated = THREADS.getThreadAllocatedBytes(threadId) - allocatedBefore;
+
+        Result result = new Result(name, ops, nanos, allocated);
+        System.out.println(result);
+        return result;
+    }
+
+    public static class Result {
+        private final String name;
+        private final long ops;
+        private final long nanos;
+        private final long allocatedBytes;
+
+        Result(String name, long ops, long nanos, long allocatedBytes) {
+            this.name = name;
+            this.ops = ops;
+            this.nanos = nanos;
+            this.allocatedBytes = allocatedBytes;
+        }
+
+        public double opsPerSecond() {
+            return ops * 1_000_000_000d / nanos;
+        }
+
+        public double nanosPerOp() {
+            return (double) nanos / ops;
+        }
+
+        public double bytesPerOp() {
+            return (double) allocatedBytes / ops;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%-40s %12.0f ops/s %12.0f ns/op %12.0f B/op",
+                name, opsPerSecond(), nanosPerOp(), bytesPerOp());
+        }
+    }
+}
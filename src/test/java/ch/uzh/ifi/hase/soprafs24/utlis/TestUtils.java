@@ -3,20 +3,26 @@ package ch.uzh.ifi.hase.soprafs24.utlis;
 import ch.uzh.ifi.hase.soprafs24.entity.User;
 import ch.uzh.ifi.hase.soprafs24.repository.UserRepository;
 import ch.uzh.ifi.hase.soprafs24.constant.UserStatus;
+import ch.uzh.ifi.hase.soprafs24.service.SessionStore;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
 
 import java.util.UUID;
 
 public class TestUtils {
 
     /**
-     * Creates and saves a test user with a generated token.
+     * Creates and saves a test user and opens a session for it.
      *
      * @param userRepository The UserRepository to save the user.
+     * @param sessionStore   The SessionStore to open the session in.
      * @param username       The username for the test user.
      * @param password       The password for the test user.
      * @return The generated token for the test user.
      */
-    public static String createAndSaveTestUser(UserRepository userRepository, String username, String password) {
+    public static String createAndSaveTestUser(UserRepository userRepository, SessionStore sessionStore,
+                                               String username, String password) {
         User user = new User();
         user.setUsername(username);
         user.setPassword(password);
@@ -24,6 +30,23 @@ public class TestUtils {
         user.setToken(UUID.randomUUID().toString()); // Generate a token
         userRepository.save(user);
         userRepository.flush();
-        return user.getToken();
+        return sessionStore.create(user.getId(), user.getToken()).getToken();
+    }
+
+    /**
+     * Recreates the schema of one H2 database in another one (without data),
+     * e.g. to set up a replica next to the database Hibernate created.
+     *
+     * @param from The H2 database to copy the schema from.
+     * @param to   The H2 database to create the schema in.
+     */
+    public static void copySchema(DataSource from, DataSource to) {
+        JdbcTemplate target = new JdbcTemplate(to);
+        for (String statement : new JdbcTemplate(from).queryForList("SCRIPT NODATA", String.class)) {
+            // SCRIPT also returns comment lines, e.g. the row counts
+            if (!statement.startsWith("--")) {
+                target.execute(statement);
+            }
+        }
     }
-}
\ No newline at end of file
+}
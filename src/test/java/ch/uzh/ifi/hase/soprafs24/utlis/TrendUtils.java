@@ -0,0 +1,79 @@
+package ch.uzh.ifi.hase.soprafs24.utlis;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class TrendUtils {
+
+    /**
+     * A metric sampled over time, e.g. heap after GC during a soak test.
+     */
+    public static class Series {
+        private final String name;
+        private final String unit;
+        private final List<double[]> samples = new ArrayList<>();
+
+        public Series(String name, String unit) {
+            this.name = name;
+            this.unit = unit;
+        }
+
+        public void add(long millis, double value) {
+            samples.add(new double[] { millis, value });
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int size() {
+            return samples.size();
+        }
+
+        public double last() {
+            return samples.get(samples.size() - 1)[1];
+        }
+
+        /**
+         * Fits a line through the samples by least squares, skipping the first
+         * ones while caches and pools fill up.
+         *
+         * @param skipFraction The share of samples at the start to ignore, e.g. 0.2.
+         * @return The slope in units per hour, 0 for fewer than 3 samples.
+         */
+        public double slopePerHour(double skipFraction) {
+            List<double[]> used = samples.subList((int) (samples.size() * skipFraction), samples.size());
+            if (used.size() < 3) {
+                return 0;
+            }
+            double meanX = 0;
+            double meanY = 0;
+            for (double[] sample : used) {
+                meanX += sample[0];
+                meanY += sample[1];
+            }
+            meanX /= used.size();
+            meanY /= used.size();
+
+            double covariance = 0;
+            double variance = 0;
+            for (double[] sample : used) {
+                covariance += (sample[0] - meanX) * (sample[1] - meanY);
+                variance += (sample[0] - meanX) * (sample[0] - meanX);
+            }
+            return variance == 0 ? 0 : covariance / variance * 3_600_000;
+        }
+
+        /**
+         * @return A message if the slope exceeds maxPerHour, otherwise null.
+         */
+        public String checkTrend(double skipFraction, double maxPerHour) {
+            double slope = slopePerHour(skipFraction);
+            if (slope <= maxPerHour) {
+                return null;
+            }
+            return String.format("%s grows by %.2f %s/h (limit %.2f %s/h, last %.2f %s)",
+                name, slope, unit, maxPerHour, unit, last(), unit);
+        }
+    }
+}
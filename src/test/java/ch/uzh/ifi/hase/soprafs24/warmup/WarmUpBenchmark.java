@@ -0,0 +1,78 @@
+package ch.uzh.ifi.hase.soprafs24.warmup;
+
+import ch.uzh.ifi.hase.soprafs24.Application;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Arrays;
+
+/**
+ * Compares the latency of the requests in the first minute after startup
+ * without and with the WarmUp. Each run starts a fresh application (the JIT
+ * of this JVM is already warm for the second one, so run the variants in
+ * separate JVMs for exact numbers: ./gradlew benchmark
+ * -Dbenchmark.warmup=false|true [-Dbenchmark.seconds=N]).
+ */
+@Tag("benchmark")
+public class WarmUpBenchmark {
+
+  private static final int SECONDS = Integer.getInteger("benchmark.seconds", 60);
+  private static final String VARIANTS = System.getProperty("benchmark.warmup", "false,true");
+
+  @Test
+  public void firstMinute_withoutVsWithWarmUp() throws Exception {
+    for (String warmUp : VARIANTS.split(",")) {
+      run(Boolean.parseBoolean(warmUp.trim()));
+    }
+  }
+
+  private void run(boolean warmUp) throws Exception {
+    ConfigurableApplicationContext context = new SpringApplicationBuilder(Application.class)
+        .run("--server.port=0", "--users.warmup.enabled=" + warmUp, "--users.audit.enabled=false",
+            "--users.rate-limit.enabled=false");
+    try {
+      String base = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+      HttpClient client = HttpClient.newHttpClient();
+
+      String created = client.send(HttpRequest.newBuilder(URI.create(base + "/users"))
+              .header("Content-Type", "application/json")
+              .POST(HttpRequest.BodyPublishers.ofString("{\"username\":\"benchmark\",\"password\":\"benchmark\"}"))
+              .build(), HttpResponse.BodyHandlers.ofString()).body();
+      String token = created.replaceAll(".*\"token\":\"([^\"]+)\".*", "$1");
+      String id = created.replaceAll(".*\"id\":(\\d+).*", "$1");
+
+      long[] latencies = new long[1 << 20];
+      int count = 0;
+      long end = System.nanoTime() + SECONDS * 1_000_000_000L;
+      String[] paths = { "/users/" + id, "/users", "/users?fields=id,username" };
+      while (System.nanoTime() < end && count < latencies.length) {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(base + paths[count % paths.length]))
+            .header("Authorization", token)
+            .build();
+        long start = System.nanoTime();
+        client.send(request, HttpResponse.BodyHandlers.discarding());
+        latencies[count++] = System.nanoTime() - start;
+      }
+
+      long first = latencies[0];
+      long[] sorted = Arrays.copyOf(latencies, count);
+      Arrays.sort(sorted);
+      System.out.printf("warmup=%-5s requests=%d first=%.2fms p50=%.3fms p99=%.3fms p999=%.3fms max=%.2fms%n",
+          warmUp, count, first / 1e6, percentile(sorted, 0.5) / 1e6, percentile(sorted, 0.99) / 1e6,
+          percentile(sorted, 0.999) / 1e6, sorted[count - 1] / 1e6);
+    }
+    finally {
+      context.close();
+    }
+  }
+
+  private static long percentile(long[] sorted, double p) {
+    return sorted[Math.min(sorted.length - 1, (int) (sorted.length * p))];
+  }
+}